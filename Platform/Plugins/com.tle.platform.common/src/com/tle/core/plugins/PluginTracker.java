@@ -52,6 +52,7 @@ public class PluginTracker<T extends Object> implements RegistryChangeListener {
   private final String extensionId;
   private final String parameterKey;
   private final Object cacheLock = new Object();
+  private volatile int changeCount;
 
   private String beanKey;
   private Comparator<Extension> comparator;
@@ -152,9 +153,18 @@ public class PluginTracker<T extends Object> implements RegistryChangeListener {
       beanList = null;
       allExtensions = null;
       extBeanMap = null;
+      changeCount++;
     }
   }
 
+  /**
+   * Incremented every time the extensions change. Callers caching something built from the
+   * extensions can compare this without locking, reading it before they read the extensions.
+   */
+  public int getChangeCount() {
+    return changeCount;
+  }
+
   public boolean needsUpdate() {
     synchronized (cacheLock) {
       return allExtensions == null;
@@ -146,6 +146,11 @@ public class TreeRegistry implements RegistrationController {
     }
   }
 
+  /** @return The paths of every registered section tree, whether or not it has been built yet */
+  public Collection<String> getTreePaths() {
+    return ImmutableList.copyOf(sectionTreePlugin.getExtensionMap().keySet());
+  }
+
   public SectionTree getTreeForPath(String path, boolean fromUrl) {
     SectionTreeData treeData = treeMap.getUnchecked(path);
     if (treeData.tree == null || (fromUrl && !treeData.url)) {
@@ -81,6 +81,24 @@ import org.hibernate.annotations.NamedQuery;
               + " FROM AccessEntry ae WHERE ae.institution = :institution AND"
               + " ae.targetObject in (:targets) AND ae.privilege in (:privileges)"
               + " ORDER BY ae.aggregateOrdering DESC"),
+  @NamedQuery(
+      name = "getEntriesForTargets",
+      cacheable = false,
+      readOnly = true,
+      query =
+          ""
+              + "SELECT ae.targetObject, ae.aggregateOrdering, ae.privilege, ae.expression.id"
+              + " FROM AccessEntry ae WHERE ae.institution = :institution"
+              + " AND ae.targetObject in (:targets)"),
+  @NamedQuery(
+      name = "getEntriesForPrivileges",
+      cacheable = false,
+      readOnly = true,
+      query =
+          ""
+              + "SELECT ae.targetObject, ae.aggregateOrdering, ae.privilege, ae.expression.id"
+              + " FROM AccessEntry ae WHERE ae.institution = :institution"
+              + " AND ae.privilege in (:privileges)"),
   @NamedQuery(
       name = "getAllEntriesForInstitution",
       cacheable = false,
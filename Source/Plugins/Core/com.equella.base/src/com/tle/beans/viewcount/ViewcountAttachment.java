@@ -41,6 +41,13 @@ import org.hibernate.annotations.NamedQuery;
     query =
         "DELETE FROM ViewcountAttachment "
             + "Where id.itemVersion = :itemVersion and id.itemUuid = :itemUuid and id.inst = :institutionId")
+@NamedQuery(
+    name = "addAttachmentViews",
+    query =
+        "UPDATE ViewcountAttachment vca "
+            + "SET vca.count = vca.count + :views, vca.lastViewed = :lastViewed "
+            + "WHERE vca.id.itemVersion = :itemVersion and vca.id.itemUuid = :itemUuid "
+            + "and vca.id.inst = :institutionId and vca.id.attachment = :attachment")
 @Entity
 @AttributeAccessor("field")
 public class ViewcountAttachment extends AbstractViewcount {
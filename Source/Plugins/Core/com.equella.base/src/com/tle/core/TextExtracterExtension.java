@@ -41,4 +41,12 @@ public interface TextExtracterExtension {
   boolean isMimeTypeSupported(String mimeType);
 
   String getNameKey();
+
+  /**
+   * Text extracted by an older version is discarded from the extracted text cache, so bump this
+   * whenever a change would give different output for the same file.
+   */
+  default int getVersion() {
+    return 1;
+  }
 }
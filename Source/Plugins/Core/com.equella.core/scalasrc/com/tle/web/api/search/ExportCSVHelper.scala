@@ -203,12 +203,12 @@ object ExportCSVHelper {
   }
 
   /**
-    * Write CSV contents into a BufferedOutputStream.
+    * Write CSV contents into a BufferedOutputStream. The stream is not flushed, so that rows can be
+    * sent in chunks.
     * @param bos BufferedOutputStream A BufferedOutputStream wrapping another underlying OutputStream.
     * @param contents Contents to be written to the BufferedOutputStream.
     */
   def writeRow(bos: BufferedOutputStream, contents: String): Unit = {
     bos.write(s"${contents}\n".getBytes())
-    bos.flush()
   }
 }
@@ -24,7 +24,7 @@ import com.dytech.devlib.PropBagEx
 import com.dytech.edge.exceptions.{BadRequestException, DRMException}
 import com.tle.beans.entity.DynaCollection
 import com.tle.beans.item.ItemStatus.{MODERATING, REJECTED, REVIEW}
-import com.tle.beans.item.{Comment, Item, ItemIdKey, ItemStatus}
+import com.tle.beans.item.{Comment, Item, ItemIdKey, ItemSelect, ItemStatus}
 import com.tle.common.Check
 import com.tle.common.beans.exception.NotFoundException
 import com.tle.common.collection.AttachmentConfigConstants
@@ -269,16 +269,19 @@ object SearchHelper {
     * Convert a SearchItem to an instance of SearchResultItem.
     *
     * @param item Details of an item to convert.
+    * @param details Details of the whole page of results, loaded by `SearchItemDetails`.
     * @param includeAttachments Controls whether to populate the 'attachments' property as that
     *                           process can be intensive and slow down searches.
     * @return The result of converting `item` to a `SearchResultItem`.
     */
-  def convertToItem(item: SearchItem, includeAttachments: Boolean = true): SearchResultItem = {
+  def convertToItem(item: SearchItem,
+                    details: SearchItemDetails,
+                    includeAttachments: Boolean = true): SearchResultItem = {
     val key  = item.idKey
     val bean = item.bean
     lazy val sanitisedAttachmentBeans =
       Option(bean.getAttachments).map(_.asScala.map(sanitiseAttachmentBean).toList)
-    val rawItem = LegacyGuice.itemService.getUnsecureIfExists(key)
+    val rawItem = details.items.get(key.getKey).orNull
 
     SearchResultItem(
       uuid = key.getUuid,
@@ -289,7 +292,7 @@ object SearchHelper {
       createdDate = bean.getCreatedDate,
       modifiedDate = bean.getModifiedDate,
       collectionId = bean.getCollection.getUuid,
-      commentCount = getItemCommentCount(key),
+      commentCount = details.commentCounts.get(key.getKey).map(Int.box),
       starRatings = bean.getRating,
       attachmentCount = Option(bean.getAttachments).map(_.size).getOrElse(0),
       attachments =
@@ -300,9 +303,10 @@ object SearchHelper {
       displayOptions = Option(bean.getDisplayOptions),
       keywordFoundInAttachment = item.keywordFound,
       links = getLinksFromBean(bean),
-      bookmarkId = getBookmarkId(key),
-      isLatestVersion = isLatestVersion(key),
-      drmStatus = getItemDrmStatus(rawItem),
+      bookmarkId = details.bookmarkIds.get(key.getKey),
+      isLatestVersion = details.latestVersions.get(key.getUuid).contains(key.getVersion),
+      drmStatus =
+        getItemDrmStatus(rawItem, i => details.drmTermsAccepted.getOrElse(i.getId, false)),
       moderationDetails = getModerationDetails(rawItem),
     )
   }
@@ -324,16 +328,14 @@ object SearchHelper {
     )
   }
 
-  def getItemDrmStatus(rawItem: Item): Option[DrmStatus] = {
+  /**
+    * @param termsAccepted Whether the current user has accepted the DRM terms of an item, or
+    *                      doesn't need to.
+    */
+  def getItemDrmStatus(rawItem: Item, termsAccepted: Item => Boolean): Option[DrmStatus] = {
     for {
       item     <- Option(rawItem)
       settings <- Option(item.getDrmSettings)
-      termsAccepted = try {
-        LegacyGuice.drmService.hasAcceptedOrRequiresNoAcceptance(item, false, false)
-      } catch {
-        // This exception is only thrown when the DRM has maximum number of acceptance allowable times.
-        case _: DRMException => false
-      }
       isAuthorised = try {
         LegacyGuice.drmService.isAuthorised(item, CurrentUser.getUserState.getIpAddress)
         true
@@ -341,7 +343,7 @@ object SearchHelper {
         case _: DRMException => false
       }
     } yield {
-      DrmStatus(termsAccepted, isAuthorised, settings.isAllowSummary)
+      DrmStatus(termsAccepted(item), isAuthorised, settings.isAllowSummary)
     }
   }
 
@@ -354,31 +356,12 @@ object SearchHelper {
   def getItemComments(key: ItemIdKey): Option[java.util.List[Comment]] =
     Option(LegacyGuice.itemCommentService.getCommentsWithACLCheck(key, null, null, -1))
 
-  def getItemCommentCount(key: ItemIdKey): Option[Integer] =
-    Option(LegacyGuice.itemCommentService.getCommentCountWithACLCheck(key))
-
   /**
     * Extract the value of 'links' from the 'extras' of AbstractExtendableBean.
     */
   def getLinksFromBean[T <: AbstractExtendableBean](bean: T) =
     bean.get("links").asInstanceOf[java.util.Map[String, String]]
 
-  /**
-    * Find the Bookmark linking to the Item and return the Bookmark's ID.
-    * @param itemID Unique Item ID
-    * @return Unique Bookmark ID
-    */
-  def getBookmarkId(itemID: ItemIdKey): Option[Long] =
-    Option(LegacyGuice.bookmarkService.getByItem(itemID)).map(_.getId)
-
-  /**
-    * Check whether a specific version is the latest version
-    * @param itemID Unique Item ID
-    * @return True if the version is the latest one
-    */
-  def isLatestVersion(itemID: ItemIdKey): Boolean =
-    itemID.getVersion == LegacyGuice.itemService.getLatestVersion(itemID.getUuid)
-
   def getThumbnailDetails(attachmentBeans: Option[List[AttachmentBean]],
                           itemKey: ItemIdKey): Option[ThumbnailDetails] = {
     lazy val hasRestrictedAttachmentPrivileges: Boolean =
@@ -437,3 +420,54 @@ object SearchHelper {
     standardDisplayFields ++ customDisplayFields
   }
 }
+
+/**
+  * Details of a page of search results which are loaded for all of the results in a few
+  * set-based queries, rather than with several queries for each result.
+  *
+  * @param items Items by ID, with their DRM settings and moderation status fetched.
+  * @param commentCounts Comment counts by item ID, for the items whose comments can be viewed.
+  * @param bookmarkIds The IDs of the current user's bookmarks by item ID.
+  * @param latestVersions The latest version of each item UUID.
+  * @param drmTermsAccepted Whether the current user has accepted the DRM terms of an item, or
+  *                         doesn't need to, by item ID.
+  */
+case class SearchItemDetails(items: Map[Long, Item],
+                             commentCounts: Map[Long, Int],
+                             bookmarkIds: Map[Long, Long],
+                             latestVersions: Map[String, Int],
+                             drmTermsAccepted: Map[Long, Boolean])
+object SearchItemDetails {
+  def apply(itemIds: List[ItemIdKey]): SearchItemDetails = {
+    val select = new ItemSelect
+    select.setDrm(true)
+    select.setModeration(true)
+    val items =
+      LegacyGuice.itemService.queryItems(itemIds.asJava, select).asScala.filter(_ != null).toList
+    val javaItems = items.asJavaCollection
+
+    SearchItemDetails(
+      items = items.map(i => i.getId -> i).toMap,
+      commentCounts = LegacyGuice.itemCommentService
+        .getCommentCountsWithACLCheck(javaItems)
+        .asScala
+        .map { case (id, count) => id.longValue -> count.intValue }
+        .toMap,
+      bookmarkIds = LegacyGuice.bookmarkService
+        .getBookmarksForItems(javaItems)
+        .asScala
+        .map { case (item, bookmark) => item.getId -> bookmark.getId }
+        .toMap,
+      latestVersions = LegacyGuice.itemService
+        .getLatestVersions(itemIds.map(_.getUuid).distinct.asJava)
+        .asScala
+        .map { case (uuid, version) => uuid -> version.intValue }
+        .toMap,
+      drmTermsAccepted = LegacyGuice.drmService
+        .hasAcceptedOrRequiresNoAcceptance(javaItems, false, false)
+        .asScala
+        .map { case (id, accepted) => id.longValue -> accepted.booleanValue }
+        .toMap
+    )
+  }
+}
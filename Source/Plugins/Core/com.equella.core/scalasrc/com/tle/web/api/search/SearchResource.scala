@@ -97,6 +97,7 @@ class SearchResource {
     val itemIds                 = freetextResults.map(_.getItemIdKey)
     val serializer              = createSerializer(itemIds)
     val items: List[SearchItem] = freetextResults.map(result => SearchItem(result, serializer))
+    val details                 = SearchItemDetails(itemIds)
     val highlight =
       new DefaultSearch.QueryParser(params.query).getHilightedList.asScala.toList
 
@@ -104,7 +105,7 @@ class SearchResource {
       searchResults.getOffset,
       searchResults.getCount,
       searchResults.getAvailable,
-      items.map(convertToItem(_, params.includeAttachments)),
+      items.map(convertToItem(_, details, params.includeAttachments)),
       highlight
     )
   }
@@ -134,7 +135,8 @@ class SearchResource {
     LegacyGuice.exportService.export(createSearch(params),
                                      params.searchAttachments,
                                      csvHeaders,
-                                     writeRow(bos, _))
+                                     writeRow(bos, _),
+                                     () => bos.flush())
 
     bos.close()
   }
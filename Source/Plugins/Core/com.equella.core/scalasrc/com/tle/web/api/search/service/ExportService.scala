@@ -19,44 +19,58 @@
 package com.tle.web.api.search.service
 
 import com.tle.common.search.DefaultSearch
+import com.tle.core.freetext.index.SearchCursor
 import com.tle.core.guice.Bind
+import com.tle.core.item.dao.ItemDao
+import com.tle.core.services.item.FreetextResult
 import com.tle.legacy.LegacyGuice
 import com.tle.web.api.search.CSVHeader
 import com.tle.web.api.search.ExportCSVHelper.{buildCSVRow, convertSearchResultToXML}
-import com.tle.web.api.search.SearchHelper.search
 import org.springframework.transaction.annotation.Transactional
-import javax.inject.Singleton
+import javax.inject.{Inject, Singleton}
+import scala.annotation.tailrec
 import scala.jdk.CollectionConverters._
 
 @Bind
 @Singleton
 class ExportService {
+  @Inject var itemDao: ItemDao = _
+
+  private val ChunkSize = 100
 
   /**
-    * Export search results as CSV contents. The full result is chunked by paging and streaming.
+    * Export search results as CSV contents. The full result is walked through in a single pass,
+    * a chunk at a time, with each chunk starting from the cursor of the previous one. Loaded items
+    * are cleared from the session after each chunk so memory use doesn't grow with the result.
     * @param defaultSearch A set of search criteria
     * @param searchAttachments Whether to search attachments.
     * @param headers A list of CSV headers
     * @param writeRow Function used to output CSV contents
+    * @param flush Function called after each chunk of rows has been written
     */
   @Transactional
   def export(defaultSearch: DefaultSearch,
              searchAttachments: Boolean,
              headers: List[CSVHeader],
-             writeRow: (String) => Unit): Unit = {
-    // Get the total count first. As we only do one search, the result of 'countsFromFilters'
-    // must be an array that has only one element.
-    val count     = LegacyGuice.freeTextService.countsFromFilters(List(defaultSearch).asJava)(0)
-    val chunkSize = 100
-    val starts: Seq[Int] =
-      for (i <- 0 until count / chunkSize + 1) yield i * chunkSize
-
-    starts.foreach(start => {
-      convertSearchResultToXML(
-        search(defaultSearch, start, chunkSize, searchAttachments).getSearchResults.asScala.toList)
+             writeRow: (String) => Unit,
+             flush: () => Unit): Unit = {
+    @tailrec
+    def exportChunk(after: Option[SearchCursor]): Unit = {
+      val results = LegacyGuice.freeTextService
+        .searchAfter[FreetextResult](defaultSearch, after.orNull, ChunkSize, searchAttachments)
+      convertSearchResultToXML(results.getResults.asScala.toList)
         .foreach(xml => {
           writeRow(s"${buildCSVRow(xml, headers)}")
         })
-    })
+      flush()
+      itemDao.clear()
+
+      Option(results.getCursor) match {
+        case Some(cursor) => exportChunk(Some(cursor))
+        case None         =>
+      }
+    }
+
+    exportChunk(None)
   }
 }
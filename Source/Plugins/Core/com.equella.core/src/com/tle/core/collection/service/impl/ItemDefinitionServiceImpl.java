@@ -101,6 +101,11 @@ public class ItemDefinitionServiceImpl
     this.itemDefinitionDao = itemDefinitionDao;
   }
 
+  @Override
+  protected boolean isCachedByUuid() {
+    return true;
+  }
+
   @Override
   protected Collection<Pair<Object, Node>> getOtherTargetListObjects(
       ItemDefinition itemDefinition) {
@@ -82,6 +82,11 @@ public class DynaCollectionServiceImpl
     this.dao = dao;
   }
 
+  @Override
+  protected boolean isCachedByUuid() {
+    return true;
+  }
+
   @Override
   public List<VirtualisableAndValue<DynaCollection>> enumerateExpanded(String usage) {
     List<DynaCollection> unexpanded =
@@ -0,0 +1,59 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.entity.event;
+
+import com.tle.core.entity.event.listener.EntityUuidsInvalidatedListener;
+import com.tle.core.events.ApplicationEvent;
+
+/** Tells the other cluster nodes to forget the cached ID of an edited or deleted entity. */
+public class EntityUuidsInvalidatedEvent extends ApplicationEvent<EntityUuidsInvalidatedListener> {
+  private static final long serialVersionUID = 1L;
+
+  private final String entityType;
+  private final String uuid;
+
+  public EntityUuidsInvalidatedEvent(String entityType, String uuid) {
+    super(PostTo.POST_TO_OTHER_CLUSTER_NODES);
+    this.entityType = entityType;
+    this.uuid = uuid;
+  }
+
+  public String getEntityType() {
+    return entityType;
+  }
+
+  public String getUuid() {
+    return uuid;
+  }
+
+  @Override
+  public Class<EntityUuidsInvalidatedListener> getListener() {
+    return EntityUuidsInvalidatedListener.class;
+  }
+
+  @Override
+  public void postEvent(EntityUuidsInvalidatedListener listener) {
+    listener.entityUuidsInvalidated(this);
+  }
+
+  @Override
+  public boolean requiresInstitution() {
+    return true;
+  }
+}
@@ -65,6 +65,7 @@ import com.tle.core.entity.EntityEditingBean;
 import com.tle.core.entity.EntityEditingSession;
 import com.tle.core.entity.EnumerateOptions;
 import com.tle.core.entity.dao.AbstractEntityDao;
+import com.tle.core.entity.event.EntityUuidsInvalidatedEvent;
 import com.tle.core.entity.registry.EntityRegistry;
 import com.tle.core.entity.service.AbstractEntityService;
 import com.tle.core.entity.service.EntityLockingService;
@@ -141,6 +142,7 @@ public abstract class AbstractEntityServiceImpl<
   @Inject private EntityRegistry registry;
   @Inject protected XmlHelper xmlHelper;
   @Inject private UserSessionService sessionService;
+  @Inject private EntityUuidCache uuidCache;
 
   // X-treme!
   @Nullable private XStream xstream;
@@ -200,9 +202,41 @@ public abstract class AbstractEntityServiceImpl<
   @Override
   // @Transactional
   public T getByUuid(String uuid) {
+    if (isCachedByUuid()) {
+      return uuidCache.get(privilegeType, uuid, entityDao::findById, this::findByUuid);
+    }
+    return findByUuid(uuid);
+  }
+
+  @Nullable
+  private T findByUuid(String uuid) {
     return entityDao.findByCriteria(Restrictions.eq("uuid", uuid), getInstitutionCriterion());
   }
 
+  /**
+   * Read-mostly entity types that are looked up by UUID many times per request can remember the
+   * ID each UUID resolves to. Edits and deletes are invalidated across the cluster.
+   */
+  protected boolean isCachedByUuid() {
+    return false;
+  }
+
+  private void invalidateUuidAfterCommit(T entity) {
+    if (!isCachedByUuid()) {
+      return;
+    }
+    final String uuid = entity.getUuid();
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter() {
+          @Override
+          public void afterCommit() {
+            uuidCache.invalidate(privilegeType, uuid);
+            eventService.publishApplicationEvent(
+                new EntityUuidsInvalidatedEvent(privilegeType, uuid));
+          }
+        });
+  }
+
   @Override
   @SecureOnReturn(priv = SecurityConstants.EDIT_VIRTUAL_BASE)
   @Transactional
@@ -360,6 +394,7 @@ public abstract class AbstractEntityServiceImpl<
     }
 
     auditLogService.logEntityDeleted(entity.getId());
+    invalidateUuidAfterCommit(entity);
     afterDelete(entity);
   }
 
@@ -687,6 +722,7 @@ public abstract class AbstractEntityServiceImpl<
     }
 
     auditLogService.logEntityModified(newEntity.getId());
+    invalidateUuidAfterCommit(newEntity);
     afterStopEdit(pack, persistedEntity);
     return newEntity;
   }
@@ -1329,6 +1365,7 @@ public abstract class AbstractEntityServiceImpl<
     saveFiles(fakePack, unlock, unlock, false, entity);
 
     auditLogService.logEntityModified(entity.getId());
+    invalidateUuidAfterCommit(entity);
     afterStopEdit(fakePack, entity);
     return entity;
   }
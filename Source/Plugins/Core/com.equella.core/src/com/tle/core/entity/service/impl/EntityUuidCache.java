@@ -0,0 +1,123 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.entity.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.annotation.Nullable;
+import com.tle.beans.Institution;
+import com.tle.beans.entity.BaseEntity;
+import com.tle.core.entity.event.EntityUuidsInvalidatedEvent;
+import com.tle.core.entity.event.listener.EntityUuidsInvalidatedListener;
+import com.tle.core.guice.Bind;
+import com.tle.core.institution.InstitutionCache;
+import com.tle.core.institution.InstitutionService;
+import io.prometheus.client.Counter;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * The IDs of entities looked up by UUID, per institution and entity type. Only the UUID to ID
+ * snapshot is cached, never the entity itself: a hit is loaded by primary key, which the Hibernate
+ * session serves from memory when the entity has already been loaded for the request, so callers
+ * still get a session attached entity they are free to initialise or modify.
+ *
+ * <p>A cached ID that no longer loads an entity with the same UUID is dropped and looked up again,
+ * so a missed invalidation can only cost a query.
+ */
+@Bind
+@Singleton
+@NonNullByDefault
+@SuppressWarnings("nls")
+public class EntityUuidCache implements EntityUuidsInvalidatedListener {
+  private static final int MAX_ENTRIES = 10000;
+
+  private static final Counter REQUESTS =
+      Counter.build()
+          .name("entity_uuid_cache_requests_total")
+          .help("Number of entity lookups by UUID, by entity type and hit, miss or stale")
+          .labelNames("entity", "result")
+          .register();
+
+  private InstitutionCache<Cache<String, Long>> cache;
+
+  @Inject
+  public void setInstitutionService(InstitutionService service) {
+    cache =
+        service.newInstitutionAwareCache(
+            new CacheLoader<Institution, Cache<String, Long>>() {
+              @Override
+              public Cache<String, Long> load(Institution key) {
+                return CacheBuilder.newBuilder()
+                    .maximumSize(MAX_ENTRIES)
+                    .expireAfterAccess(1, TimeUnit.HOURS)
+                    .build();
+              }
+            });
+  }
+
+  /**
+   * @param entityType The privilege type of the entity, which namespaces the UUIDs
+   * @param byId Loads the entity with the cached ID
+   * @param byUuid Looks the entity up in the database on a miss
+   */
+  @Nullable
+  public <T extends BaseEntity> T get(
+      String entityType, String uuid, LongFunction<T> byId, Function<String, T> byUuid) {
+    final Cache<String, Long> ids = cache.getCache();
+    final String key = key(entityType, uuid);
+    final Long id = ids.getIfPresent(key);
+    if (id != null) {
+      final T entity = byId.apply(id);
+      if (entity != null && uuid.equals(entity.getUuid())) {
+        REQUESTS.labels(entityType, "hit").inc();
+        return entity;
+      }
+      ids.invalidate(key);
+      REQUESTS.labels(entityType, "stale").inc();
+    } else {
+      REQUESTS.labels(entityType, "miss").inc();
+    }
+
+    final T entity = byUuid.apply(uuid);
+    if (entity != null) {
+      ids.put(key, entity.getId());
+    }
+    return entity;
+  }
+
+  /** Forgets the ID of an entity on this node only. */
+  public void invalidate(String entityType, String uuid) {
+    cache.getCache().invalidate(key(entityType, uuid));
+  }
+
+  @Override
+  public void entityUuidsInvalidated(EntityUuidsInvalidatedEvent event) {
+    invalidate(event.getEntityType(), event.getUuid());
+  }
+
+  private static String key(String entityType, String uuid) {
+    return entityType + ':' + uuid;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.freetext.event;
+
+import com.tle.annotation.Nullable;
+import com.tle.core.events.ApplicationEvent;
+import com.tle.core.freetext.event.listener.CountsChangedListener;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Tells cached search counts that they may be out of date, either for everyone in some
+ * institutions (because documents were indexed) or for a single user.
+ */
+public class CountsChangedEvent extends ApplicationEvent<CountsChangedListener> {
+  private static final long serialVersionUID = 1L;
+
+  private final Collection<Long> institutionIds;
+  @Nullable private final String userId;
+  @Nullable private final String kind;
+
+  /**
+   * Every node maintains its own index, so this is only posted to the node that did the indexing.
+   */
+  public static CountsChangedEvent indexed(Collection<Long> institutionIds) {
+    return new CountsChangedEvent(PostTo.POST_ONLY_TO_SELF, institutionIds, null, null);
+  }
+
+  public static CountsChangedEvent forUser(long institutionId, String userId, String kind) {
+    return new CountsChangedEvent(
+        PostTo.POST_TO_ALL_CLUSTER_NODES, Collections.singleton(institutionId), userId, kind);
+  }
+
+  private CountsChangedEvent(
+      PostTo postTo,
+      Collection<Long> institutionIds,
+      @Nullable String userId,
+      @Nullable String kind) {
+    super(postTo);
+    this.institutionIds = institutionIds;
+    this.userId = userId;
+    this.kind = kind;
+  }
+
+  public Collection<Long> getInstitutionIds() {
+    return institutionIds;
+  }
+
+  /** @return The user whose counts changed, or null if all users' counts may have changed */
+  @Nullable
+  public String getUserId() {
+    return userId;
+  }
+
+  @Nullable
+  public String getKind() {
+    return kind;
+  }
+
+  @Override
+  public Class<CountsChangedListener> getListener() {
+    return CountsChangedListener.class;
+  }
+
+  @Override
+  public void postEvent(CountsChangedListener listener) {
+    listener.countsChanged(this);
+  }
+}
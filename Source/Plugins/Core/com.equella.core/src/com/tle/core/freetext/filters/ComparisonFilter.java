@@ -19,6 +19,7 @@
 package com.tle.core.freetext.filters;
 
 import java.io.IOException;
+import java.util.Objects;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
@@ -78,4 +79,18 @@ public class ComparisonFilter extends Filter {
 
     return bits;
   }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof ComparisonFilter)) {
+      return false;
+    }
+    ComparisonFilter other = (ComparisonFilter) obj;
+    return field.equals(other.field) && start.equals(other.start) && end.equals(other.end);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(field, start, end);
+  }
 }
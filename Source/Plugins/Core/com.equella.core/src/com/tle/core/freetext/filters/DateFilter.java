@@ -70,4 +70,14 @@ public class DateFilter extends Filter {
   public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
     return subfilter.getDocIdSet(reader);
   }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof DateFilter && subfilter.equals(((DateFilter) obj).subfilter);
+  }
+
+  @Override
+  public int hashCode() {
+    return subfilter.hashCode();
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.freetext.filters;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+
+/**
+ * Per-segment doc sets of filters that are repeated across queries, such as the institution
+ * filter. Filters are used as their own keys, so a cached filter must implement equals and
+ * hashCode over everything that determines its doc set.
+ *
+ * <p>Doc sets are keyed on the segment's core cache key so they are shared by every reader opened
+ * on that segment, and released when the segment is merged away. Deleted documents are never
+ * scored, so a doc set built before a deletion is still valid.
+ */
+@NonNullByDefault
+@SuppressWarnings("nls")
+public class FilterCache {
+  private static final int MAX_FILTERS_PER_SEGMENT = 200;
+
+  private final Cache<Object, Cache<Filter, DocIdSet>> segments =
+      CacheBuilder.newBuilder().weakKeys().build();
+
+  /** The doc sets returned by the wrapper are shared and must not be modified. */
+  public Filter wrap(Filter filter) {
+    return new CachingFilter(this, filter);
+  }
+
+  private DocIdSet getDocIdSet(IndexReader segment, Filter filter) throws IOException {
+    final Cache<Filter, DocIdSet> filters;
+    try {
+      filters =
+          segments.get(
+              segment.getCoreCacheKey(),
+              () ->
+                  CacheBuilder.newBuilder()
+                      .maximumSize(MAX_FILTERS_PER_SEGMENT)
+                      .expireAfterAccess(30, TimeUnit.MINUTES)
+                      .build());
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+
+    DocIdSet docs = filters.getIfPresent(filter);
+    if (docs == null) {
+      docs = filter.getDocIdSet(segment);
+      if (docs != null && docs.isCacheable()) {
+        filters.put(filter, docs);
+      }
+    }
+    return docs;
+  }
+
+  private static final class CachingFilter extends Filter {
+    private static final long serialVersionUID = 1L;
+
+    private final transient FilterCache cache;
+    private final Filter filter;
+
+    CachingFilter(FilterCache cache, Filter filter) {
+      this.cache = cache;
+      this.filter = filter;
+    }
+
+    @Nullable
+    @Override
+    public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+      // Only segments are worth caching, top level readers change on every reopen
+      if (reader.getSequentialSubReaders() != null) {
+        return filter.getDocIdSet(reader);
+      }
+      return cache.getDocIdSet(reader, filter);
+    }
+
+    @Override
+    public String toString() {
+      return "CachingFilter(" + filter + ")";
+    }
+  }
+}
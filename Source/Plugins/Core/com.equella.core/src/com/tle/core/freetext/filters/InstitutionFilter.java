@@ -32,12 +32,21 @@ import org.apache.lucene.util.OpenBitSet;
 public class InstitutionFilter extends Filter {
   private static final long serialVersionUID = 1L;
 
+  private final long institutionId;
+
+  public InstitutionFilter() {
+    this(CurrentInstitution.get());
+  }
+
+  public InstitutionFilter(Institution institution) {
+    this.institutionId = institution.getUniqueId();
+  }
+
   @Override
   public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
     int max = reader.maxDoc();
     OpenBitSet good = new OpenBitSet(max);
-    Institution institution = CurrentInstitution.get();
-    Term term = new Term(FreeTextQuery.FIELD_INSTITUTION, Long.toString(institution.getUniqueId()));
+    Term term = new Term(FreeTextQuery.FIELD_INSTITUTION, Long.toString(institutionId));
     TermDocs docs = reader.termDocs(term);
     while (docs.next()) {
       good.set(docs.doc());
@@ -45,4 +54,15 @@ public class InstitutionFilter extends Filter {
     docs.close();
     return good;
   }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof InstitutionFilter
+        && ((InstitutionFilter) obj).institutionId == institutionId;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(institutionId);
+  }
 }
@@ -18,6 +18,7 @@
 
 package com.tle.core.freetext.filters;
 
+import com.google.common.collect.ImmutableList;
 import com.tle.common.searching.Field;
 import java.io.IOException;
 import java.util.List;
@@ -30,10 +31,19 @@ import org.apache.lucene.util.OpenBitSet;
 
 public class MustFilter extends Filter {
   private static final long serialVersionUID = 1L;
-  protected List<List<Field>> terms;
+  protected final List<List<Field>> terms;
 
   public MustFilter(List<List<Field>> terms) {
-    this.terms = terms;
+    // Filters are used as cache keys, so take a copy the caller can't change
+    final ImmutableList.Builder<List<Field>> copy = ImmutableList.builder();
+    for (List<Field> values : terms) {
+      final ImmutableList.Builder<Field> fields = ImmutableList.builder();
+      for (Field field : values) {
+        fields.add(new Field(field.getField(), field.getValue()));
+      }
+      copy.add(fields.build());
+    }
+    this.terms = copy.build();
   }
 
   @Override
@@ -64,4 +74,14 @@ public class MustFilter extends Filter {
     }
     return prev;
   }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj != null && obj.getClass() == getClass() && terms.equals(((MustFilter) obj).terms);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * getClass().hashCode() + terms.hashCode();
+  }
 }
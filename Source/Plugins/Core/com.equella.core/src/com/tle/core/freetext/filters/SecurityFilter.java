@@ -19,13 +19,18 @@
 package com.tle.core.freetext.filters;
 
 import com.dytech.edge.queries.FreeTextQuery;
+import com.google.common.collect.Lists;
+import com.tle.annotation.Nullable;
 import com.tle.common.usermanagement.user.CurrentUser;
 import com.tle.common.usermanagement.user.UserState;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -35,11 +40,14 @@ import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.util.OpenBitSet;
+import org.apache.lucene.util.ReaderUtil;
 
 public class SecurityFilter extends Filter {
   private static final long serialVersionUID = 1L;
 
-  private OpenBitSet results;
+  // Filters are applied per segment, so keep the results of each
+  private final transient Map<IndexReader, OpenBitSet> segmentResults =
+      new IdentityHashMap<IndexReader, OpenBitSet>();
   private boolean onlyCollectResults;
 
   private String[] expressions;
@@ -47,12 +55,21 @@ public class SecurityFilter extends Filter {
   private TermValueComparator comparator = new TermValueComparator();
   private int ownerSizes;
   private boolean systemUser;
+  private String userId;
+
+  @Nullable private transient SecurityFilterCache cache;
+  @Nullable private SecurityFilterCache.Key cacheKey;
 
   public SecurityFilter(String aclType) {
+    this(aclType, null);
+  }
+
+  public SecurityFilter(String aclType, @Nullable SecurityFilterCache cache) {
     ownerExprMap = new HashMap<String, Boolean>();
 
     UserState userState = CurrentUser.getUserState();
     systemUser = userState.isSystem();
+    userId = CurrentUser.getUserID();
     Collection<Long> aclExpressions = userState.getCommonAclExpressions();
     Collection<Long> ownerAclExpressions = userState.getOwnerAclExpressions();
     Collection<Long> notOwnerAclExpressions = userState.getNotOwnerAclExpressions();
@@ -83,10 +100,56 @@ public class SecurityFilter extends Filter {
         ownerExprMap.put(aclStr, false);
       }
     }
+
+    if (!systemUser && cache != null && cache.isEnabled()) {
+      this.cache = cache;
+      this.cacheKey =
+          new SecurityFilterCache.Key(
+              aclType,
+              sorted(aclExpressions),
+              sorted(ownerAclExpressions),
+              sorted(notOwnerAclExpressions),
+              ownerSizes > 0 ? userId : null);
+    }
   }
 
-  public OpenBitSet getResults() {
-    return results;
+  private static long[] sorted(@Nullable Collection<Long> expressions) {
+    if (expressions == null) {
+      return new long[0];
+    }
+    long[] ids = new long[expressions.size()];
+    int i = 0;
+    for (Long id : expressions) {
+      ids[i++] = id;
+    }
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  /**
+   * @param reader The reader that was searched, or one of its segments
+   * @return The documents of the reader that the user has the privilege on. Must not be modified.
+   */
+  public OpenBitSet getResults(IndexReader reader) {
+    OpenBitSet bits = segmentResults.get(reader);
+    if (bits != null) {
+      return bits;
+    }
+
+    List<IndexReader> segments = Lists.newArrayList();
+    ReaderUtil.gatherSubReaders(segments, reader);
+    OpenBitSet all = new OpenBitSet(reader.maxDoc());
+    int docBase = 0;
+    for (IndexReader segment : segments) {
+      OpenBitSet segmentBits = segmentResults.get(segment);
+      if (segmentBits != null) {
+        for (int doc = segmentBits.nextSetBit(0); doc >= 0; doc = segmentBits.nextSetBit(doc + 1)) {
+          all.fastSet(docBase + doc);
+        }
+      }
+      docBase += segment.maxDoc();
+    }
+    return all;
   }
 
   public void setOnlyCollectResults(boolean onlyCollectResults) {
@@ -94,15 +157,35 @@ public class SecurityFilter extends Filter {
   }
 
   @Override
-  public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+  public DocIdSet getDocIdSet(final IndexReader reader) throws IOException {
     final int max = reader.maxDoc();
-    results = new OpenBitSet(max);
+    final OpenBitSet bits;
+    if (cache != null && cacheKey != null && reader.getSequentialSubReaders() == null) {
+      bits = cache.get(reader, cacheKey, () -> getSecurityBits(reader));
+    } else {
+      bits = getSecurityBits(reader);
+    }
+    segmentResults.put(reader, bits);
+
+    // If we are only collecting results, we return a full bitset to match
+    // every document.
+    if (onlyCollectResults) {
+      OpenBitSet fullBitSet = new OpenBitSet(max);
+      fullBitSet.set(0, max);
+      return fullBitSet;
+    } else {
+      return bits;
+    }
+  }
+
+  private OpenBitSet getSecurityBits(IndexReader reader) throws IOException {
+    final int max = reader.maxDoc();
+    final OpenBitSet results = new OpenBitSet(max);
 
     if (!systemUser) {
       OpenBitSet owned = new OpenBitSet(max);
       if (ownerSizes > 0) {
-        TermDocs odocs =
-            reader.termDocs(new Term(FreeTextQuery.FIELD_OWNER, CurrentUser.getUserID()));
+        TermDocs odocs = reader.termDocs(new Term(FreeTextQuery.FIELD_OWNER, userId));
         while (odocs.next()) {
           owned.set(odocs.doc());
         }
@@ -154,15 +237,7 @@ public class SecurityFilter extends Filter {
       docs.close();
     }
 
-    // If we are only collecting results, we return a full bitset to match
-    // every document.
-    if (onlyCollectResults) {
-      OpenBitSet fullBitSet = new OpenBitSet(max);
-      fullBitSet.set(0, max);
-      return fullBitSet;
-    } else {
-      return results;
-    }
+    return results;
   }
 
   public static class TermValueComparator implements Comparator<Term>, Serializable {
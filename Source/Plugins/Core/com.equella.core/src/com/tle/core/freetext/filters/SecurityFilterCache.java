@@ -0,0 +1,225 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.freetext.filters;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.annotation.Nullable;
+import com.tle.core.guice.Bind;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.inject.Singleton;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.OpenBitSet;
+
+/**
+ * Per-segment security bitsets, keyed on the set of ACL expressions (rather than the user) so that
+ * everyone with the same expressions shares an entry. Segments are identified by their core cache
+ * key, so entries survive NRT reopens for as long as the segment does. The document's ACL terms
+ * can't change within a segment, and deleted documents are never scored, so an entry never needs
+ * invalidating.
+ *
+ * <p>The cache is bounded by the total size of the bitsets. Entries for merged away segments can
+ * never be hit again and are simply evicted.
+ */
+@Bind
+@Singleton
+@NonNullByDefault
+@SuppressWarnings("nls")
+public class SecurityFilterCache {
+  private static final Counter REQUESTS =
+      Counter.build()
+          .name("freetext_security_filter_cache_requests_total")
+          .help("Number of per-segment security bitset lookups, by hit or miss")
+          .labelNames("result")
+          .register();
+  private static final Gauge ENTRIES =
+      Gauge.build()
+          .name("freetext_security_filter_cache_entries")
+          .help("Number of per-segment security bitsets cached")
+          .register();
+  private static final Gauge BYTES =
+      Gauge.build()
+          .name("freetext_security_filter_cache_bytes")
+          .help("Size of the per-segment security bitsets cached")
+          .register();
+
+  @Inject(optional = true)
+  @Named("freetextIndex.securityCache.maxMegabytes")
+  private int maxMegabytes = 64;
+
+  @Nullable private Cache<SegmentKey, OpenBitSet> cache;
+
+  @PostConstruct
+  public void init() {
+    if (maxMegabytes > 0) {
+      cache =
+          CacheBuilder.newBuilder()
+              .maximumWeight(maxMegabytes * 1024L * 1024L)
+              .weigher((SegmentKey k, OpenBitSet v) -> bytes(v))
+              .expireAfterAccess(1, TimeUnit.HOURS)
+              .removalListener(
+                  (RemovalNotification<SegmentKey, OpenBitSet> n) -> {
+                    ENTRIES.dec();
+                    BYTES.dec(bytes(n.getValue()));
+                  })
+              .build();
+    }
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * @param segment An atomic (segment) reader
+   * @param loader Computes the bitset on a miss. The returned bitset is shared and must not be
+   *     modified.
+   */
+  public OpenBitSet get(IndexReader segment, Key key, Callable<OpenBitSet> loader)
+      throws IOException {
+    final Cache<SegmentKey, OpenBitSet> c = Objects.requireNonNull(cache);
+    final SegmentKey segKey = new SegmentKey(segment.getCoreCacheKey(), key);
+    final OpenBitSet cached = c.getIfPresent(segKey);
+    if (cached != null) {
+      REQUESTS.labels("hit").inc();
+      return cached;
+    }
+    REQUESTS.labels("miss").inc();
+    try {
+      return c.get(
+          segKey,
+          () -> {
+            OpenBitSet bits = loader.call();
+            ENTRIES.inc();
+            BYTES.inc(bytes(bits));
+            return bits;
+          });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private static int bytes(OpenBitSet bits) {
+    return bits.getNumWords() * 8;
+  }
+
+  /** The ACL expressions (and owner, if any are owner dependent) that determine a bitset. */
+  public static final class Key {
+    private final String privilegePrefix;
+    private final long[] common;
+    private final long[] owner;
+    private final long[] notOwner;
+    @Nullable private final String ownerId;
+    private final int hash;
+
+    /** The expression arrays must be sorted. */
+    public Key(
+        String privilegePrefix,
+        long[] common,
+        long[] owner,
+        long[] notOwner,
+        @Nullable String ownerId) {
+      this.privilegePrefix = privilegePrefix;
+      this.common = common;
+      this.owner = owner;
+      this.notOwner = notOwner;
+      this.ownerId = ownerId;
+      this.hash =
+          Objects.hash(
+              privilegePrefix,
+              Arrays.hashCode(common),
+              Arrays.hashCode(owner),
+              Arrays.hashCode(notOwner),
+              ownerId);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash
+          && privilegePrefix.equals(other.privilegePrefix)
+          && Objects.equals(ownerId, other.ownerId)
+          && Arrays.equals(common, other.common)
+          && Arrays.equals(owner, other.owner)
+          && Arrays.equals(notOwner, other.notOwner);
+    }
+  }
+
+  /**
+   * Holds the segment core weakly so that cached bitsets don't keep merged segments in memory.
+   * Once the core has been collected the key can't equal any other key.
+   */
+  private static final class SegmentKey {
+    private final WeakReference<Object> core;
+    private final Key key;
+    private final int hash;
+
+    SegmentKey(Object core, Key key) {
+      this.core = new WeakReference<Object>(core);
+      this.key = key;
+      this.hash = 31 * System.identityHashCode(core) + key.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof SegmentKey)) {
+        return false;
+      }
+      SegmentKey other = (SegmentKey) obj;
+      Object c = core.get();
+      return c != null && c == other.core.get() && key.equals(other.key);
+    }
+  }
+}
@@ -36,6 +36,15 @@ public class FreetextModule extends PropertiesModule {
     bindBoolean("textExtracter.indexAttachments");
     bindBoolean("textExtracter.indexImsPackages");
     bindLong("textExtracter.parseDurationCap");
+    bindBoolean("textExtracter.cacheExtractedText");
+    bindInt("freetextIndex.indexer.prepareThreads");
+    bindInt("freetextIndex.indexer.prepareBatch");
+    bindInt("freetextIndex.indexer.extractThreads");
+    bindInt("freetextIndex.indexer.extractQueueSize");
+    bindInt("freetextIndex.indexer.writeBatch");
+    bindInt("freetextIndex.indexer.writeQueueSize");
+    bindInt("freetextIndex.securityCache.maxMegabytes");
+    bindInt("freetextIndex.countCache.ttlSeconds");
     install(new FreetextMandatoryModule());
     install(new FreetextOptionalModule());
   }
@@ -43,12 +43,14 @@ import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.ReusableAnalyzerBase;
 import org.apache.lucene.analysis.WordlistLoader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.NRTManager;
 import org.apache.lucene.search.NRTManager.TrackingIndexWriter;
 import org.apache.lucene.search.NRTManagerReopenThread;
+import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
 import org.slf4j.Logger;
@@ -132,7 +134,17 @@ public abstract class AbstractIndexEngine {
         new TrackingIndexWriter(
             new IndexWriter(
                 directory, new IndexWriterConfig(LuceneConstants.LATEST_VERSION, getAnalyser())));
-    nrtManager = new NRTManager(trackingIndexWriter, null);
+    nrtManager =
+        new NRTManager(
+            trackingIndexWriter,
+            new SearcherFactory() {
+              @Override
+              public IndexSearcher newSearcher(IndexReader reader) throws IOException {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                warmSearcher(searcher);
+                return searcher;
+              }
+            });
 
     // Possibly reopen a searcher every 5 seconds if necessary in the
     // background
@@ -192,6 +204,15 @@ public abstract class AbstractIndexEngine {
     }
   }
 
+  /**
+   * Called whenever the NRT manager opens a new searcher, before it is handed out for searching.
+   * Use it to build any per-segment caches so that the first search after a reopen doesn't pay for
+   * them.
+   */
+  protected void warmSearcher(IndexSearcher searcher) throws IOException {
+    // Nothing by default
+  }
+
   public void setStopWordsFile(File stopWordsFile) {
     this.stopWordsFile = stopWordsFile;
   }
@@ -0,0 +1,248 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.freetext.index;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.common.Pair;
+import com.tle.core.freetext.filters.XPathFieldIterator;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.util.OpenBitSet;
+import org.apache.lucene.util.ReaderUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Column-oriented store of facet terms. For each index segment and facet field the terms are
+ * enumerated once and inverted into a document to term ordinals table, so counting facets for a
+ * search only visits the documents that matched rather than the postings of every term.
+ *
+ * <p>Columns are keyed on the segment's core cache key, so they survive NRT reopens for segments
+ * which haven't changed. Deleted documents never appear in the search bitset, so a column doesn't
+ * need rebuilding when deletions are applied to its segment.
+ *
+ * <p>All columns share one cache capped at 256MB, which drops those that haven't been used for an
+ * hour, including the columns of segments that have been merged away. Only fields faceted on
+ * within the last hour are built up front for new segments, so a one-off facet request doesn't add
+ * to the cost of every later reopen.
+ */
+@NonNullByDefault
+@SuppressWarnings("nls")
+public class FacetStore {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FacetStore.class);
+
+  private static final long MAX_COLUMN_BYTES = 256L * 1024 * 1024;
+  private static final int MAX_WARMED_FIELDS = 100;
+  private static final int UNUSED_MINUTES = 60;
+
+  /** Identifies each segment in {@link #columns} without keeping the segment itself reachable. */
+  private final Cache<Object, Object> segments = CacheBuilder.newBuilder().weakKeys().build();
+
+  private final Cache<Pair<Object, String>, FacetColumn> columns =
+      CacheBuilder.newBuilder()
+          .maximumWeight(MAX_COLUMN_BYTES)
+          .weigher((Pair<Object, String> key, FacetColumn column) -> column.getWeight())
+          .expireAfterAccess(UNUSED_MINUTES, TimeUnit.MINUTES)
+          .build();
+
+  /** Fields recently faceted on, and so worth building for new segments up front. */
+  private final Cache<String, Boolean> recentFields =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_WARMED_FIELDS)
+          .expireAfterAccess(UNUSED_MINUTES, TimeUnit.MINUTES)
+          .build();
+
+  /**
+   * Counts the number of documents in <code>docs</code> for each term of each field.
+   *
+   * @param reader The top level reader that <code>docs</code> was collected against.
+   * @param docs The matching documents, using top level document numbers.
+   * @return Field to (term, count) pairs, in term order. Terms with no matches are left out.
+   */
+  public Multimap<String, Pair<String, Integer>> count(
+      IndexReader reader, OpenBitSet docs, Collection<String> fields) throws IOException {
+    final List<IndexReader> subReaders = getSegments(reader);
+    final Multimap<String, Pair<String, Integer>> rv = ArrayListMultimap.create();
+    for (String field : fields) {
+      recentFields.put(field, Boolean.TRUE);
+
+      // Same term can appear in many segments, merge them in term order
+      final Map<Term, Integer> counts = new TreeMap<Term, Integer>();
+      int docBase = 0;
+      for (IndexReader segment : subReaders) {
+        getColumn(segment, field).count(docs, docBase, counts);
+        docBase += segment.maxDoc();
+      }
+      for (Map.Entry<Term, Integer> entry : counts.entrySet()) {
+        rv.put(field, new Pair<String, Integer>(entry.getKey().text(), entry.getValue()));
+      }
+    }
+    return rv;
+  }
+
+  /**
+   * Builds the columns of recently faceted fields for segments that don't have them yet. Intended
+   * to be called when a new searcher is opened, before it is used for searching.
+   */
+  public void warm(IndexReader reader) throws IOException {
+    // Doesn't count as using the fields, so they still expire if nobody facets on them
+    final Set<String> fields = ImmutableSet.copyOf(recentFields.asMap().keySet());
+    if (fields.isEmpty()) {
+      return;
+    }
+    long t1 = System.currentTimeMillis();
+    for (IndexReader segment : getSegments(reader)) {
+      for (String field : fields) {
+        getColumn(segment, field);
+      }
+    }
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug(
+          "Warmed facet columns for "
+              + fields.size()
+              + " fields in "
+              + (System.currentTimeMillis() - t1)
+              + "ms");
+    }
+  }
+
+  private FacetColumn getColumn(final IndexReader segment, String field) throws IOException {
+    final Pair<Object, String> key;
+    try {
+      key = new Pair<Object, String>(segments.get(segment.getCoreCacheKey(), Object::new), field);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+    FacetColumn column = columns.getIfPresent(key);
+    if (column == null) {
+      // Worst case two threads build the same column, which is harmless
+      column = FacetColumn.build(segment, field);
+      FacetColumn existing = columns.asMap().putIfAbsent(key, column);
+      if (existing != null) {
+        column = existing;
+      }
+    }
+    return column;
+  }
+
+  static List<IndexReader> getSegments(IndexReader reader) {
+    List<IndexReader> subReaders = Lists.newArrayList();
+    ReaderUtil.gatherSubReaders(subReaders, reader);
+    return subReaders;
+  }
+
+  /**
+   * The terms of a single field for a single segment. <code>ords</code> holds the term ordinals for
+   * each document, with the ordinals of document <code>n</code> stored from <code>docStarts[n]
+   * </code> up to (but not including) <code>docStarts[n + 1]</code>.
+   */
+  static final class FacetColumn {
+    private final Term[] terms;
+    private final int[] docStarts;
+    private final int[] ords;
+
+    private FacetColumn(Term[] terms, int[] docStarts, int[] ords) {
+      this.terms = terms;
+      this.docStarts = docStarts;
+      this.ords = ords;
+    }
+
+    static FacetColumn build(IndexReader segment, String field) throws IOException {
+      final int maxDoc = segment.maxDoc();
+      final List<Term> terms = Lists.newArrayList();
+      final int[] docStarts = new int[maxDoc + 1];
+
+      TermDocs docs = segment.termDocs();
+      try {
+        // First pass counts the terms per document
+        for (Term term : new XPathFieldIterator(segment, field, "")) {
+          terms.add(term);
+          docs.seek(term);
+          while (docs.next()) {
+            docStarts[docs.doc() + 1]++;
+          }
+        }
+        for (int i = 0; i < maxDoc; i++) {
+          docStarts[i + 1] += docStarts[i];
+        }
+
+        // Second pass fills in the ordinals
+        final int[] ords = new int[docStarts[maxDoc]];
+        final int[] next = new int[maxDoc];
+        System.arraycopy(docStarts, 0, next, 0, maxDoc);
+        for (int ord = 0; ord < terms.size(); ord++) {
+          docs.seek(terms.get(ord));
+          while (docs.next()) {
+            ords[next[docs.doc()]++] = ord;
+          }
+        }
+        return new FacetColumn(terms.toArray(new Term[terms.size()]), docStarts, ords);
+      } finally {
+        docs.close();
+      }
+    }
+
+    /** Roughly the number of bytes held by the column. */
+    int getWeight() {
+      long bytes = 4L * (docStarts.length + ords.length);
+      for (Term term : terms) {
+        // Term and String headers plus the characters
+        bytes += 64 + 2L * term.text().length();
+      }
+      return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    void count(OpenBitSet docs, int docBase, Map<Term, Integer> counts) {
+      if (terms.length == 0) {
+        return;
+      }
+      final int maxDoc = docStarts.length - 1;
+      final int[] termCounts = new int[terms.length];
+      int doc = docs.nextSetBit(docBase);
+      while (doc != -1 && doc < docBase + maxDoc) {
+        final int local = doc - docBase;
+        for (int i = docStarts[local]; i < docStarts[local + 1]; i++) {
+          termCounts[ords[i]]++;
+        }
+        doc = docs.nextSetBit(doc + 1);
+      }
+      for (int ord = 0; ord < termCounts.length; ord++) {
+        final int count = termCounts[ord];
+        if (count > 0) {
+          counts.merge(terms[ord], count, Integer::sum);
+        }
+      }
+    }
+  }
+}
@@ -22,7 +22,7 @@ import com.dytech.edge.exceptions.InvalidDateRangeException;
 import com.dytech.edge.exceptions.InvalidSearchQueryException;
 import com.dytech.edge.exceptions.RuntimeApplicationException;
 import com.dytech.edge.queries.FreeTextQuery;
-import com.google.common.collect.ArrayListMultimap;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -44,11 +44,13 @@ import com.tle.common.util.Dates;
 import com.tle.common.util.LocalDate;
 import com.tle.common.util.TleDate;
 import com.tle.core.freetext.filters.DateFilter;
+import com.tle.core.freetext.filters.FilterCache;
 import com.tle.core.freetext.filters.InstitutionFilter;
 import com.tle.core.freetext.filters.MustFilter;
 import com.tle.core.freetext.filters.MustNotFilter;
 import com.tle.core.freetext.filters.SecurityFilter;
-import com.tle.core.freetext.filters.XPathFieldIterator;
+import com.tle.core.freetext.filters.SecurityFilterCache;
+import com.tle.core.freetext.index.ItemKeyCache.ItemKeys;
 import com.tle.core.freetext.queries.FreeTextAutocompleteQuery;
 import com.tle.core.freetext.queries.FreeTextBooleanQuery;
 import com.tle.core.freetext.queries.FreeTextDateQuery;
@@ -69,13 +71,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -85,7 +87,6 @@ import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldSelector;
-import org.apache.lucene.document.FieldSelectorResult;
 import org.apache.lucene.document.SetBasedFieldSelector;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
@@ -99,9 +100,11 @@ import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.ChainedFilter;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.FieldCacheRangeFilter;
 import org.apache.lucene.search.FieldComparatorSource;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MultiPhraseQuery;
@@ -118,7 +121,9 @@ import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TermRangeQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.util.OpenBitSet;
 import org.apache.lucene.util.Version;
@@ -144,6 +149,7 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
           "ACLL-");
 
   @Inject private FreetextIndex freetextIndex;
+  @Inject private SecurityFilterCache securityFilterCache;
 
   private float titleBoost;
   private float descriptionBoost;
@@ -154,6 +160,13 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
 
   private FieldSelector keyFieldSelector;
 
+  /** Stored fields needed by createResult() other than the item key, or null if there are none. */
+  @Nullable private FieldSelector resultFieldSelector;
+
+  private final FacetStore facetStore = new FacetStore();
+  private final ItemKeyCache itemKeyCache = new ItemKeyCache();
+  private final FilterCache filterCache = new FilterCache();
+
   @PostConstruct
   @Override
   public void afterPropertiesSet() throws IOException {
@@ -161,10 +174,22 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
     setDefaultOperator(freetextIndex.getDefaultOperator());
     setAnalyzerLanguage(freetextIndex.getAnalyzerLanguage());
     keyFieldSelector = new SetBasedFieldSelector(getKeyFields(), new HashSet<String>());
+    Set<String> resultFields = getKeyFields();
+    resultFields.removeAll(Arrays.asList(FreeTextQuery.FIELD_UNIQUE, FreeTextQuery.FIELD_ID));
+    resultFieldSelector =
+        resultFields.isEmpty()
+            ? null
+            : new SetBasedFieldSelector(resultFields, new HashSet<String>());
 
     super.afterPropertiesSet();
   }
 
+  @Override
+  protected void warmSearcher(IndexSearcher searcher) throws IOException {
+    itemKeyCache.getKeys(searcher.getIndexReader());
+    facetStore.warm(searcher.getIndexReader());
+  }
+
   private float getRealBoostValue(int savedBoostValue) {
     switch (savedBoostValue) {
       case 0:
@@ -279,7 +304,8 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
             SecurityFilter deleteablesFilter = null;
             String collectPriv = searchreq.getPrivilegeToCollect();
             if (collectPriv != null) {
-              deleteablesFilter = new SecurityFilter(getPrefixForPrivilege(collectPriv));
+              deleteablesFilter =
+                  new SecurityFilter(getPrefixForPrivilege(collectPriv), securityFilterCache);
               deleteablesFilter.setOnlyCollectResults(true);
               filters.add(deleteablesFilter);
             }
@@ -370,6 +396,66 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
         });
   }
 
+  /**
+   * Performs a search and returns the page of results following the given cursor. Unlike {@link
+   * #search(Search, int, int, boolean)} earlier pages don't need to be collected again, so this is
+   * the way to walk through a large result set. The sort is the same as for a normal search, but
+   * ties are broken by item key so that a cursor identifies a single position. Results aren't
+   * checked for keyword matches in attachments.
+   *
+   * @param after The cursor from the previous page, or null for the first page.
+   * @param count Greater than 0.
+   * @return Results with a cursor for the next page, and the number of results remaining from
+   *     this page onwards as the available count.
+   */
+  public CursorSearchResults<T> searchAfter(
+      final Search searchreq,
+      @Nullable final SearchCursor after,
+      final int count,
+      final boolean searchAttachment) {
+    Preconditions.checkArgument(count > 0);
+    return search(
+        new Searcher<CursorSearchResults<T>>() {
+          @Override
+          public CursorSearchResults<T> search(IndexSearcher searcher) throws IOException {
+            Collection<Filter> filters = getFilters(searchreq);
+            SecurityFilter deleteablesFilter = null;
+            String collectPriv = searchreq.getPrivilegeToCollect();
+            if (collectPriv != null) {
+              deleteablesFilter =
+                  new SecurityFilter(getPrefixForPrivilege(collectPriv), securityFilterCache);
+              deleteablesFilter.setOnlyCollectResults(true);
+              filters.add(deleteablesFilter);
+            }
+            Filter filter =
+                new ChainedFilter(filters.toArray(new Filter[filters.size()]), ChainedFilter.AND);
+
+            Sort sorter = getCursorSorter(searchreq);
+            Query query = getQuery(searchreq, searcher.getIndexReader(), searchAttachment);
+
+            TopFieldCollector topCollector =
+                TopFieldCollector.create(sorter, count, true, false, false, true);
+            searcher.search(
+                query,
+                filter,
+                after == null
+                    ? topCollector
+                    : new SearchAfterCollector(sorter, after.getLastHit(), topCollector));
+
+            final TopDocs hits = topCollector.topDocs();
+            final SearchResults<T> results =
+                getResultsFromTopDocs(searcher, hits, 0, deleteablesFilter, searchreq);
+            final ScoreDoc[] scoreDocs = hits.scoreDocs;
+            SearchCursor cursor = null;
+            if (hits.totalHits > scoreDocs.length) {
+              cursor = new SearchCursor((FieldDoc) scoreDocs[scoreDocs.length - 1]);
+            }
+            return new CursorSearchResults<T>(
+                results.getResults(), results.getCount(), hits.totalHits, cursor);
+          }
+        });
+  }
+
   private Query addUniqueIdClauseToQuery(
       Query query, SearchResults<T> itemResults, IndexReader reader) {
     List<T> results = itemResults.getResults();
@@ -423,7 +509,8 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
             SecurityFilter deleteablesFilter = null;
             String collectPriv = searchreq.getPrivilegeToCollect();
             if (collectPriv != null) {
-              deleteablesFilter = new SecurityFilter(getPrefixForPrivilege(collectPriv));
+              deleteablesFilter =
+                  new SecurityFilter(getPrefixForPrivilege(collectPriv), securityFilterCache);
               deleteablesFilter.setOnlyCollectResults(true);
               filters.add(deleteablesFilter);
             }
@@ -439,13 +526,10 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
             LongSet docIdSet = compCollector.getSet();
 
             LongSet longSet = new LongSet(new FastSet());
-            FieldSelector fieldSelector = new ItemIdFieldSelector();
+            ItemKeys keys = itemKeyCache.getKeys(indexReader);
             Iterator<Long> iterator = docIdSet.iterator();
             while (iterator.hasNext()) {
-              long doc = iterator.next();
-              Document document = indexReader.document((int) doc, fieldSelector);
-              long key = Long.parseLong(document.get(FreeTextQuery.FIELD_ID));
-              longSet.add(key);
+              longSet.add(getKey(searcher, keys, iterator.next().intValue()));
             }
             LongSet results = new LongSet(new ConciseSet());
             results.addAll(longSet);
@@ -485,18 +569,24 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
   protected LongSet getBitSetFromTopDocs(IndexSearcher searcher, TopDocs hits, int firstHit)
       throws IOException {
     LongSet longSet = new LongSet(new ConciseSet());
+    ItemKeys keys = itemKeyCache.getKeys(searcher.getIndexReader());
     ScoreDoc[] results = hits.scoreDocs;
     if (firstHit < results.length) {
       for (int i = firstHit; i < results.length; i++) {
-        int docId = results[i].doc;
-        Document doc = searcher.doc(docId, keyFieldSelector);
-        ItemIdKey key = getKeyForDocument(doc);
-        longSet.add(key.getKey());
+        longSet.add(getKey(searcher, keys, results[i].doc));
       }
     }
     return longSet;
   }
 
+  private long getKey(IndexSearcher searcher, ItemKeys keys, int docId) throws IOException {
+    long key = keys.getKey(docId);
+    if (key == -1) {
+      return getKeyForDocument(searcher.doc(docId, keyFieldSelector)).getKey();
+    }
+    return key;
+  }
+
   protected SearchResults<T> getResultsFromTopDocs(
       IndexSearcher searcher,
       TopDocs hits,
@@ -508,7 +598,7 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
 
     OpenBitSet deleteableDocIds = null;
     if (deleteables != null) {
-      deleteableDocIds = deleteables.getResults();
+      deleteableDocIds = deleteables.getResults(searcher.getIndexReader());
     }
 
     boolean sortByRelevance = false;
@@ -522,13 +612,22 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
       }
     }
 
+    ItemKeys keys = itemKeyCache.getKeys(searcher.getIndexReader());
     ScoreDoc[] results = hits.scoreDocs;
     if (firstHit < results.length) {
       for (int i = firstHit; i < results.length; i++) {
         int docId = results[i].doc;
         float relevance = results[i].score;
-        Document doc = searcher.doc(docId, keyFieldSelector);
-        ItemIdKey key = getKeyForDocument(doc);
+        ItemIdKey key = keys.getItemIdKey(docId);
+        Document doc;
+        if (key == null) {
+          doc = searcher.doc(docId, keyFieldSelector);
+          key = getKeyForDocument(doc);
+        } else if (resultFieldSelector != null) {
+          doc = searcher.doc(docId, resultFieldSelector);
+        } else {
+          doc = new Document();
+        }
         T result = createResult(key, doc, relevance, sortByRelevance);
         if (deleteableDocIds != null && deleteableDocIds.get(docId)) {
           result.setMatchesPrivilege(true);
@@ -578,16 +677,81 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
         });
   }
 
+  /**
+   * Counts a batch of searches with one searcher. Each segment is visited once, counting the
+   * matches of every search against it, so the searches share the segment's filter doc sets (e.g.
+   * the institution and security filters) from the filter caches.
+   *
+   * @return The count for each search, in order
+   */
+  public int[] count(final List<? extends Search> searchreqs, final boolean isSearchAttachment) {
+    return search(
+        new Searcher<int[]>() {
+          @Override
+          public int[] search(IndexSearcher searcher) throws IOException {
+            final int size = searchreqs.size();
+            final Filter[] filters = new Filter[size];
+            final Weight[] weights = new Weight[size];
+            for (int i = 0; i < size; i++) {
+              Search searchreq = searchreqs.get(i);
+              filters[i] = getFilter(searchreq);
+              weights[i] =
+                  searcher.createNormalizedWeight(getQuery(searchreq, null, isSearchAttachment));
+            }
+
+            final int[] counts = new int[size];
+            for (IndexReader segment : FacetStore.getSegments(searcher.getIndexReader())) {
+              for (int i = 0; i < size; i++) {
+                counts[i] += countMatches(segment, weights[i], filters[i]);
+              }
+            }
+
+            if (LOGGER.isDebugEnabled()) {
+              LOGGER.debug("Counted " + Arrays.toString(counts) + " for " + size + " searches");
+            }
+            return counts;
+          }
+        });
+  }
+
+  private int countMatches(IndexReader segment, Weight weight, Filter filter) throws IOException {
+    DocIdSet docs = filter.getDocIdSet(segment);
+    DocIdSetIterator filterDocs = docs == null ? null : docs.iterator();
+    Scorer scorer = weight.scorer(segment, true, false);
+    if (filterDocs == null || scorer == null) {
+      return 0;
+    }
+
+    // Leapfrog the filter and the query, as IndexSearcher does for a filtered search
+    int count = 0;
+    int filterDoc = filterDocs.nextDoc();
+    int scorerDoc = scorer.advance(filterDoc);
+    while (true) {
+      if (scorerDoc == filterDoc) {
+        if (scorerDoc == DocIdSetIterator.NO_MORE_DOCS) {
+          break;
+        }
+        count++;
+        filterDoc = filterDocs.nextDoc();
+        scorerDoc = scorer.advance(filterDoc);
+      } else if (scorerDoc > filterDoc) {
+        filterDoc = filterDocs.advance(scorerDoc);
+      } else {
+        scorerDoc = scorer.advance(filterDoc);
+      }
+    }
+    return count;
+  }
+
   /**
    * A simplified implementation of matrixSearch() that only works on a single field, and currently
    * only returns the count per term. It could easily be extended to return a list of ItemIds per
    * term, it simply wasn't necessary when I was writing it!
    *
    * <p>This simplified implementation was written to overcome the memory pressures that
-   * matrixSearch() creates when you have over half a million terms for a field. MatrixSearch()
-   * creates *many* BitSets that it holds on to to reuse as it recurse through a list of fields.
-   * Since we only care about a single field in this implementation, we can avoid generating and
-   * holding onto BitSets.
+   * matrixSearch() creates when you have over half a million terms for a field. Counting is done
+   * against the {@link FacetStore} columns, so the cost depends on the number of matching
+   * documents rather than the number of terms in the field.
    */
   public Multimap<String, Pair<String, Integer>> facetCount(
       @Nullable final Search searchreq, final Collection<String> fields) {
@@ -599,26 +763,7 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
             final IndexReader reader = searcher.getIndexReader();
             final OpenBitSet filteredBits =
                 searchRequestToBitSet(searchreq, searcher, reader, false);
-
-            final Multimap<String, Pair<String, Integer>> rv = ArrayListMultimap.create();
-            for (String field : fields) {
-              for (Term term : new XPathFieldIterator(reader, field, "")) {
-                int count = 0;
-
-                TermDocs docs = reader.termDocs(term);
-                while (docs.next()) {
-                  if (filteredBits.get(docs.doc())) {
-                    count++;
-                  }
-                }
-                docs.close();
-
-                if (count > 0) {
-                  rv.put(field, new Pair<String, Integer>(term.text(), count));
-                }
-              }
-            }
-            return rv;
+            return facetStore.count(reader, filteredBits, fields);
           }
         });
   }
@@ -636,72 +781,29 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
 
             OpenBitSet filteredBits =
                 searchRequestToBitSet(searchreq, searcher, reader, searchAttachments);
-            int maxDoc = reader.maxDoc();
-
-            Map<String, Map<String, List<TermBitSet>>> xpathMap =
-                new HashMap<String, Map<String, List<TermBitSet>>>();
-
-            List<OpenBitSet> perFieldBitSets = new ArrayList<OpenBitSet>();
-            OpenBitSet allDocs = new OpenBitSet();
-            for (String field : fields) {
-              boolean hasXpaths = field.indexOf('[') != -1;
-              OpenBitSet perFieldBitSet = new OpenBitSet(maxDoc);
-              for (Term term : new XPathFieldIterator(reader, field, "")) {
-                OpenBitSet set = new OpenBitSet(maxDoc);
-                TermDocs docs = reader.termDocs(term);
-                while (docs.next()) {
-                  set.set(docs.doc());
-                }
-                docs.close();
-                perFieldBitSet.or(set);
-                allDocs.or(set);
-                String xpathKey = "";
-                if (hasXpaths) {
-                  String fieldName = term.field();
-                  int ind = fieldName.lastIndexOf(']');
-                  if (ind != -1) {
-                    xpathKey = fieldName.substring(0, ind + 1);
-                  }
-                }
-                addFieldBitSet(term, set, xpathKey, xpathMap, field);
-              }
-              // Simulate blank Term's for each field, that has at least
-              // one
-              // matching field
-              addFieldBitSet(new Term(field, ""), perFieldBitSet, "", xpathMap, field);
-              perFieldBitSets.add(perFieldBitSet);
-            }
-            for (OpenBitSet set : perFieldBitSets) {
-              set.xor(allDocs);
-            }
-
-            MatrixResults results = new MatrixResults();
-            results.setFields(fields);
-
-            Map<String, List<TermBitSet>> blankPaths = xpathMap.get("");
-            for (Map<String, List<TermBitSet>> map : xpathMap.values()) {
-              List<List<TermBitSet>> fieldsToRecurse = new ArrayList<List<TermBitSet>>();
-              for (String field : fields) {
-                List<TermBitSet> list = map.get(field);
-                if (list == null) {
-                  list = blankPaths.get(field);
-                }
-                fieldsToRecurse.add(list);
-              }
-              recurseTerms(
-                  fieldsToRecurse,
-                  0,
-                  new String[fields.size()],
-                  filteredBits,
-                  results,
-                  reader,
-                  countOnly);
+            if (countOnly && fields.size() == 1) {
+              // Same as a facet count, so use the facet columns
+              return facetsToMatrix(fields, facetStore.count(reader, filteredBits, fields));
             }
-            return results;
+            return new MatrixSearcher(
+                    reader, filteredBits, countOnly ? null : itemKeyCache.getKeys(reader))
+                .search(fields);
           }
         });
   }
 
+  private MatrixResults facetsToMatrix(
+      List<String> fields, Multimap<String, Pair<String, Integer>> facets) {
+    MatrixResults results = new MatrixResults();
+    results.setFields(fields);
+    for (Pair<String, Integer> facet : facets.values()) {
+      results.addEntry(
+          new MatrixResults.MatrixEntry(
+              Lists.newArrayList(facet.getFirst()), null, facet.getSecond()));
+    }
+    return results;
+  }
+
   private OpenBitSet searchRequestToBitSet(
       @Nullable final Search searchreq,
       IndexSearcher searcher,
@@ -764,36 +866,6 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
         });
   }
 
-  private void addFieldBitSet(
-      Term term,
-      OpenBitSet set,
-      String xpathKey,
-      Map<String, Map<String, List<TermBitSet>>> xpathMap,
-      String field) {
-    Map<String, List<TermBitSet>> map = xpathMap.get(xpathKey);
-    if (map == null) {
-      map = new HashMap<String, List<TermBitSet>>();
-      xpathMap.put(xpathKey, map);
-    }
-    List<TermBitSet> list = map.get(field);
-    if (list == null) {
-      list = new ArrayList<TermBitSet>();
-      map.put(field, list);
-    }
-    list.add(new TermBitSet(term, set));
-  }
-
-  private final class ItemIdFieldSelector implements FieldSelector {
-    @Override
-    public FieldSelectorResult accept(String fieldName) {
-      if (FreeTextQuery.FIELD_ID.equals(fieldName)) {
-        return FieldSelectorResult.LOAD_AND_BREAK;
-      } else {
-        return FieldSelectorResult.NO_LOAD;
-      }
-    }
-  }
-
   protected final class CompressedSetCollector extends Collector {
 
     private final LongSet set = new LongSet(new ConciseSet());
@@ -824,74 +896,6 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
     }
   }
 
-  public static class TermBitSet {
-    Term term;
-    OpenBitSet bitSet;
-
-    public TermBitSet(Term term, OpenBitSet bitSet) {
-      this.term = term;
-      this.bitSet = bitSet;
-    }
-  }
-
-  private void recurseTerms(
-      List<List<TermBitSet>> bitSets,
-      int index,
-      String[] curValues,
-      OpenBitSet curBits,
-      MatrixResults results,
-      IndexReader reader,
-      boolean countOnly) {
-    List<TermBitSet> termBitSetList = bitSets.get(index);
-    boolean last = index == curValues.length - 1;
-    for (TermBitSet termBitSet : termBitSetList) {
-      OpenBitSet termBits = termBitSet.bitSet;
-      Term term = termBitSet.term;
-      // if we don't intersect there's no point in recursing further in
-      if (curBits.intersects(termBits)) {
-        // Collect current term's value into the value array
-        curValues[index] = term.text();
-        OpenBitSet docBits = (OpenBitSet) curBits.clone();
-        docBits.and(termBits);
-        if (last) {
-          int count;
-          List<ItemIdKey> ids = null;
-          ArrayList<String> vals = new ArrayList<String>(Arrays.asList(curValues));
-          if (!countOnly) {
-            ids = getIdsForBitset(docBits, reader);
-            count = ids.size();
-          } else {
-            count = (int) docBits.cardinality();
-          }
-          results.addEntry(new MatrixResults.MatrixEntry(vals, ids, count));
-        } else {
-          recurseTerms(bitSets, index + 1, curValues, docBits, results, reader, countOnly);
-        }
-      }
-    }
-  }
-
-  private List<ItemIdKey> getIdsForBitset(OpenBitSet docBits, IndexReader reader) {
-    int docid = 0;
-    List<ItemIdKey> keys = new ArrayList<ItemIdKey>();
-    while (true) {
-      docid = docBits.nextSetBit(docid);
-      if (docid == -1) {
-        break;
-      }
-      Document doc;
-      try {
-        doc = reader.document(docid);
-      } catch (IOException e) {
-        throw new RuntimeException(e);
-      }
-      ItemIdKey key = getKeyForDocument(doc);
-      keys.add(key);
-      docid++;
-    }
-    return keys;
-  }
-
   /** Takes a search request and prepares a Lucene Query object. */
   protected Query getQuery(Search request, IndexReader reader, boolean searchAttachment) {
     final String[] fields =
@@ -988,11 +992,13 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
     Date[] dateRange = request.getDateRange();
     if (dateRange != null) {
       filters.add(
-          createDateFilter(
-              FreeTextQuery.FIELD_REALLASTMODIFIED,
+          cacheDateFilter(
               dateRange,
-              Dates.ISO,
-              request.useServerTimeZone()));
+              createDateFilter(
+                  FreeTextQuery.FIELD_REALLASTMODIFIED,
+                  dateRange,
+                  Dates.ISO,
+                  request.useServerTimeZone())));
     }
 
     Collection<com.tle.common.searching.DateFilter> dateFilters = request.getDateFilters();
@@ -1002,7 +1008,10 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
         String indexFieldName = dateFilter.getIndexFieldName();
         if (dateFilter.getFormat() == Format.ISO) {
           filters.add(
-              createDateFilter(indexFieldName, range, Dates.ISO, request.useServerTimeZone()));
+              cacheDateFilter(
+                  range,
+                  createDateFilter(
+                      indexFieldName, range, Dates.ISO, request.useServerTimeZone())));
         } else {
           Long start = range[0] != null ? range[0].getTime() : null;
           Long end = range[1] != null ? range[1].getTime() : null;
@@ -1017,7 +1026,7 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
       privPrefix = getPrefixForPrivilege(privilege);
     }
     if (privPrefix != null) {
-      filters.add(new SecurityFilter(privPrefix));
+      filters.add(new SecurityFilter(privPrefix, securityFilterCache));
     }
 
     List<List<Field>> must = request.getMust();
@@ -1026,19 +1035,33 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
       LOGGER.debug("Must " + must + ": Must Not: " + mustNot + " Privilege:" + privilege);
     }
     if (must != null && !must.isEmpty()) {
-      filters.add(new MustFilter(must));
+      filters.add(filterCache.wrap(new MustFilter(must)));
     }
     if (mustNot != null && !mustNot.isEmpty()) {
-      filters.add(new MustNotFilter(mustNot));
+      filters.add(filterCache.wrap(new MustNotFilter(mustNot)));
     }
     List<Field> matrixFields = request.getMatrixFields();
     if (matrixFields != null) {
       filters.add(new MatrixFilter(matrixFields));
     }
-    filters.add(new InstitutionFilter());
+    filters.add(filterCache.wrap(new InstitutionFilter()));
     return filters;
   }
 
+  /**
+   * Ranges relative to the current time would make a new cache entry on every search that is never
+   * hit again, so only ranges on whole minutes (such as the days picked in the date filters) are
+   * cached.
+   */
+  private Filter cacheDateFilter(Date[] range, DateFilter filter) {
+    for (Date date : range) {
+      if (date != null && date.getTime() % TimeUnit.MINUTES.toMillis(1) != 0) {
+        return filter;
+      }
+    }
+    return filterCache.wrap(filter);
+  }
+
   protected DateFilter createDateFilter(
       String fieldName, Date[] range, Dates indexDateFormat, boolean useServerTimeZone) {
     if (range.length != 2 || (range[0] != null && range[1] != null && range[0].after(range[1]))) {
@@ -1095,6 +1118,13 @@ public abstract class ItemIndex<T extends FreetextResult> extends AbstractIndexE
     return new Sort(new SortField(null, SortField.SCORE, false));
   }
 
+  private Sort getCursorSorter(Search request) {
+    SortField[] fields = getSorter(request).getSort();
+    SortField[] cursorFields = Arrays.copyOf(fields, fields.length + 1);
+    cursorFields[fields.length] = new SortField(FreeTextQuery.FIELD_ID, SortField.LONG);
+    return new Sort(cursorFields);
+  }
+
   /** @dytech.jira see Jira Review TLE-784 : http://apps.dytech.com.au/jira/browse/TLE-784 */
   protected Query addExtraQuery(@Nullable Query query, Search searchreq, IndexReader reader) {
     FreeTextQuery fullftQuery = searchreq.getFreeTextQuery();
@@ -0,0 +1,184 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.freetext.index;
+
+import com.dytech.edge.queries.FreeTextQuery;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.annotation.Nullable;
+import com.tle.beans.item.ItemIdKey;
+import com.tle.core.freetext.filters.FieldIterator;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+
+/**
+ * Per-segment columns of item keys, built from the indexed {@link FreeTextQuery#FIELD_ID} and
+ * {@link FreeTextQuery#FIELD_UNIQUE} terms. Resolving a document to its item then costs a couple
+ * of array lookups instead of a stored field load.
+ *
+ * <p>Columns are keyed on the segment's core cache key so they are shared by every reader opened
+ * on that segment, and released when the segment is merged away.
+ */
+@NonNullByDefault
+@SuppressWarnings("nls")
+public class ItemKeyCache {
+  private final Cache<Object, ItemKeyColumn> columns = CacheBuilder.newBuilder().weakKeys().build();
+
+  /** Gets the keys for all the segments of a top level reader. */
+  public ItemKeys getKeys(IndexReader reader) throws IOException {
+    List<IndexReader> segments = FacetStore.getSegments(reader);
+    List<ItemKeyColumn> segmentColumns = Lists.newArrayListWithCapacity(segments.size());
+    int[] docBases = new int[segments.size()];
+    int count = 0;
+    int docBase = 0;
+    for (IndexReader segment : segments) {
+      // Empty segments would confuse the doc base lookup
+      if (segment.maxDoc() > 0) {
+        segmentColumns.add(getColumn(segment));
+        docBases[count++] = docBase;
+      }
+      docBase += segment.maxDoc();
+    }
+    return new ItemKeys(
+        segmentColumns.toArray(new ItemKeyColumn[count]), Arrays.copyOf(docBases, count));
+  }
+
+  private ItemKeyColumn getColumn(final IndexReader segment) throws IOException {
+    try {
+      return columns.get(segment.getCoreCacheKey(), () -> ItemKeyColumn.build(segment));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /** A point in time view of the item keys of a top level reader. */
+  public static final class ItemKeys {
+    private final ItemKeyColumn[] columns;
+    private final int[] docBases;
+
+    ItemKeys(ItemKeyColumn[] columns, int[] docBases) {
+      this.columns = columns;
+      this.docBases = docBases;
+    }
+
+    /** @return The item's key, or -1 if the document has no item key indexed. */
+    public long getKey(int doc) {
+      int seg = segmentFor(doc);
+      return columns[seg].keys[doc - docBases[seg]];
+    }
+
+    /** @return The item's ID and key, or null if the document has no item key indexed. */
+    @Nullable
+    public ItemIdKey getItemIdKey(int doc) {
+      int seg = segmentFor(doc);
+      return columns[seg].getItemIdKey(doc - docBases[seg]);
+    }
+
+    private int segmentFor(int doc) {
+      int seg = Arrays.binarySearch(docBases, doc);
+      return seg >= 0 ? seg : -seg - 2;
+    }
+  }
+
+  /**
+   * The item keys of a single segment. UUIDs are stored once per segment and referenced by ordinal
+   * from each document.
+   */
+  static final class ItemKeyColumn {
+    private final long[] keys;
+    private final int[] uuidOrds;
+    private final int[] versions;
+    private final String[] uuids;
+
+    private ItemKeyColumn(long[] keys, int[] uuidOrds, int[] versions, String[] uuids) {
+      this.keys = keys;
+      this.uuidOrds = uuidOrds;
+      this.versions = versions;
+      this.uuids = uuids;
+    }
+
+    @Nullable
+    ItemIdKey getItemIdKey(int doc) {
+      long key = keys[doc];
+      int uuidOrd = uuidOrds[doc];
+      if (key == -1 || uuidOrd == -1) {
+        return null;
+      }
+      return new ItemIdKey(key, uuids[uuidOrd], versions[doc]);
+    }
+
+    static ItemKeyColumn build(IndexReader segment) throws IOException {
+      final int maxDoc = segment.maxDoc();
+      final long[] keys = new long[maxDoc];
+      final int[] uuidOrds = new int[maxDoc];
+      final int[] versions = new int[maxDoc];
+      final List<String> uuids = Lists.newArrayList();
+      Arrays.fill(keys, -1);
+      Arrays.fill(uuidOrds, -1);
+
+      TermDocs docs = segment.termDocs();
+      try {
+        FieldIterator ids = new FieldIterator(segment, FreeTextQuery.FIELD_ID, "");
+        while (ids.hasNext()) {
+          Term term = ids.next();
+          long key = Long.parseLong(term.text());
+          docs.seek(term);
+          while (docs.next()) {
+            keys[docs.doc()] = key;
+          }
+        }
+
+        // Terms are "uuid/version" and sorted, so all versions of an item are together
+        String lastUuid = null;
+        FieldIterator uniques = new FieldIterator(segment, FreeTextQuery.FIELD_UNIQUE, "");
+        while (uniques.hasNext()) {
+          Term term = uniques.next();
+          String unique = term.text();
+          int slash = unique.lastIndexOf('/');
+          String uuid = unique.substring(0, slash);
+          int version = Integer.parseInt(unique.substring(slash + 1));
+          if (!uuid.equals(lastUuid)) {
+            uuids.add(uuid);
+            lastUuid = uuid;
+          }
+          int uuidOrd = uuids.size() - 1;
+          docs.seek(term);
+          while (docs.next()) {
+            int doc = docs.doc();
+            uuidOrds[doc] = uuidOrd;
+            versions[doc] = version;
+          }
+        }
+      } finally {
+        docs.close();
+      }
+      return new ItemKeyColumn(keys, uuidOrds, versions, uuids.toArray(new String[uuids.size()]));
+    }
+  }
+}
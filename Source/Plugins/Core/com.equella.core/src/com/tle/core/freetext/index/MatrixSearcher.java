@@ -0,0 +1,268 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.freetext.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.annotation.Nullable;
+import com.tle.beans.item.ItemIdKey;
+import com.tle.core.freetext.filters.XPathFieldIterator;
+import com.tle.core.freetext.index.ItemKeyCache.ItemKeys;
+import com.tle.core.remoting.MatrixResults;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.util.OpenBitSet;
+
+/**
+ * Works out the matrix of term combinations for a list of fields, along with the matching items
+ * or counts for each combination.
+ *
+ * <p>Postings are filtered against the search matches as they are read, so each term only holds a
+ * sorted array of the matching documents rather than a bitset the size of the index. Intersecting
+ * the terms while recursing through the fields writes into one buffer per field that is reused
+ * for every combination.
+ */
+@NonNullByDefault
+final class MatrixSearcher {
+  private static final int READ_SIZE = 128;
+  private static final int[] EMPTY = new int[0];
+
+  private final IndexReader reader;
+  private final OpenBitSet matches;
+  @Nullable private final ItemKeys keys;
+
+  private final int[] readDocs = new int[READ_SIZE];
+  private final int[] readFreqs = new int[READ_SIZE];
+  private int[] scratch = new int[READ_SIZE];
+
+  /**
+   * @param matches The documents matching the search, using top level document numbers.
+   * @param keys Item keys to resolve documents with, or null for a count only search.
+   */
+  MatrixSearcher(IndexReader reader, OpenBitSet matches, @Nullable ItemKeys keys) {
+    this.reader = reader;
+    this.matches = matches;
+    this.keys = keys;
+  }
+
+  MatrixResults search(List<String> fields) throws IOException {
+    final int maxDoc = reader.maxDoc();
+    final Map<String, Map<String, List<TermMatches>>> xpathMap = Maps.newLinkedHashMap();
+    final List<OpenBitSet> perFieldBitSets = Lists.newArrayList();
+    final OpenBitSet allDocs = new OpenBitSet(maxDoc);
+
+    TermDocs postings = reader.termDocs();
+    try {
+      for (String field : fields) {
+        boolean hasXpaths = field.indexOf('[') != -1;
+        OpenBitSet perFieldBitSet = new OpenBitSet(maxDoc);
+        for (Term term : new XPathFieldIterator(reader, field, "")) {
+          int[] docs = readMatching(postings, term);
+          // Terms without any matches can never contribute a matrix entry
+          if (docs.length == 0) {
+            continue;
+          }
+          for (int doc : docs) {
+            perFieldBitSet.fastSet(doc);
+            allDocs.fastSet(doc);
+          }
+          String xpathKey = "";
+          if (hasXpaths) {
+            String fieldName = term.field();
+            int ind = fieldName.lastIndexOf(']');
+            if (ind != -1) {
+              xpathKey = fieldName.substring(0, ind + 1);
+            }
+          }
+          addTermMatches(new TermMatches(term.text(), docs), xpathKey, xpathMap, field);
+        }
+        perFieldBitSets.add(perFieldBitSet);
+      }
+    } finally {
+      postings.close();
+    }
+
+    // Simulate blank terms for the documents which have a value for one of the other fields, but
+    // not this one
+    for (int i = 0; i < fields.size(); i++) {
+      OpenBitSet perFieldBitSet = perFieldBitSets.get(i);
+      int count = 0;
+      for (int doc = allDocs.nextSetBit(0); doc != -1; doc = allDocs.nextSetBit(doc + 1)) {
+        if (!perFieldBitSet.fastGet(doc)) {
+          scratch = ensureCapacity(scratch, count + 1);
+          scratch[count++] = doc;
+        }
+      }
+      addTermMatches(
+          new TermMatches("", Arrays.copyOf(scratch, count)), "", xpathMap, fields.get(i));
+    }
+
+    MatrixResults results = new MatrixResults();
+    results.setFields(fields);
+
+    final int numFields = fields.size();
+    final int[][] buffers = new int[numFields][];
+    final Map<String, List<TermMatches>> blankPaths = xpathMap.get("");
+    for (Map<String, List<TermMatches>> map : xpathMap.values()) {
+      List<List<TermMatches>> fieldsToRecurse = Lists.newArrayList();
+      for (String field : fields) {
+        List<TermMatches> list = map.get(field);
+        if (list == null) {
+          list = blankPaths.get(field);
+        }
+        fieldsToRecurse.add(list);
+      }
+      recurseTerms(fieldsToRecurse, 0, new String[numFields], null, 0, buffers, results);
+    }
+    return results;
+  }
+
+  /** Reads the postings for a term, keeping only the documents which matched the search. */
+  private int[] readMatching(TermDocs postings, Term term) throws IOException {
+    postings.seek(term);
+    int count = 0;
+    int read;
+    while ((read = postings.read(readDocs, readFreqs)) > 0) {
+      scratch = ensureCapacity(scratch, count + read);
+      for (int i = 0; i < read; i++) {
+        int doc = readDocs[i];
+        if (matches.get(doc)) {
+          scratch[count++] = doc;
+        }
+      }
+    }
+    return count == 0 ? EMPTY : Arrays.copyOf(scratch, count);
+  }
+
+  /**
+   * @param curDocs The documents matching the values chosen so far, or null at the first field
+   *     where every document still matches.
+   */
+  private void recurseTerms(
+      List<List<TermMatches>> termMatchesList,
+      int index,
+      String[] curValues,
+      @Nullable int[] curDocs,
+      int curLength,
+      int[][] buffers,
+      MatrixResults results) {
+    final boolean last = index == curValues.length - 1;
+    for (TermMatches termMatches : termMatchesList.get(index)) {
+      final int[] docs;
+      final int length;
+      if (curDocs == null) {
+        docs = termMatches.docs;
+        length = docs.length;
+      } else {
+        buffers[index] =
+            ensureCapacity(buffers[index], Math.min(curLength, termMatches.docs.length));
+        docs = buffers[index];
+        length = intersect(curDocs, curLength, termMatches.docs, docs);
+      }
+
+      // if we don't intersect there's no point in recursing further in
+      if (length > 0) {
+        // Collect current term's value into the value array
+        curValues[index] = termMatches.text;
+        if (last) {
+          List<ItemIdKey> ids = null;
+          if (keys != null) {
+            ids = Lists.newArrayListWithCapacity(length);
+            for (int i = 0; i < length; i++) {
+              ItemIdKey key = keys.getItemIdKey(docs[i]);
+              if (key != null) {
+                ids.add(key);
+              }
+            }
+          }
+          results.addEntry(
+              new MatrixResults.MatrixEntry(
+                  Lists.newArrayList(curValues), ids, ids != null ? ids.size() : length));
+        } else {
+          recurseTerms(termMatchesList, index + 1, curValues, docs, length, buffers, results);
+        }
+      }
+    }
+  }
+
+  private static int intersect(int[] a, int aLength, int[] b, int[] into) {
+    int i = 0;
+    int j = 0;
+    int count = 0;
+    while (i < aLength && j < b.length) {
+      int ad = a[i];
+      int bd = b[j];
+      if (ad == bd) {
+        into[count++] = ad;
+        i++;
+        j++;
+      } else if (ad < bd) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return count;
+  }
+
+  private static int[] ensureCapacity(@Nullable int[] array, int size) {
+    if (array == null) {
+      return new int[Math.max(size, READ_SIZE)];
+    }
+    if (array.length >= size) {
+      return array;
+    }
+    return Arrays.copyOf(array, Math.max(size, array.length + (array.length >> 1)));
+  }
+
+  private static void addTermMatches(
+      TermMatches termMatches,
+      String xpathKey,
+      Map<String, Map<String, List<TermMatches>>> xpathMap,
+      String field) {
+    Map<String, List<TermMatches>> map = xpathMap.get(xpathKey);
+    if (map == null) {
+      map = Maps.newHashMap();
+      xpathMap.put(xpathKey, map);
+    }
+    List<TermMatches> list = map.get(field);
+    if (list == null) {
+      list = Lists.newArrayList();
+      map.put(field, list);
+    }
+    list.add(termMatches);
+  }
+
+  /** The matching documents for a single term, in document order. */
+  private static final class TermMatches {
+    final String text;
+    final int[] docs;
+
+    TermMatches(String text, int[] docs) {
+      this.text = text;
+      this.docs = docs;
+    }
+  }
+}
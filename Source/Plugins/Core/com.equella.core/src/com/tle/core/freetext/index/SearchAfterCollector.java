@@ -0,0 +1,97 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.freetext.index;
+
+import com.tle.annotation.NonNullByDefault;
+import java.io.IOException;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+
+/**
+ * Only passes on hits which sort after a previous hit, so a sorted search can be paged through
+ * without collecting (and sorting) all the earlier pages again. Each hit's sort values are read
+ * with a single slot comparator per sort field and compared against the values of the previous
+ * hit. The sort must end in a unique field, otherwise hits which tie with the previous hit on
+ * every field are dropped.
+ */
+@NonNullByDefault
+final class SearchAfterCollector extends Collector {
+  private final Collector delegate;
+  private final FieldComparator<?>[] comparators;
+  private final int[] reverseMul;
+  private final Object[] after;
+
+  SearchAfterCollector(Sort sort, FieldDoc after, Collector delegate) throws IOException {
+    final SortField[] fields = sort.getSort();
+    this.delegate = delegate;
+    this.after = after.fields;
+    comparators = new FieldComparator<?>[fields.length];
+    reverseMul = new int[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      comparators[i] = fields[i].getComparator(1, i);
+      reverseMul[i] = fields[i].getReverse() ? -1 : 1;
+    }
+  }
+
+  @Override
+  public void setScorer(Scorer scorer) throws IOException {
+    for (FieldComparator<?> comparator : comparators) {
+      comparator.setScorer(scorer);
+    }
+    delegate.setScorer(scorer);
+  }
+
+  @Override
+  public void collect(int doc) throws IOException {
+    if (isAfter(doc)) {
+      delegate.collect(doc);
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private boolean isAfter(int doc) throws IOException {
+    for (int i = 0; i < comparators.length; i++) {
+      final FieldComparator comparator = comparators[i];
+      comparator.copy(0, doc);
+      final int c = reverseMul[i] * comparator.compareValues(comparator.value(0), after[i]);
+      if (c != 0) {
+        return c > 0;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void setNextReader(IndexReader reader, int docBase) throws IOException {
+    for (FieldComparator<?> comparator : comparators) {
+      comparator.setNextReader(reader, docBase);
+    }
+    delegate.setNextReader(reader, docBase);
+  }
+
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return false;
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.freetext.index;
+
+import java.io.Serializable;
+import org.apache.lucene.search.FieldDoc;
+
+/**
+ * The position of the last hit of a page of results, for fetching the next page with {@link
+ * ItemIndex#searchAfter}. Only meaningful for the search (and sort) that produced it.
+ */
+public final class SearchCursor implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final int doc;
+  private final Object[] values;
+
+  SearchCursor(FieldDoc lastHit) {
+    this.doc = lastHit.doc;
+    this.values = lastHit.fields;
+  }
+
+  FieldDoc getLastHit() {
+    return new FieldDoc(doc, Float.NaN, values);
+  }
+}
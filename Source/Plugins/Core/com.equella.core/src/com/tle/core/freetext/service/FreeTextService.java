@@ -18,10 +18,13 @@
 
 package com.tle.core.freetext.service;
 
+import com.tle.annotation.Nullable;
 import com.tle.beans.entity.itemdef.ItemDefinition;
 import com.tle.beans.item.ItemIdKey;
 import com.tle.common.searching.Search;
 import com.tle.common.searching.SearchResults;
+import com.tle.core.freetext.index.CursorSearchResults;
+import com.tle.core.freetext.index.SearchCursor;
 import com.tle.core.remoting.MatrixResults;
 import com.tle.core.services.item.FreetextResult;
 import com.tle.core.services.item.FreetextSearchResults;
@@ -55,6 +58,19 @@ public interface FreeTextService {
   <T extends FreetextResult> FreetextSearchResults<T> search(
       Search searchReq, int start, int count, boolean searchAttachments);
 
+  /**
+   * Fetches results a page at a time without re-collecting earlier pages, for walking through
+   * large result sets. The results are not loaded from the database.
+   *
+   * @param searchReq A search request.
+   * @param after The cursor returned with the previous page, or null for the first page.
+   * @param count The maximum number of results requested.
+   * @param searchAttachments Whether to search attachments.
+   * @return A page of results, with the cursor for the next page.
+   */
+  <T extends FreetextResult> CursorSearchResults<T> searchAfter(
+      Search searchReq, @Nullable SearchCursor after, int count, boolean searchAttachments);
+
   SearchResults<ItemIdKey> searchIds(Search searchreq, int nStart, int nCount);
 
   LongSet searchIdsBitSet(Search searchreq);
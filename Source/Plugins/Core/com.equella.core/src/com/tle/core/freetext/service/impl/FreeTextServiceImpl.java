@@ -24,6 +24,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Multimap;
+import com.tle.annotation.Nullable;
 import com.tle.beans.Institution;
 import com.tle.beans.entity.itemdef.ItemDefinition;
 import com.tle.beans.item.ItemIdKey;
@@ -37,6 +38,8 @@ import com.tle.common.searching.Search;
 import com.tle.common.searching.SearchResults;
 import com.tle.core.freetext.event.ItemReindexEvent;
 import com.tle.core.freetext.event.listener.ItemReindexListener;
+import com.tle.core.freetext.index.CursorSearchResults;
+import com.tle.core.freetext.index.SearchCursor;
 import com.tle.core.freetext.queries.FreeTextBooleanQuery;
 import com.tle.core.freetext.queries.FreeTextFieldQuery;
 import com.tle.core.freetext.reindex.InstitutionFilter;
@@ -64,6 +67,7 @@ import com.tle.freetext.BackgroundIndexerImpl.BackgroundIndexerFactory;
 import com.tle.freetext.FreetextIndex;
 import com.tle.freetext.IndexedItem;
 import it.uniroma3.mat.extendedset.wrappers.LongSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -271,6 +275,12 @@ public class FreeTextServiceImpl
     return new StdFreetextResults<T>(itemService, results, searchReq);
   }
 
+  @Override
+  public <T extends FreetextResult> CursorSearchResults<T> searchAfter(
+      Search searchReq, @Nullable SearchCursor after, int count, boolean searchAttachments) {
+    return indexer.searchAfter(searchReq, after, count, searchAttachments);
+  }
+
   @Override
   public SearchResults<ItemIdKey> searchIds(Search searchreq, int nStart, int nCount) {
     SearchResults<FreetextResult> results = indexer.search(searchreq, nStart, nCount);
@@ -299,13 +309,8 @@ public class FreeTextServiceImpl
 
   @Override
   public int[] countsFromFilters(Collection<? extends Search> filters) {
-    int[] res = new int[filters.size()];
-
     Date t1 = new Date();
-    int rescount = 0;
-    for (Search search : filters) {
-      res[rescount++] = search != null ? indexer.count(search) : -1;
-    }
+    int[] res = indexer.count(new ArrayList<Search>(filters));
     Date t2 = new Date();
 
     if (LOGGER.isDebugEnabled()) {
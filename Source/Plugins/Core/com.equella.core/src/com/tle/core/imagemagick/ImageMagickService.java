@@ -45,6 +45,12 @@ public interface ImageMagickService {
    */
   void generateThumbnailAdvanced(File srcFile, File dstFile, ThumbnailOptions options);
 
+  /**
+   * As {@link #generateThumbnailAdvanced(File, File, ThumbnailOptions)}, but checking the image may
+   * only take {@code timeout} seconds rather than {@code thumbnailing.timeout}.
+   */
+  void generateThumbnailAdvanced(File srcFile, File dstFile, ThumbnailOptions options, int timeout);
+
   void generateStandardThumbnail(File srcFile, File dstFile);
 
   void sampleNoRatio(File src, File dest, String width, String height, String... options)
@@ -76,8 +76,14 @@ public class ImageMagickServiceImpl implements ImageMagickService, ServiceCheckR
 
   @Override
   public void generateThumbnailAdvanced(File srcFile, File dstFile, ThumbnailOptions options) {
+    generateThumbnailAdvanced(srcFile, dstFile, options, thumbnailingTimeout);
+  }
+
+  @Override
+  public void generateThumbnailAdvanced(
+      File srcFile, File dstFile, ThumbnailOptions options, int timeout) {
     List<String> opts = new ArrayList<String>();
-    validateAgainstTimer(srcFile);
+    validateAgainstTimer(srcFile, timeout);
     boolean gif = srcFile.getAbsolutePath().endsWith(".gif");
     if (gif) {
       opts.add(convertExe.getAbsolutePath());
@@ -191,7 +197,7 @@ public class ImageMagickServiceImpl implements ImageMagickService, ServiceCheckR
     }
   }
 
-  private void validateAgainstTimer(File image) {
+  private void validateAgainstTimer(File image, int timeout) {
     // use a timed process so that thumbnailing
     // for problem files doesn't attempt indefinitely.
     // Set in plugins/com.tle.core.imagemagick/config.properties
@@ -199,7 +205,7 @@ public class ImageMagickServiceImpl implements ImageMagickService, ServiceCheckR
     // if not set, the default is 20 seconds. If set to 0, uses a regular non-timed process.
     ExecResult result =
         ExecUtils.execWithTimeLimit(
-            thumbnailingTimeout,
+            timeout,
             new String[] {
               identifyExe.getAbsolutePath(),
               "-format",
@@ -302,18 +308,7 @@ public class ImageMagickServiceImpl implements ImageMagickService, ServiceCheckR
 
   @Override
   public void generateStandardThumbnail(File srcFile, File dstFile) {
-    // int size = 64;
-    int height = 66;
-    int width = 88;
-    ThumbnailOptions topts = new ThumbnailOptions();
-    topts.setHeight(height);
-    topts.setWidth(width);
-    topts.setCropHeight(height);
-    topts.setCropWidth(width);
-    topts.setGravity("center");
-    topts.setBackgroundColour("White");
-
-    generateThumbnailAdvanced(srcFile, dstFile, topts);
+    generateThumbnailAdvanced(srcFile, dstFile, ThumbnailOptions.standard());
   }
 
   @Override
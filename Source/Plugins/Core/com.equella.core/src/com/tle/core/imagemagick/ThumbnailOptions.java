@@ -19,6 +19,9 @@
 package com.tle.core.imagemagick;
 
 public class ThumbnailOptions {
+  public static final int STANDARD_WIDTH = 88;
+  public static final int STANDARD_HEIGHT = 66;
+
   private int imgWidth;
   private int imgHeight;
   private int width;
@@ -33,6 +36,19 @@ public class ThumbnailOptions {
   private String backgroundColour;
   private boolean keepAspect;
 
+  /** The options used for the standard item attachment thumbnail. */
+  @SuppressWarnings("nls")
+  public static ThumbnailOptions standard() {
+    ThumbnailOptions topts = new ThumbnailOptions();
+    topts.setHeight(STANDARD_HEIGHT);
+    topts.setWidth(STANDARD_WIDTH);
+    topts.setCropHeight(STANDARD_HEIGHT);
+    topts.setCropWidth(STANDARD_WIDTH);
+    topts.setGravity("center");
+    topts.setBackgroundColour("White");
+    return topts;
+  }
+
   public boolean isKeepAspect() {
     return keepAspect;
   }
@@ -33,5 +33,7 @@ public class ImageMagickModule extends PropertiesModule {
   protected void configure() {
     bindProp("imageMagick.path");
     bindInt("thumbnailing.timeout", 20);
+    bindInt("thumbnailing.threads", 2);
+    bindBoolean("thumbnailing.java", true);
   }
 }
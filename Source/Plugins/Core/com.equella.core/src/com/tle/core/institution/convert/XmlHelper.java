@@ -22,6 +22,7 @@ import com.dytech.common.io.UnicodeReader;
 import com.dytech.common.text.NumberStringComparator;
 import com.dytech.devlib.PropBagEx;
 import com.dytech.edge.common.Constants;
+import com.google.common.io.CharStreams;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.thoughtworks.xstream.XStream;
@@ -38,6 +39,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
@@ -119,6 +121,23 @@ public class XmlHelper {
     }
   }
 
+  /** Reads the raw text of an XML file, so that it can be unmarshalled later on another thread. */
+  public String readXmlText(final TemporaryFileHandle file, String path) {
+    try (Reader reader = new UnicodeReader(fileSystemService.read(file, path), Constants.UTF8)) {
+      return CharStreams.toString(reader);
+    } catch (IOException re) {
+      LOGGER.error("Error reading: " + file.getAbsolutePath());
+      throw new RuntimeException(re);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public <O> O readXmlString(
+      String xml, final XStream xstream, O rootObject, DataHolder dataHolder) {
+    return (O)
+        xstream.unmarshal(xppDriver.createReader(new StringReader(xml)), rootObject, dataHolder);
+  }
+
   @SuppressWarnings("unchecked")
   public <O> O readXmlFile(final TemporaryFileHandle file, String path) {
     try (Reader reader = new UnicodeReader(fileSystemService.read(file, path), Constants.UTF8)) {
@@ -45,6 +45,7 @@ import com.tle.common.filesystem.handle.FileHandle;
 import com.tle.common.filesystem.handle.SubTemporaryFile;
 import com.tle.common.filesystem.handle.TemporaryFileHandle;
 import com.tle.common.institution.CurrentInstitution;
+import com.tle.common.usermanagement.user.AuthenticatedThread;
 import com.tle.common.workflow.Workflow;
 import com.tle.common.workflow.node.WorkflowNode;
 import com.tle.core.entity.registry.EntityRegistry;
@@ -52,6 +53,8 @@ import com.tle.core.entity.service.impl.BaseEntityXmlConverter;
 import com.tle.core.filesystem.ItemFile;
 import com.tle.core.filesystem.SubItemFile;
 import com.tle.core.guice.Bind;
+import com.tle.core.hibernate.CurrentDataSource;
+import com.tle.core.hibernate.DataSourceHolder;
 import com.tle.core.institution.convert.AbstractConverter;
 import com.tle.core.institution.convert.ConverterParams;
 import com.tle.core.institution.convert.DefaultMessageCallback;
@@ -74,17 +77,29 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import org.ccil.cowan.tagsoup.AttributesImpl;
 import org.ccil.cowan.tagsoup.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xml.sax.InputSource;
 import org.xml.sax.XMLReader;
 
@@ -95,12 +110,25 @@ public class ItemConverter extends AbstractConverter<ItemConverter.ItemConverter
   private static final String ITEM_XML_FILE = "_ITEM/item.xml";
   private static final String ITEMS_EXPORT_IMPORT_FOLDER = "items";
   private static final String SYSTEM_ITEM_FOLDER = "_ITEM";
+  private static final Logger LOGGER = LoggerFactory.getLogger(ItemConverter.class);
 
   @Inject private ItemDao itemDao;
   @Inject private ItemLockingDao itemLockingDao;
   @Inject private EntityRegistry registry;
   @Inject private ItemFileService itemFileService;
 
+  @com.google.inject.Inject(optional = true)
+  @Named("institutions.import.threads")
+  private int importThreads = 4;
+
+  @com.google.inject.Inject(optional = true)
+  @Named("institutions.import.flushSize")
+  private int importFlushSize = 50;
+
+  @com.google.inject.Inject(optional = true)
+  @Named("institutions.import.chunkRetries")
+  private int importChunkRetries = 2;
+
   private final Random random = new Random();
 
   private PluginTracker<ItemExtrasConverter> itemExtrasTracker;
@@ -185,96 +213,327 @@ public class ItemConverter extends AbstractConverter<ItemConverter.ItemConverter
     final List<String> entries = xmlHelper.getXmlFileList(allImportItemsFolder);
     message.setTotal(entries.size());
 
-    final Map<Object, Object> sharedState = Collections.synchronizedMap(Maps.newHashMap());
-    final Collection<PostReadMigrator<ItemConverterInfo>> migrations = getMigrations(params);
-    TransactionThreadPool threadPool = newThreadPool(1);
-    for (final String entry : entries) {
-      threadPool.doInTransaction(
-          new Runnable() {
-            @Override
-            public void run() {
-              try {
-                final String dataFolderPath = entry.replace(".xml", Constants.BLANK);
-
-                Item item = new Item();
-                DataHolder dh = getXStream().newDataHolder();
-                dh.put(WorkflowNodeSupplier.class, new ItemWorkflowNodeSupplier(item));
-                xmlHelper.readXmlFile(allImportItemsFolder, entry, getXStream(), item, dh);
-                Long origId = item.getId();
-
-                // Fix up some weird cases where Data Created was null
-                // in 4.0 exports. May as well check Date Modified too.
-                Date c = item.getDateCreated();
-                Date m = item.getDateModified();
-                // Add some randomness to make the chance of finding an
-                // old stale
-                // indexed item negligible
-                item.setDateForIndex(new Date(Math.abs(random.nextLong() % 1000L)));
-                if (c == null) {
-                  c = m != null ? m : new Date();
-                  item.setDateCreated(c);
-                }
-
-                if (m == null) {
-                  item.setDateModified(c);
-                }
+    final ItemImport itemImport =
+        new ItemImport(
+            allImportItemsFolder,
+            institution,
+            params,
+            message,
+            Collections.synchronizedMap(Maps.newHashMap()),
+            getMigrations(params));
+    final int chunkSize = Math.max(1, importFlushSize);
+    final ExecutorService workers = newImportWorkers();
+    try {
+      // XML for the next chunk is read while the current one is being persisted
+      List<Future<String>> nextXml = readXml(workers, allImportItemsFolder, entries, 0, chunkSize);
+      for (int start = 0; start < entries.size(); start += chunkSize) {
+        final List<String> chunk =
+            entries.subList(start, Math.min(start + chunkSize, entries.size()));
+        final List<Future<String>> chunkXml = nextXml;
+        nextXml = readXml(workers, allImportItemsFolder, entries, start + chunkSize, chunkSize);
+
+        final List<String> xml = new ArrayList<String>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+          xml.add(await(chunkXml.get(i), chunk.get(i)));
+        }
+        importChunk(itemImport, workers, chunk, xml, start);
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+  }
 
-                // If an item def doesn't have a workflow, then the item
-                // should definitely not have any moderation status.
-                if (item.getItemDefinition().getWorkflow() == null) {
-                  ModerationStatus moderation = item.getModeration();
-                  if (moderation != null) {
-                    moderation.getStatuses().clear();
-                  }
-                }
+  /**
+   * Imports one chunk of items in a single transaction. A committed chunk is a checkpoint: if the
+   * chunk fails it is rolled back and replayed from the previous checkpoint, up to {@code
+   * institutions.import.chunkRetries} times, before the import is failed.
+   */
+  private void importChunk(
+      final ItemImport itemImport,
+      final ExecutorService workers,
+      final List<String> chunk,
+      final List<String> xml,
+      int checkpoint) {
+    for (int attempt = 0; ; attempt++) {
+      final Map<Long, Long> imported = Maps.newHashMap();
+      final List<ItemFile> storedXml = new ArrayList<ItemFile>(chunk.size());
+      try {
+        doInTransaction(
+            new Runnable() {
+              @Override
+              public void run() {
+                importItems(itemImport, workers, chunk, xml, imported, storedXml);
+              }
+            });
+      } catch (RuntimeException e) {
+        if (attempt >= importChunkRetries) {
+          throw e;
+        }
+        LOGGER.warn(
+            "Failed to import items "
+                + chunk.get(0)
+                + " to "
+                + chunk.get(chunk.size() - 1)
+                + ", retrying from the last checkpoint",
+            e);
+        itemImport.message.setCurrent(checkpoint);
+        continue;
+      }
 
-                // data folder
-                final SubTemporaryFile importItemFolder =
-                    new SubTemporaryFile(allImportItemsFolder, dataFolderPath);
-                final ItemFile itemFolder = itemFileService.getItemFile(item);
-                if (!params.hasFlag(ConverterParams.NO_ITEMSATTACHMENTS)) {
-                  fileSystemService.commitFiles(importItemFolder, itemFolder);
-                } else {
-                  fileSystemService.copy(importItemFolder, itemFolder);
-                }
+      itemImport.params.getItems().putAll(imported);
+      itemImport.migratedXml.keySet().removeAll(chunk);
+      // Left in place until the chunk commits so that a replay can read them again
+      for (ItemFile itemFolder : storedXml) {
+        fileSystemService.removeFile(itemFolder, ITEM_XML_FILE);
+      }
+      return;
+    }
+  }
 
-                // This needs to happen before the PostReadMigrations
-                changeHardcodedUrls(params, itemFolder);
+  /**
+   * Unmarshals the chunk in order on the calling thread, since XStream looks up entities in the
+   * current session, while the item files are committed on the worker threads. Items are then
+   * saved in order once their files are in place, and the session is flushed as one JDBC batch.
+   */
+  private void importItems(
+      ItemImport itemImport,
+      ExecutorService workers,
+      List<String> chunk,
+      List<String> xml,
+      Map<Long, Long> imported,
+      List<ItemFile> storedXml) {
+    itemDao.setJdbcBatchSize(Math.max(1, importFlushSize));
+
+    final List<PendingItem> pending = new ArrayList<PendingItem>(chunk.size());
+    try {
+      for (int i = 0; i < chunk.size(); i++) {
+        final String entry = chunk.get(i);
+        try {
+          pending.add(readItem(itemImport, workers, entry, xml.get(i)));
+        } catch (Exception e) {
+          throw new RuntimeException("Error in " + entry, e);
+        }
+      }
 
-                ItemConverterInfo info =
-                    new ItemConverterInfo(item, itemFolder, sharedState, params);
-                runMigrations(migrations, info);
-                // just to initialise it
-                item.getNavigationSettings();
-                item.setInstitution(institution);
-                initialiserService.initialiseClones(item);
+      for (PendingItem p : pending) {
+        await(p.files, p.entry);
+        try {
+          saveItem(itemImport, p);
+        } catch (Exception e) {
+          throw new RuntimeException("Error in " + p.entry, e);
+        }
+        storedXml.add(p.itemFolder);
+        imported.put(p.origId, p.item.getId());
+        itemImport.message.incrementCurrent();
+      }
+      itemDao.flush();
+      itemDao.clear();
+    } finally {
+      // Don't let a replay of this chunk race with files still being committed
+      for (PendingItem p : pending) {
+        try {
+          p.files.get();
+        } catch (Exception e) {
+          // Already reported or about to be replayed
+        }
+      }
+    }
+  }
 
-                storeXml(params, item, itemFolder, institution);
+  private PendingItem readItem(
+      final ItemImport itemImport, ExecutorService workers, final String entry, String xml) {
+    Item item = new Item();
+    DataHolder dh = getXStream().newDataHolder();
+    dh.put(WorkflowNodeSupplier.class, new ItemWorkflowNodeSupplier(item));
+    // A replayed item is read back as it was after its migrations ran
+    final String migrated = itemImport.migratedXml.get(entry);
+    xmlHelper.readXmlString(migrated != null ? migrated : xml, getXStream(), item, dh);
+    Long origId = item.getId();
+
+    // Fix up some weird cases where Data Created was null
+    // in 4.0 exports. May as well check Date Modified too.
+    Date c = item.getDateCreated();
+    Date m = item.getDateModified();
+    // Add some randomness to make the chance of finding an
+    // old stale
+    // indexed item negligible
+    item.setDateForIndex(new Date(Math.abs(random.nextLong() % 1000L)));
+    if (c == null) {
+      c = m != null ? m : new Date();
+      item.setDateCreated(c);
+    }
 
-                itemDao.save(item);
-                saveList(item.getComments());
-                saveList(item.getAcceptances());
-                runExtras(
-                    info,
-                    getXStream(),
-                    new SubTemporaryFile(allImportItemsFolder, dataFolderPath + "-extra"),
-                    true);
-                itemDao.flush();
-                itemDao.clear();
+    if (m == null) {
+      item.setDateModified(c);
+    }
 
-                params.getItems().put(origId, item.getId());
+    // If an item def doesn't have a workflow, then the item
+    // should definitely not have any moderation status.
+    if (item.getItemDefinition().getWorkflow() == null) {
+      ModerationStatus moderation = item.getModeration();
+      if (moderation != null) {
+        moderation.getStatuses().clear();
+      }
+    }
 
-                message.incrementCurrent();
-              } catch (Exception e) {
-                throw new RuntimeException("Error in " + entry, e);
+    final ItemFile itemFolder = itemFileService.getItemFile(item);
+    Future<?> files =
+        workers.submit(
+            new Callable<Void>() {
+              @Override
+              public Void call() throws IOException {
+                importFiles(itemImport, entry, itemFolder);
+                return null;
               }
-            }
-          });
-      if (threadPool.hasException()) {
-        break;
-      }
+            });
+    return new PendingItem(entry, origId, item, itemFolder, files);
+  }
+
+  private void importFiles(ItemImport itemImport, String entry, ItemFile itemFolder)
+      throws IOException {
+    // A replayed chunk must not commit (or rewrite the URLs of) the same files twice
+    if (itemImport.filesDone.contains(entry)) {
+      return;
+    }
+
+    // data folder
+    final String dataFolderPath = entry.replace(".xml", Constants.BLANK);
+    final SubTemporaryFile importItemFolder =
+        new SubTemporaryFile(itemImport.itemsFolder, dataFolderPath);
+    if (!itemImport.params.hasFlag(ConverterParams.NO_ITEMSATTACHMENTS)) {
+      fileSystemService.commitFiles(importItemFolder, itemFolder);
+    } else {
+      fileSystemService.copy(importItemFolder, itemFolder);
+    }
+
+    // This needs to happen before the PostReadMigrations
+    changeHardcodedUrls(itemImport.params, itemFolder);
+    itemImport.filesDone.add(entry);
+  }
+
+  private void saveItem(ItemImport itemImport, PendingItem pending) throws IOException {
+    final Item item = pending.item;
+    ItemConverterInfo info =
+        new ItemConverterInfo(item, pending.itemFolder, itemImport.sharedState, itemImport.params);
+    // Migrations aren't necessarily repeatable (they can update the shared state), so a replayed
+    // chunk doesn't run them on the same item twice
+    if (!itemImport.migratedXml.containsKey(pending.entry)) {
+      runMigrations(itemImport.migrations, info);
+      itemImport.migratedXml.put(pending.entry, getXStream().toXML(item));
+    }
+    // just to initialise it
+    item.getNavigationSettings();
+    item.setInstitution(itemImport.institution);
+    initialiserService.initialiseClones(item);
+
+    storeXml(itemImport.params, item, pending.itemFolder, itemImport.institution);
+
+    itemDao.save(item);
+    saveList(item.getComments());
+    saveList(item.getAcceptances());
+    final String dataFolderPath = pending.entry.replace(".xml", Constants.BLANK);
+    runExtras(
+        info,
+        getXStream(),
+        new SubTemporaryFile(itemImport.itemsFolder, dataFolderPath + "-extra"),
+        true);
+  }
+
+  private List<Future<String>> readXml(
+      ExecutorService workers,
+      final SubTemporaryFile folder,
+      List<String> entries,
+      int start,
+      int count) {
+    final List<Future<String>> xml = new ArrayList<Future<String>>();
+    for (final String entry : entries.subList(start, Math.min(start + count, entries.size()))) {
+      xml.add(
+          workers.submit(
+              new Callable<String>() {
+                @Override
+                public String call() {
+                  return xmlHelper.readXmlText(folder, entry);
+                }
+              }));
+    }
+    return xml;
+  }
+
+  private static <V> V await(Future<V> future, String entry) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted importing " + entry, e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Error in " + entry, e.getCause());
+    }
+  }
+
+  private ExecutorService newImportWorkers() {
+    final DataSourceHolder dataSource = CurrentDataSource.get();
+    return Executors.newFixedThreadPool(
+        Math.max(1, importThreads),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(final Runnable r) {
+            // Threads are created on the importing thread, so they pick up its institution
+            Thread thread =
+                new AuthenticatedThread("Item import worker") {
+                  @Override
+                  public void doRun() {
+                    CurrentDataSource.set(dataSource);
+                    r.run();
+                  }
+                };
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+
+  private static class ItemImport {
+    final SubTemporaryFile itemsFolder;
+    final Institution institution;
+    final ConverterParams params;
+    final DefaultMessageCallback message;
+    final Map<Object, Object> sharedState;
+    final Collection<PostReadMigrator<ItemConverterInfo>> migrations;
+    final Set<String> filesDone =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // Item XML after the migrations ran, kept until the item's chunk commits
+    final Map<String, String> migratedXml = Maps.newHashMap();
+
+    ItemImport(
+        SubTemporaryFile itemsFolder,
+        Institution institution,
+        ConverterParams params,
+        DefaultMessageCallback message,
+        Map<Object, Object> sharedState,
+        Collection<PostReadMigrator<ItemConverterInfo>> migrations) {
+      this.itemsFolder = itemsFolder;
+      this.institution = institution;
+      this.params = params;
+      this.message = message;
+      this.sharedState = sharedState;
+      this.migrations = migrations;
+    }
+  }
+
+  private static class PendingItem {
+    final String entry;
+    final Long origId;
+    final Item item;
+    final ItemFile itemFolder;
+    final Future<?> files;
+
+    PendingItem(String entry, Long origId, Item item, ItemFile itemFolder, Future<?> files) {
+      this.entry = entry;
+      this.origId = origId;
+      this.item = item;
+      this.itemFolder = itemFolder;
+      this.files = files;
     }
-    threadPool.close();
   }
 
   private TransactionThreadPool newThreadPool(int threads) {
@@ -415,7 +674,6 @@ public class ItemConverter extends AbstractConverter<ItemConverter.ItemConverter
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
-    fileSystemService.removeFile(file, ITEM_XML_FILE);
   }
 
   private void saveList(List<? extends ForeignItemKey> alist) {
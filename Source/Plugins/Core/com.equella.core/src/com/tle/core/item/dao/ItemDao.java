@@ -90,6 +90,9 @@ public interface ItemDao extends GenericInstitutionalDao<Item, Long> {
 
   int getLatestVersion(String uuid);
 
+  /** @return The latest version of each item UUID that exists */
+  Map<String, Integer> getLatestVersions(Collection<String> uuids);
+
   int getLatestLiveVersion(String uuid);
 
   ItemIdKey getLatestLiveVersionId(String uuid);
@@ -538,6 +538,27 @@ public class ItemDaoImpl extends GenericInstitionalDaoImpl<Item, Long> implement
     return allVersionNumbers.get(allVersionNumbers.size() - 1);
   }
 
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY)
+  public Map<String, Integer> getLatestVersions(Collection<String> uuids) {
+    if (uuids.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    final List<Object[]> versions =
+        (List<Object[]>)
+            getHibernateTemplate()
+                .findByNamedParam(
+                    "select uuid, max(version) from Item where uuid in (:uuids)"
+                        + " and institution = :institution group by uuid",
+                    new String[] {"uuids", "institution"},
+                    new Object[] {uuids, CurrentInstitution.get()});
+    final Map<String, Integer> latest = new HashMap<String, Integer>();
+    for (Object[] row : versions) {
+      latest.put((String) row[0], (Integer) row[1]);
+    }
+    return latest;
+  }
+
   @Override
   @Transactional(propagation = Propagation.MANDATORY)
   public int getLatestLiveVersion(String uuid) {
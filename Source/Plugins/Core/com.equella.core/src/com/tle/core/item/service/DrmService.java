@@ -25,8 +25,10 @@ import com.tle.beans.item.DrmSettings;
 import com.tle.beans.item.Item;
 import com.tle.beans.item.ItemKey;
 import com.tle.common.Pair;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.BadRequestException;
 
@@ -46,6 +48,16 @@ public interface DrmService {
   boolean hasAcceptedOrRequiresNoAcceptance(
       Item item, boolean isSummaryPage, boolean viewedInComposition);
 
+  /**
+   * The batch form of {@link #hasAcceptedOrRequiresNoAcceptance(Item, boolean, boolean)}, which
+   * looks up the current user's acceptances for all of the items at once.
+   *
+   * @return The result by item ID, which is also false for items that have been licensed the
+   *     maximum number of times
+   */
+  Map<Long, Boolean> hasAcceptedOrRequiresNoAcceptance(
+      Collection<Item> items, boolean isSummaryPage, boolean viewedInComposition);
+
   void acceptLicense(Item item);
 
   /**
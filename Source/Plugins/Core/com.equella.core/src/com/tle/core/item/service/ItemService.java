@@ -86,6 +86,13 @@ public interface ItemService
 
   int getLatestVersion(String uuid);
 
+  /**
+   * The batch form of {@link #getLatestVersion(String)}.
+   *
+   * @return The latest version of each item UUID, defaulting to 1 like the single form
+   */
+  Map<String, Integer> getLatestVersions(Collection<String> uuids);
+
   Item getLatestVersionOfItem(String uuid);
 
   int getLiveItemVersion(String uuid);
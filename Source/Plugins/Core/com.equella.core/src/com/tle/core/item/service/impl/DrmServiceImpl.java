@@ -52,11 +52,16 @@ import com.tle.core.settings.service.ConfigurationService;
 import com.tle.exceptions.AccessDeniedException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.servlet.http.HttpServletRequest;
@@ -146,7 +151,12 @@ public class DrmServiceImpl implements DrmService, ItemDeletedListener, UserChan
   @Override
   public DrmSettings requiresAcceptance(
       Item item, boolean isSummaryPage, boolean viewedInComposition) {
-    DrmSettings rights = realAcceptanceCheck(item, isSummaryPage, viewedInComposition);
+    return requiresAcceptance(item, isSummaryPage, viewedInComposition, this::hasAgreement);
+  }
+
+  private DrmSettings requiresAcceptance(
+      Item item, boolean isSummaryPage, boolean viewedInComposition, Predicate<Item> accepted) {
+    DrmSettings rights = realAcceptanceCheck(item, isSummaryPage, viewedInComposition, accepted);
     if (rights == null) {
       String cacheKey = getCacheKey(item.getItemId(), isSummaryPage, viewedInComposition);
       needsRights.put(cacheKey, Boolean.FALSE);
@@ -156,6 +166,11 @@ public class DrmServiceImpl implements DrmService, ItemDeletedListener, UserChan
 
   private DrmSettings realAcceptanceCheck(
       Item item, boolean isSummaryPage, boolean viewedInComposition) {
+    return realAcceptanceCheck(item, isSummaryPage, viewedInComposition, this::hasAgreement);
+  }
+
+  private DrmSettings realAcceptanceCheck(
+      Item item, boolean isSummaryPage, boolean viewedInComposition, Predicate<Item> accepted) {
     if (CurrentUser.getUserState().isSystem()) {
       return null;
     }
@@ -187,16 +202,23 @@ public class DrmServiceImpl implements DrmService, ItemDeletedListener, UserChan
       }
     }
 
-    try {
-      getAgreement(currentUser, item);
+    if (accepted.test(item)) {
       return null;
+    }
+    if (rights.getMaximumUsageCount() > 0
+        && countAgreements(item) >= rights.getMaximumUsageCount()) {
+      throw new DRMException(
+          "This item has been licenced the maximum number" + " of allowable times.");
+    }
+    return rights;
+  }
+
+  private boolean hasAgreement(Item item) {
+    try {
+      getAgreement(CurrentUser.getUserID(), item);
+      return true;
     } catch (NotFoundException ex) {
-      if (rights.getMaximumUsageCount() > 0
-          && countAgreements(item) >= rights.getMaximumUsageCount()) {
-        throw new DRMException(
-            "This item has been licenced the maximum number" + " of allowable times.");
-      }
-      return rights;
+      return false;
     }
   }
 
@@ -218,6 +240,49 @@ public class DrmServiceImpl implements DrmService, ItemDeletedListener, UserChan
     return true;
   }
 
+  @Override
+  @Transactional
+  public Map<Long, Boolean> hasAcceptedOrRequiresNoAcceptance(
+      Collection<Item> items, boolean isSummaryPage, boolean viewedInComposition) {
+    final Map<Long, Boolean> results = new HashMap<Long, Boolean>();
+    final List<Item> restricted = new ArrayList<Item>();
+    for (Item item : items) {
+      if (item.getDrmSettings() != null
+          && requiresAcceptanceCheck(item.getItemId(), isSummaryPage, viewedInComposition)) {
+        restricted.add(item);
+      } else {
+        results.put(item.getId(), true);
+      }
+    }
+    if (restricted.isEmpty()) {
+      return results;
+    }
+
+    final Set<Long> accepted = new HashSet<Long>();
+    for (DrmAcceptance acceptance :
+        dao.findAllByCriteria(
+            Restrictions.in("item", restricted),
+            Restrictions.eq("user", CurrentUser.getUserID()))) {
+      accepted.add(acceptance.getItem().getId());
+    }
+
+    final String ipAddress = CurrentUser.getUserState().getIpAddress();
+    for (Item item : restricted) {
+      boolean result;
+      try {
+        isAuthorised(item, ipAddress);
+        result =
+            requiresAcceptance(
+                    item, isSummaryPage, viewedInComposition, i -> accepted.contains(i.getId()))
+                == null;
+      } catch (DRMException ex) {
+        result = false;
+      }
+      results.put(item.getId(), result);
+    }
+    return results;
+  }
+
   @Override
   @Transactional(propagation = Propagation.REQUIRED)
   public void acceptLicense(Item item) {
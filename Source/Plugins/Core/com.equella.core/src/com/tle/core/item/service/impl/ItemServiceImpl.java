@@ -221,6 +221,18 @@ public class ItemServiceImpl
     return dao.getLatestVersion(uuid);
   }
 
+  @Override
+  @Transactional
+  public Map<String, Integer> getLatestVersions(Collection<String> uuids) {
+    final Map<String, Integer> latest = new HashMap<String, Integer>(dao.getLatestVersions(uuids));
+    for (String uuid : uuids) {
+      if (!latest.containsKey(uuid)) {
+        latest.put(uuid, 1);
+      }
+    }
+    return latest;
+  }
+
   @Override
   @Transactional
   public Item getLatestVersionOfItem(String uuid) {
@@ -22,8 +22,10 @@ import com.tle.beans.item.Comment;
 import com.tle.beans.item.Item;
 import com.tle.beans.item.ItemKey;
 import com.tle.beans.item.ItemPack;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 
 public interface ItemCommentService {
   enum CommentFilter {
@@ -81,6 +83,13 @@ public interface ItemCommentService {
    */
   Integer getCommentCountWithACLCheck(ItemKey itemId);
 
+  /**
+   * The batch form of {@link #getCommentCountWithACLCheck(ItemKey)}.
+   *
+   * @return The number of comments by item ID, for only the items whose comments can be viewed
+   */
+  Map<Long, Integer> getCommentCountsWithACLCheck(Collection<Item> items);
+
   /**
    * Add a new comment to an item.
    *
@@ -45,9 +45,12 @@ import com.tle.core.item.standard.dao.ItemCommentDao;
 import com.tle.core.item.standard.service.ItemCommentService;
 import com.tle.core.security.TLEAclManager;
 import com.tle.core.security.impl.SecureOnCall;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -104,6 +107,22 @@ public class ItemCommentServiceImpl implements ItemCommentService, UserChangeLis
         itemId, (item) -> itemDao.getCommentCounts(Collections.singletonList(item)).get(0));
   }
 
+  @Override
+  @Transactional
+  public Map<Long, Integer> getCommentCountsWithACLCheck(Collection<Item> items) {
+    final List<Item> viewable =
+        new ArrayList<Item>(
+            tleAclManager.filterNonGrantedObjects(
+                Collections.singleton(COMMENT_VIEW_ITEM), items));
+    final List<Integer> counts = itemDao.getCommentCounts(viewable);
+
+    final Map<Long, Integer> results = new HashMap<Long, Integer>();
+    for (int i = 0; i < viewable.size(); i++) {
+      results.put(viewable.get(i).getId(), counts.get(i));
+    }
+    return results;
+  }
+
   @Override
   @SecureOnCall(priv = COMMENT_VIEW_ITEM)
   public List<Comment> getComments(
@@ -68,6 +68,11 @@ public class PowerSearchServiceImpl
     this.powerSearchDao = powerSearchDao;
   }
 
+  @Override
+  protected boolean isCachedByUuid() {
+    return true;
+  }
+
   @Override
   protected void deleteReferences(PowerSearch entity) {
     publishEvent(new PowerSearchDeletionEvent(entity));
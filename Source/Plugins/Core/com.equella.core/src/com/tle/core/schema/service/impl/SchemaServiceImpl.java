@@ -78,6 +78,11 @@ public class SchemaServiceImpl
     this.schemaDao = schemaDao;
   }
 
+  @Override
+  protected boolean isCachedByUuid() {
+    return true;
+  }
+
   @Override
   public List<Class<?>> getReferencingClasses(long id) {
     SchemaReferencesEvent event = new SchemaReferencesEvent(get(id));
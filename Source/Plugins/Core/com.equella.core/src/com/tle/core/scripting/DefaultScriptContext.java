@@ -63,34 +63,18 @@ public class DefaultScriptContext implements ScriptContext {
     this.logger = logger;
   }
 
-  public Scriptable getUserScriptScope(Context jsContext) {
-    Scriptable scope = new ImporterTopLevel(jsContext);
-    for (String name : userScriptObjects.keySet()) {
-      Object obj = userScriptObjects.get(name);
-      if (obj instanceof Boolean) {
-        scope.put(name, scope, obj);
-      } else if (obj != null) {
-        Scriptable jsArgs = Context.toObject(obj, scope);
-        scope.put(name, scope, jsArgs);
-      }
-    }
-
-    return scope;
-  }
-
+  /**
+   * Creates the standard objects that script scopes are based on, with access to Java packages
+   * removed. Each script run gets its own child scope via {@link #getScope(Context, Scriptable)}.
+   *
+   * <p>A sealed result can be shared between threads, but scripts can then no longer add to or
+   * change the built-in objects (e.g. {@code Array.prototype}). An unsealed result must only be
+   * used for a single script run.
+   */
   @SuppressWarnings("nls")
-  public Scriptable getScope(Context jsContext) {
-    Scriptable scope = new ImporterTopLevel(jsContext);
-
-    for (String name : scriptObjects.keySet()) {
-      Object obj = scriptObjects.get(name);
-      if (obj instanceof Boolean) {
-        scope.put(name, scope, obj);
-      } else if (obj != null) {
-        Scriptable jsArgs = Context.toObject(obj, scope);
-        scope.put(name, scope, jsArgs);
-      }
-    }
+  public static Scriptable createStandardScope(Context jsContext, boolean seal) {
+    ImporterTopLevel scope = new ImporterTopLevel();
+    scope.initStandardObjects(jsContext, seal);
 
     // Remove the ability to create new Java objects in the script. List
     // comes from https://bugzilla.mozilla.org/show_bug.cgi?id=468385
@@ -105,6 +89,22 @@ public class DefaultScriptContext implements ScriptContext {
     scope.delete("edu");
     scope.delete("org");
 
+    if (seal) {
+      scope.sealObject();
+    }
+    return scope;
+  }
+
+  public Scriptable getUserScriptScope(Context jsContext, Scriptable sharedScope) {
+    Scriptable scope = newChildScope(jsContext, sharedScope);
+    addObjects(scope, userScriptObjects);
+    return scope;
+  }
+
+  public Scriptable getScope(Context jsContext, Scriptable sharedScope) {
+    Scriptable scope = newChildScope(jsContext, sharedScope);
+    addObjects(scope, scriptObjects);
+
     try {
       // Prevent existingObject.getClass().forName('...')
       jsContext.setClassShutter(
@@ -123,6 +123,25 @@ public class DefaultScriptContext implements ScriptContext {
     return scope;
   }
 
+  private static Scriptable newChildScope(Context jsContext, Scriptable sharedScope) {
+    Scriptable scope = jsContext.newObject(sharedScope);
+    scope.setPrototype(sharedScope);
+    scope.setParentScope(null);
+    return scope;
+  }
+
+  private static void addObjects(Scriptable scope, Map<String, Object> objects) {
+    for (String name : objects.keySet()) {
+      Object obj = objects.get(name);
+      if (obj instanceof Boolean) {
+        scope.put(name, scope, obj);
+      } else if (obj != null) {
+        Scriptable jsArgs = Context.toObject(obj, scope);
+        scope.put(name, scope, jsArgs);
+      }
+    }
+  }
+
   @Override
   public void scriptEnter() {
     for (Object object : scriptObjects.values()) {
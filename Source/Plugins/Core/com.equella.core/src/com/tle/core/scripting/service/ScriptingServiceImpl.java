@@ -21,6 +21,8 @@ package com.tle.core.scripting.service;
 import com.dytech.edge.common.PropBagWrapper;
 import com.dytech.edge.common.ScriptContext;
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.tle.common.Check;
 import com.tle.common.Utils;
 import com.tle.common.scripting.ScriptException;
@@ -40,7 +42,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextAction;
@@ -49,6 +53,7 @@ import org.mozilla.javascript.EcmaError;
 import org.mozilla.javascript.ErrorReporter;
 import org.mozilla.javascript.EvaluatorException;
 import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.commonjs.module.ModuleScriptProvider;
 import org.mozilla.javascript.commonjs.module.Require;
@@ -72,6 +77,31 @@ public class ScriptingServiceImpl implements ScriptingService {
   private static final PluginResourceHelper r =
       ResourcesService.getResourceHelper(ScriptingServiceImpl.class);
 
+  /**
+   * Rhino optimization level. -1 interprets scripts, 0 to 9 compile them to bytecode which is
+   * slower to compile but faster to run. Only worth it with the compiled script cache enabled.
+   */
+  @Inject(optional = true)
+  @Named("scripting.optimizationLevel")
+  private int optimizationLevel = -1;
+
+  /** Maximum number of compiled scripts to keep. 0 disables the cache. */
+  @Inject(optional = true)
+  @Named("scripting.compiledCacheSize")
+  private int compiledCacheSize = 1000;
+
+  /**
+   * Share one sealed set of standard objects between all script runs instead of creating them for
+   * every run. Off by default, as scripts which modify the built-in objects fail when sealed.
+   */
+  @Inject(optional = true)
+  @Named("scripting.sealStandardObjects")
+  private boolean sealStandardObjects = false;
+
+  private final Object initLock = new Object();
+  private volatile Scriptable sharedScope;
+  private volatile Cache<CompiledScriptKey, Script> compiledScripts;
+
   @Override
   public ScriptContext createScriptContext(ScriptContextCreationParams params) {
     Map<String, Object> scriptObjects = new HashMap<String, Object>();
@@ -165,15 +195,15 @@ public class ScriptingServiceImpl implements ScriptingService {
                     errorLogger = logger;
                   }
 
+                  Scriptable shared = getStandardScope(cx);
                   Scriptable userScriptScope =
-                      ((DefaultScriptContext) context).getUserScriptScope(cx);
+                      ((DefaultScriptContext) context).getUserScriptScope(cx, shared);
                   ScriptableModuleSourceProvider sourceProvider =
                       new ScriptableModuleSourceProvider(userScriptScope);
                   ModuleScriptProvider scriptProvider =
                       new SoftCachingModuleScriptProvider(sourceProvider);
 
-                  cx.initStandardObjects();
-                  Scriptable scope = ((DefaultScriptContext) context).getScope(cx);
+                  Scriptable scope = ((DefaultScriptContext) context).getScope(cx, shared);
 
                   RequireBuilder builder = new RequireBuilder();
                   // The "uri" property must not exist in a sandbox
@@ -182,7 +212,7 @@ public class ScriptingServiceImpl implements ScriptingService {
 
                   Require require = builder.createRequire(cx, scope);
 
-                  cx.setOptimizationLevel(-1);
+                  cx.setOptimizationLevel(optimizationLevel);
                   cx.setErrorReporter(new ScriptErrorReporter(errorLogger));
 
                   final String execScript =
@@ -195,7 +225,8 @@ public class ScriptingServiceImpl implements ScriptingService {
                     context.scriptEnter();
                     require.install(scope);
 
-                    Object result = cx.evaluateString(scope, execScript, execScriptName, 1, null);
+                    Script compiled = getCompiledScript(cx, execScript, execScriptName);
+                    Object result = compiled.exec(cx, scope);
 
                     context.scriptExit();
                     if (expectedResultClass == String.class) {
@@ -215,6 +246,80 @@ public class ScriptingServiceImpl implements ScriptingService {
     return Boolean.TRUE;
   }
 
+  private Scriptable getStandardScope(Context cx) {
+    if (!sealStandardObjects) {
+      return DefaultScriptContext.createStandardScope(cx, false);
+    }
+    Scriptable scope = sharedScope;
+    if (scope == null) {
+      synchronized (initLock) {
+        scope = sharedScope;
+        if (scope == null) {
+          scope = DefaultScriptContext.createStandardScope(cx, true);
+          sharedScope = scope;
+        }
+      }
+    }
+    return scope;
+  }
+
+  private Script getCompiledScript(Context cx, String script, String scriptName) {
+    if (compiledCacheSize <= 0) {
+      return cx.compileString(script, scriptName, 1, null);
+    }
+    Cache<CompiledScriptKey, Script> cache = compiledScripts;
+    if (cache == null) {
+      synchronized (initLock) {
+        cache = compiledScripts;
+        if (cache == null) {
+          cache = CacheBuilder.newBuilder().maximumSize(compiledCacheSize).build();
+          compiledScripts = cache;
+        }
+      }
+    }
+
+    // Compiled scripts hold no reference to the scope they were first run in, so they can be
+    // shared between threads. Compiling twice in a race is harmless.
+    CompiledScriptKey key = new CompiledScriptKey(scriptName, script, cx.getOptimizationLevel());
+    Script compiled = cache.getIfPresent(key);
+    if (compiled == null) {
+      compiled = cx.compileString(script, scriptName, 1, null);
+      cache.put(key, compiled);
+    }
+    return compiled;
+  }
+
+  private static final class CompiledScriptKey {
+    private final String scriptName;
+    private final String script;
+    private final int optimizationLevel;
+
+    CompiledScriptKey(String scriptName, String script, int optimizationLevel) {
+      this.scriptName = scriptName;
+      this.script = script;
+      this.optimizationLevel = optimizationLevel;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof CompiledScriptKey)) {
+        return false;
+      }
+      CompiledScriptKey other = (CompiledScriptKey) obj;
+      return optimizationLevel == other.optimizationLevel
+          && scriptName.equals(other.scriptName)
+          && script.equals(other.script);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(scriptName, script, optimizationLevel);
+    }
+  }
+
   public static final class ScriptErrorReporter implements ErrorReporter {
     private final Logger errorLogger;
 
@@ -53,6 +53,8 @@ public interface FileSystemService extends RemoteFileSystemService {
   String VIDEO_PREVIEW_EXTENSION = ".mp4";
   String VIDEO_PREVIEW_FOLDER = "_VIDEOPREVIEW";
   String ZIPS_FOLDER = "_zips";
+  String EXTRACTED_TEXT_FOLDER = "_EXTRACTEDTEXT";
+  String EXTRACTED_TEXT_EXTENSION = ".txt";
 
   /**
    * Gets a Java File object if you for the associated Staging/Institution/Item file
@@ -0,0 +1,141 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.services.impl;
+
+import com.dytech.common.io.FileUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.annotation.Nullable;
+import com.tle.common.filesystem.FileSystemHelper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the MD5 of item files so that ETags don't need the whole file to be read on every
+ * request. Digests are kept in memory and persisted in a digest folder beside the files, one small
+ * entry per file at the same relative path, so that removing a folder's entries removes the
+ * digests of everything under it. Each digest records the size and modification time of the file
+ * it was calculated for, and is only used while both still match.
+ */
+@NonNullByDefault
+@SuppressWarnings("nls")
+class FileDigestStore {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileDigestStore.class);
+
+  private final Cache<String, Digest> cache = CacheBuilder.newBuilder().maximumSize(10000).build();
+
+  /**
+   * @param entry Where the digest of the file is persisted
+   * @return The MD5 of the file, calculating (and storing) it only if there isn't a valid one
+   */
+  String getDigest(File file, Path entry) throws IOException {
+    final long size = file.length();
+    final long modified = file.lastModified();
+    final String key = entry.toString();
+
+    Digest digest = cache.getIfPresent(key);
+    if (digest == null || !digest.matches(size, modified)) {
+      digest = load(entry);
+      if (digest == null || !digest.matches(size, modified)) {
+        final String md5 = FileSystemHelper.md5recurse(file, new byte[Short.MAX_VALUE]);
+        // Don't keep it if the file was written to while it was being read
+        if (file.length() == size && file.lastModified() == modified) {
+          store(entry, new Digest(size, modified, md5));
+        }
+        return md5;
+      }
+      cache.put(key, digest);
+    }
+    return digest.md5;
+  }
+
+  /** Records the MD5 of a file that has just been written. */
+  void put(File file, Path entry, String md5) {
+    store(entry, new Digest(file.length(), file.lastModified(), md5));
+  }
+
+  /** Forgets the digest of a file, or the digests of everything under a folder. */
+  void remove(Path entry) {
+    final String key = entry.toString();
+    final String prefix = key + File.separatorChar;
+    cache.asMap().keySet().removeIf(k -> k.equals(key) || k.startsWith(prefix));
+    if (Files.exists(entry) && !FileUtils.delete(entry)) {
+      LOGGER.warn("Error removing digests for " + entry);
+    }
+  }
+
+  @Nullable
+  private Digest load(Path entry) {
+    try {
+      final String[] parts =
+          new String(Files.readAllBytes(entry), StandardCharsets.UTF_8).split(":");
+      if (parts.length == 3) {
+        return new Digest(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+      }
+    } catch (NoSuchFileException e) {
+      // Not calculated yet
+    } catch (IOException | NumberFormatException e) {
+      LOGGER.warn("Error reading digest " + entry, e);
+    }
+    return null;
+  }
+
+  private void store(Path entry, Digest digest) {
+    cache.put(entry.toString(), digest);
+    try {
+      Files.createDirectories(entry.getParent());
+      // Write then move so that a concurrent reader never sees a partial entry
+      final String line = digest.size + ":" + digest.modified + ":" + digest.md5;
+      final Path temp = Files.createTempFile(entry.getParent(), ".digest", ".tmp");
+      try {
+        Files.write(temp, line.getBytes(StandardCharsets.UTF_8));
+        Files.move(
+            temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Error storing digest " + entry, e);
+    }
+  }
+
+  private static class Digest {
+    final long size;
+    final long modified;
+    final String md5;
+
+    Digest(long size, long modified, String md5) {
+      this.size = size;
+      this.modified = modified;
+      this.md5 = md5;
+    }
+
+    boolean matches(long size, long modified) {
+      return this.size == size && this.modified == modified;
+    }
+  }
+}
@@ -39,6 +39,7 @@ import com.tle.common.i18n.CurrentLocale;
 import com.tle.common.institution.CurrentInstitution;
 import com.tle.common.quota.settings.QuotaSettings;
 import com.tle.core.events.services.EventService;
+import com.tle.core.filesystem.AllVersionsOfItemFile;
 import com.tle.core.filesystem.InstitutionFile;
 import com.tle.core.guice.Bind;
 import com.tle.core.healthcheck.listeners.ServiceCheckRequestListener;
@@ -80,6 +81,7 @@ import org.apache.commons.logging.LogFactory;
 public class FileSystemServiceImpl implements FileSystemService, ServiceCheckRequestListener {
   private static final Log LOGGER = LogFactory.getLog(FileSystemServiceImpl.class);
   private static final String DIGEST_MD5 = "md5";
+  private static final String DIGESTS_FOLDER = "Digests";
   private static final String KEY_PFX =
       AbstractPluginService.getMyPluginId(FileSystemServiceImpl.class) + ".";
 
@@ -100,6 +102,8 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
   @Named("filestore.root")
   private File rootDir;
 
+  private final FileDigestStore digestStore = new FileDigestStore();
+
   @PostConstruct
   private void init() {
     LOGGER.info("Filestore: " + this.rootDir.getAbsolutePath());
@@ -139,15 +143,43 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
   /** Returns the file for the given file handle. */
   private File getFile(FileHandle handle) {
     prepareFileHandle(handle);
+    return new File(getRoot(handle), handle.getAbsolutePath());
+  }
+
+  private File getRoot(FileHandle handle) {
     final String filestoreId = handle.getFilestoreId();
     if (filestoreId != null) {
       final Filestore filestore = filestores.get(filestoreId);
       if (filestore == null) {
         throw new Error("Unknown filestore " + filestoreId);
       }
-      return new File(filestore.getRoot().toFile(), handle.getAbsolutePath());
+      return filestore.getRoot().toFile();
+    }
+    return rootDir;
+  }
+
+  /**
+   * Digests are only kept for item files, which are the ones served with ETags.
+   *
+   * @return Where the digest of an item file is kept, or null for any other handle
+   */
+  private Path getDigestEntry(FileHandle handle, String path) {
+    return handle instanceof AllVersionsOfItemFile ? getDigestPath(handle, path) : null;
+  }
+
+  private Path getDigestPath(FileHandle handle, String path) {
+    prepareFileHandle(handle);
+    final File digests =
+        new File(new File(getRoot(handle), DIGESTS_FOLDER), handle.getAbsolutePath());
+    return (Check.isEmpty(path) ? digests : new File(digests, FileSystemHelper.encode(path)))
+        .toPath();
+  }
+
+  /** Forgets the digests of a file, or of everything under a folder, before it changes. */
+  private void removeDigests(FileHandle handle, String path) {
+    if (!(handle instanceof TemporaryFileHandle)) {
+      digestStore.remove(getDigestPath(handle, path));
     }
-    return new File(rootDir, handle.getAbsolutePath());
   }
 
   private void prepareFileHandle(FileHandle handle) {
@@ -250,6 +282,7 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
   @Override
   public OutputStream getOutputStream(FileHandle handle, String filename, boolean append)
       throws IOException {
+    removeDigests(handle, filename);
     return getOutputStream(getFile(handle, filename), append);
   }
 
@@ -274,8 +307,11 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
           ex);
     }
 
+    // The digest of a whole item file is kept for ETags, so it's worth calculating even if the
+    // caller doesn't want it
+    final Path digestEntry = getDigestEntry(handle, filename);
     MessageDigest md5 = null;
-    if (calculateMd5) {
+    if (calculateMd5 || (digestEntry != null && !append)) {
       try {
         md5 = MessageDigest.getInstance(DIGEST_MD5);
       } catch (NoSuchAlgorithmException e) {
@@ -283,15 +319,23 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
       }
     }
 
+    long byteCount;
     try (OutputStream out = getOutputStream(file, append)) {
-      long byteCount = copyStream(content, out, md5);
+      byteCount = copyStream(content, out, md5);
+    }
 
-      String md5Hex = null;
-      if (md5 != null) {
-        md5Hex = Md5.stringify(md5.digest());
+    String md5Hex = null;
+    if (md5 != null) {
+      md5Hex = Md5.stringify(md5.digest());
+    }
+    if (digestEntry != null) {
+      if (!append) {
+        digestStore.put(file, digestEntry, md5Hex);
+      } else {
+        digestStore.remove(digestEntry);
       }
-      return new FileInfo(byteCount, filename, md5Hex);
     }
+    return new FileInfo(byteCount, filename, calculateMd5 ? md5Hex : null);
   }
 
   @Override
@@ -346,6 +390,7 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
         new OutputStreamWriter(getOutputStream(file, append), StandardCharsets.UTF_8)) {
       byteCount = CharStreams.copy(content, out);
     }
+    removeDigests(handle, filename);
 
     return new FileInfo(byteCount, filename);
   }
@@ -373,6 +418,7 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
 
     File from = getFile(staging);
     File to = getFile(destination);
+    removeDigests(destination, null);
 
     File trash = null;
     if (FileSystemHelper.exists(to)) {
@@ -411,6 +457,7 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
 
     File from = getFile(staging, folder);
     File to = getFile(destination);
+    removeDigests(destination, null);
 
     final String fromStr = from.getAbsolutePath();
     final String toStr = to.getAbsolutePath();
@@ -524,6 +571,8 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("rename: from " + from + " to " + to);
     }
+    removeDigests(handle, filename);
+    removeDigests(handle, newname);
     return FileSystemHelper.renameOnly(from, to);
   }
 
@@ -536,6 +585,8 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("move: from " + from + " to " + to);
     }
+    removeDigests(handle, filename);
+    removeDigests(newHandle, newname);
     return FileSystemHelper.rename(from, to, false);
   }
 
@@ -566,6 +617,7 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("copy: from " + from + " to " + to);
     }
+    removeDigests(toHandle, newname);
     return new FileInfo(doCopy(from, to, false), to.getName());
   }
 
@@ -580,6 +632,7 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
     File from = getFile(source);
     File to = getFile(destination);
     if (from.exists()) {
+      removeDigests(destination, null);
       return new FileInfo(doCopy(from, to, false), to.getName());
     } else {
       // throw new RuntimeException("Source does not exist");
@@ -1029,6 +1082,7 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
                 callback.fileProcessed(file1.toFile(), file2 == null ? null : file2.toFile());
               }
             });
+    removeDigests(handle, filename);
     return FileUtils.delete(target.toPath(), wrappedCallback);
   }
 
@@ -1057,7 +1111,12 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
   @Override
   public String getMD5Checksum(FileHandle handle, String path) {
     try {
-      return FileSystemHelper.md5recurse(getFile(handle, path), new byte[Short.MAX_VALUE]);
+      final File file = getFile(handle, path);
+      final Path digestEntry = getDigestEntry(handle, path);
+      if (digestEntry != null && file.isFile()) {
+        return digestStore.getDigest(file, digestEntry);
+      }
+      return FileSystemHelper.md5recurse(file, new byte[Short.MAX_VALUE]);
     } catch (Exception e) {
       throw new FileSystemException("FATAL", e);
     }
@@ -1095,18 +1154,26 @@ public class FileSystemServiceImpl implements FileSystemService, ServiceCheckReq
       }
       parent = parent.getParentFile();
     }
-    return getContentStream(file, mimeType);
+    return getContentStream(file, getDigestEntry(handle, path), mimeType);
   }
 
   @Override
   public FileContentStream getInsecureContentStream(
       FileHandle handle, String path, String mimeType) {
     final File file = getFile(handle, path);
-    return getContentStream(file, mimeType);
+    return getContentStream(file, getDigestEntry(handle, path), mimeType);
   }
 
-  private FileContentStream getContentStream(File file, String mimeType) {
-    return new FileContentStream(file, file.getName(), mimeType);
+  private FileContentStream getContentStream(File file, Path digestEntry, String mimeType) {
+    if (digestEntry == null) {
+      return new FileContentStream(file, file.getName(), mimeType);
+    }
+    return new FileContentStream(file, file.getName(), mimeType) {
+      @Override
+      protected String calculateDigest(File file) throws IOException {
+        return digestStore.getDigest(file, digestEntry);
+      }
+    };
   }
 
   @Override
@@ -45,6 +45,8 @@ public interface TermDao extends GenericDao<Term, Long> {
 
   List<Term> getAllTermsInOrder(Taxonomy taxonomy);
 
+  List<TermResult> getAllTermResults(Taxonomy taxonomy);
+
   /**
    * @param taxonomy
    * @param parent
@@ -106,6 +106,20 @@ public class TermDaoImpl extends GenericDaoImpl<Term, Long> implements TermDao {
             .find("FROM Term t WHERE t.taxonomy = ?0 ORDER BY t.left", new Object[] {taxonomy});
   }
 
+  @Override
+  public List<TermResult> getAllTermResults(final Taxonomy taxonomy) {
+    return getHibernateTemplate()
+        .execute(
+            session -> {
+              Query q =
+                  session.createQuery(
+                      TERM_RESULT_PROJECTION + "FROM Term t WHERE t.taxonomy = ?0 ORDER BY t.left");
+              q.setParameter(0, taxonomy);
+              q.setResultTransformer(TERM_RESULT_TRANSFORMER);
+              return q.list();
+            });
+  }
+
   @Override
   public Term getTerm(final Taxonomy taxonomy, final String termFullPath) {
     return (Term)
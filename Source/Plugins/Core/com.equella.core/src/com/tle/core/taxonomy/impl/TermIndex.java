@@ -0,0 +1,321 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.taxonomy.impl;
+
+import com.tle.common.Pair;
+import com.tle.common.taxonomy.SelectionRestriction;
+import com.tle.core.taxonomy.TermResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable in-memory index over the terms of one taxonomy, answering the case-insensitive
+ * wildcard searches that {@link TermServiceImpl#searchTerms} would otherwise run as an {@code
+ * ILIKE} over the whole term table. There is one sorted key array per searchable field: a literal
+ * prefix (e.g. {@code "abc*"}) is a binary searched range of it, and anything else is narrowed
+ * using the trigram postings of the longest literal in the query before being matched against each
+ * candidate.
+ */
+@SuppressWarnings("nls")
+class TermIndex {
+  private static final int GRAM = 3;
+
+  private final FieldIndex values;
+  private final FieldIndex fullValues;
+
+  TermIndex(List<TermResult> terms) {
+    values = new FieldIndex(terms, false);
+    fullValues = new FieldIndex(terms, true);
+  }
+
+  /**
+   * @param query The search with {@code *} or {@code %} matching any run of characters and {@code
+   *     _} matching any single character, as for the database search
+   * @param limit The maximum number of results to return, or 0 or less for all of them
+   * @return The total number of matching terms and up to {@code limit} of them, ordered
+   *     case-insensitively by the searched field
+   */
+  Pair<Long, List<TermResult>> search(
+      String query, SelectionRestriction restriction, int limit, boolean searchFullTerms) {
+    return (searchFullTerms ? fullValues : values)
+        .search(new Query(query), restriction, limit);
+  }
+
+  static String normalise(String s) {
+    return s.toLowerCase(Locale.ROOT);
+  }
+
+  private static class FieldIndex {
+    // Terms sorted by key, with the key, leaf and top level flags at the same position
+    private final TermResult[] terms;
+    private final String[] keys;
+    private final boolean[] leaf;
+    private final boolean[] topLevel;
+    private final Map<String, int[]> grams;
+
+    FieldIndex(List<TermResult> source, final boolean fullValues) {
+      final int size = source.size();
+      final String[] sourceKeys = new String[size];
+      final Integer[] order = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        TermResult term = source.get(i);
+        sourceKeys[i] = normalise(fullValues ? term.getFullTerm() : term.getTerm());
+        order[i] = i;
+      }
+      Arrays.sort(
+          order,
+          new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+              return sourceKeys[a].compareTo(sourceKeys[b]);
+            }
+          });
+
+      terms = new TermResult[size];
+      keys = new String[size];
+      leaf = new boolean[size];
+      topLevel = new boolean[size];
+      final Map<String, List<Integer>> postings = new HashMap<String, List<Integer>>();
+      for (int i = 0; i < size; i++) {
+        TermResult term = source.get(order[i]);
+        terms[i] = new TermResult(term.getTerm(), term.getFullTerm(), term.isLeaf());
+        keys[i] = sourceKeys[order[i]];
+        leaf[i] = term.isLeaf();
+        // Root terms are the only ones without a parent path in front of their value
+        topLevel[i] = term.getTerm().equals(term.getFullTerm());
+
+        for (String gram : grams(keys[i])) {
+          List<Integer> list = postings.get(gram);
+          if (list == null) {
+            list = new ArrayList<Integer>();
+            postings.put(gram, list);
+          }
+          list.add(i);
+        }
+      }
+
+      grams = new HashMap<String, int[]>(postings.size() * 2);
+      for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+        List<Integer> list = entry.getValue();
+        int[] positions = new int[list.size()];
+        for (int i = 0; i < positions.length; i++) {
+          positions[i] = list.get(i);
+        }
+        grams.put(entry.getKey(), positions);
+      }
+    }
+
+    Pair<Long, List<TermResult>> search(Query query, SelectionRestriction restriction, int limit) {
+      final List<TermResult> results =
+          new ArrayList<TermResult>(limit > 0 ? Math.min(limit, 64) : 64);
+      long total = 0;
+
+      if (query.isPrefix()) {
+        final int end = upperBound(query.prefix);
+        for (int i = lowerBound(query.prefix); i < end; i++) {
+          if (allowed(i, restriction)) {
+            total = add(results, total, i, limit);
+          }
+        }
+      } else {
+        final int[] candidates = candidates(query.longestLiteral);
+        final int count = candidates == null ? keys.length : candidates.length;
+        for (int c = 0; c < count; c++) {
+          final int i = candidates == null ? c : candidates[c];
+          if (allowed(i, restriction) && query.matches(keys[i])) {
+            total = add(results, total, i, limit);
+          }
+        }
+      }
+      return new Pair<Long, List<TermResult>>(
+          total, results.isEmpty() ? Collections.<TermResult>emptyList() : results);
+    }
+
+    private long add(List<TermResult> results, long total, int i, int limit) {
+      if (limit <= 0 || results.size() < limit) {
+        results.add(terms[i]);
+      }
+      return total + 1;
+    }
+
+    private boolean allowed(int i, SelectionRestriction restriction) {
+      switch (restriction) {
+        case TOP_LEVEL_ONLY:
+          return topLevel[i];
+        case LEAF_ONLY:
+          return leaf[i];
+        default:
+          return true;
+      }
+    }
+
+    /**
+     * @return The positions of keys containing every trigram of the literal, in key order, or null
+     *     if the literal is too short to narrow the search
+     */
+    private int[] candidates(String literal) {
+      final Set<String> literalGrams = grams(literal);
+      if (literalGrams.isEmpty()) {
+        return null;
+      }
+
+      final List<int[]> lists = new ArrayList<int[]>(literalGrams.size());
+      for (String gram : literalGrams) {
+        final int[] positions = grams.get(gram);
+        if (positions == null) {
+          return new int[0];
+        }
+        lists.add(positions);
+      }
+      Collections.sort(
+          lists,
+          new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+              return Integer.compare(a.length, b.length);
+            }
+          });
+
+      int[] result = lists.get(0);
+      for (int l = 1; l < lists.size() && result.length > 0; l++) {
+        result = intersect(result, lists.get(l));
+      }
+      return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+      final int[] result = new int[Math.min(a.length, b.length)];
+      int count = 0;
+      int j = 0;
+      for (int i = 0; i < a.length && j < b.length; i++) {
+        while (j < b.length && b[j] < a[i]) {
+          j++;
+        }
+        if (j < b.length && b[j] == a[i]) {
+          result[count++] = a[i];
+        }
+      }
+      return Arrays.copyOf(result, count);
+    }
+
+    private int lowerBound(String prefix) {
+      int low = 0;
+      int high = keys.length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (keys[mid].compareTo(prefix) < 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    private int upperBound(String prefix) {
+      int low = lowerBound(prefix);
+      int high = keys.length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (keys[mid].startsWith(prefix)) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  private static Set<String> grams(String s) {
+    final Set<String> grams = new HashSet<String>();
+    for (int i = 0; i + GRAM <= s.length(); i++) {
+      grams.add(s.substring(i, i + GRAM));
+    }
+    return grams;
+  }
+
+  private static class Query {
+    // Set if the query is a literal followed by a single trailing wildcard
+    private final String prefix;
+    private final String longestLiteral;
+    private final Pattern pattern;
+
+    Query(String query) {
+      final String like = normalise(query).replace('*', '%');
+      final StringBuilder regex = new StringBuilder();
+      final StringBuilder literal = new StringBuilder();
+      String longest = "";
+      for (int i = 0; i < like.length(); i++) {
+        final char c = like.charAt(i);
+        if (c == '%' || c == '_') {
+          if (literal.length() > longest.length()) {
+            longest = literal.toString();
+          }
+          regex.append(Pattern.quote(literal.toString())).append(c == '%' ? ".*" : ".");
+          literal.setLength(0);
+        } else {
+          literal.append(c);
+        }
+      }
+      if (literal.length() > longest.length()) {
+        longest = literal.toString();
+      }
+      regex.append(Pattern.quote(literal.toString()));
+
+      longestLiteral = longest;
+      pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+
+      final int firstWildcard = indexOfWildcard(like);
+      prefix =
+          firstWildcard >= 0
+                  && firstWildcard == like.length() - 1
+                  && like.charAt(firstWildcard) == '%'
+              ? like.substring(0, firstWildcard)
+              : null;
+    }
+
+    boolean isPrefix() {
+      return prefix != null;
+    }
+
+    boolean matches(String key) {
+      return pattern.matcher(key).matches();
+    }
+
+    private static int indexOfWildcard(String like) {
+      for (int i = 0; i < like.length(); i++) {
+        final char c = like.charAt(i);
+        if (c == '%' || c == '_') {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+}
@@ -19,8 +19,10 @@
 package com.tle.core.taxonomy.impl;
 
 import com.dytech.edge.common.LockedException;
-import com.google.common.base.Function;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
@@ -33,17 +35,21 @@ import com.tle.common.beans.exception.NotFoundException;
 import com.tle.common.beans.exception.ValidationError;
 import com.tle.common.filesystem.handle.BucketFile;
 import com.tle.common.filesystem.handle.SubTemporaryFile;
+import com.tle.common.institution.CurrentInstitution;
 import com.tle.common.security.SecurityConstants;
 import com.tle.common.taxonomy.SelectionRestriction;
 import com.tle.common.taxonomy.Taxonomy;
 import com.tle.common.taxonomy.TaxonomyConstants;
 import com.tle.common.taxonomy.terms.Term;
 import com.tle.core.entity.service.EntityLockingService;
+import com.tle.core.events.services.EventService;
 import com.tle.core.guice.Bind;
 import com.tle.core.hibernate.equella.service.InitialiserService;
 import com.tle.core.institution.convert.ConverterParams;
 import com.tle.core.institution.convert.DefaultMessageCallback;
 import com.tle.core.institution.convert.XmlHelper;
+import com.tle.core.institution.events.InstitutionEvent;
+import com.tle.core.institution.events.listeners.InstitutionListener;
 import com.tle.core.security.impl.SecureOnCall;
 import com.tle.core.taxonomy.TermDao;
 import com.tle.core.taxonomy.TermResult;
@@ -51,26 +57,26 @@ import com.tle.core.taxonomy.TermService;
 import com.tle.web.resources.PluginResourceHelper;
 import com.tle.web.resources.ResourcesService;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import org.hibernate.criterion.Criterion;
-import org.hibernate.criterion.Order;
-import org.hibernate.criterion.Restrictions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @SuppressWarnings("nls")
 @Bind(TermService.class)
 @Singleton
-public class TermServiceImpl implements TermService {
+public class TermServiceImpl implements TermService, TaxonomyModifiedListener, InstitutionListener {
   private static final Logger LOGGER = LoggerFactory.getLogger(TermService.class);
 
   private static final PluginResourceHelper resources =
@@ -80,6 +86,10 @@ public class TermServiceImpl implements TermService {
   @Inject private EntityLockingService lockingService;
   @Inject private InitialiserService initialiserService;
   @Inject private XmlHelper xmlHelper;
+  @Inject private EventService eventService;
+
+  private final Cache<Institution, Cache<String, TermIndexHolder>> termIndexes =
+      CacheBuilder.newBuilder().softValues().expireAfterAccess(1, TimeUnit.HOURS).build();
 
   @Override
   public List<String> listTerms(Taxonomy taxonomy, String parentFullPath) {
@@ -112,42 +122,62 @@ public class TermServiceImpl implements TermService {
       SelectionRestriction restriction,
       int limit,
       boolean searchFullTerms) {
-    final String searchField = (searchFullTerms ? "fullValue" : "value");
-    final Criterion c1 = Restrictions.eq("taxonomy", taxonomy);
-    final Criterion c2 = Restrictions.ilike(searchField, query.replace('*', '%'));
-    final Criterion c3 = getSearchRestrictionCriterion(restriction);
-    final long totalCount = termDao.countByCriteria(c1, c2, c3);
+    return getTermIndex(taxonomy).search(query, restriction, limit, searchFullTerms);
+  }
 
-    List<TermResult> results = Collections.emptyList();
-    if (totalCount > 0) {
-      List<Term> terms = termDao.findAllByCriteria(Order.asc(searchField), -1, limit, c1, c2, c3);
-      results =
-          Lists.transform(
-              terms,
-              new Function<Term, TermResult>() {
-                @Override
-                public TermResult apply(Term term) {
-                  return new TermResult(term.getValue(), term.getFullValue(), term.isLeaf());
-                }
-              });
+  private TermIndex getTermIndex(final Taxonomy taxonomy) {
+    try {
+      final Cache<String, TermIndexHolder> instEntry =
+          termIndexes.get(
+              CurrentInstitution.get(),
+              () -> CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build());
+      return instEntry.get(taxonomy.getUuid(), TermIndexHolder::new).get(taxonomy);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
     }
-
-    return new Pair<Long, List<TermResult>>(totalCount, results);
   }
 
-  private Criterion getSearchRestrictionCriterion(SelectionRestriction restriction) {
-    switch (restriction) {
-      case TOP_LEVEL_ONLY:
-        return Restrictions.isNull("parent");
+  /**
+   * Built on first use rather than when the holder is cached, so that an invalidation while it is
+   * being built can just drop the holder instead of racing the build.
+   */
+  private class TermIndexHolder {
+    private TermIndex index;
 
-      case LEAF_ONLY:
-        return Restrictions.sqlRestriction("lft + 1 = rht");
+    synchronized TermIndex get(Taxonomy taxonomy) {
+      if (index == null) {
+        index = new TermIndex(termDao.getAllTermResults(taxonomy));
+      }
+      return index;
+    }
+  }
 
-      default:
-        return null;
+  @Override
+  public void taxonomyModifiedEvent(TaxonomyModifiedEvent event) {
+    final Cache<String, TermIndexHolder> instEntry =
+        termIndexes.getIfPresent(CurrentInstitution.get());
+    if (instEntry != null) {
+      instEntry.invalidate(event.getTaxonomyUuid());
     }
   }
 
+  @Override
+  public void institutionEvent(InstitutionEvent event) {
+    termIndexes.invalidateAll(event.getChanges().values());
+  }
+
+  /** Term indexes are rebuilt on every node once the change is visible to them. */
+  private void termsModified(Taxonomy taxonomy) {
+    final TaxonomyModifiedEvent event = new TaxonomyModifiedEvent(taxonomy.getUuid());
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter() {
+          @Override
+          public void afterCommit() {
+            eventService.publishApplicationEvent(event);
+          }
+        });
+  }
+
   @Override
   public String getData(Taxonomy taxonomy, String termFullPath, String dataKey) {
     return termDao.getDataForTerm(termDao.getTerm(taxonomy, termFullPath), dataKey);
@@ -212,6 +242,7 @@ public class TermServiceImpl implements TermService {
     Term parent = (root ? null : termDao.getTerm(taxonomy, parentFullPath));
     validateTerm(taxonomy, parent, parentFullPath, term, !root && !createHierarchy);
 
+    termsModified(taxonomy);
     if (parent != null || root) {
       Term newTerm = termDao.insertNewTerm(taxonomy, parent, termUuid, term, index);
       return newTerm.getFullValue();
@@ -311,6 +342,7 @@ public class TermServiceImpl implements TermService {
   public void move(Taxonomy taxonomy, String termToMove, String moveToParent, int index) {
     ensureLocked(taxonomy);
     termDao.move(getTerm(taxonomy, termToMove), getParentTermOrRoot(taxonomy, moveToParent), index);
+    termsModified(taxonomy);
   }
 
   @Override
@@ -322,6 +354,7 @@ public class TermServiceImpl implements TermService {
         getTermByUuid(taxonomy, termToMove.getUuid()),
         getTermByUuid(taxonomy, parentTerm.getUuid()),
         index);
+    termsModified(taxonomy);
   }
 
   @Override
@@ -338,6 +371,7 @@ public class TermServiceImpl implements TermService {
   public void renameTermValue(Taxonomy taxonomy, String termToRename, String newValue) {
     ensureLocked(taxonomy);
     termDao.renameTermValue(getTerm(taxonomy, termToRename), newValue);
+    termsModified(taxonomy);
   }
 
   @Override
@@ -346,6 +380,7 @@ public class TermServiceImpl implements TermService {
   public void deleteTerm(Taxonomy taxonomy, String termFullPath) {
     ensureLocked(taxonomy);
     termDao.delete(getTerm(taxonomy, termFullPath));
+    termsModified(taxonomy);
   }
 
   @Override
@@ -462,6 +497,7 @@ public class TermServiceImpl implements TermService {
   @Transactional(propagation = Propagation.REQUIRED)
   public void deleteForTaxonomy(Taxonomy taxonomy) {
     termDao.deleteForTaxonomy(taxonomy);
+    termsModified(taxonomy);
   }
 
   @Override
@@ -23,10 +23,19 @@ import com.tle.beans.item.ItemKey;
 import com.tle.beans.viewcount.ViewcountAttachment;
 import com.tle.beans.viewcount.ViewcountAttachmentId;
 import com.tle.core.hibernate.dao.GenericInstitutionalDao;
+import java.time.Instant;
 
 public interface AttachmentViewCountDao
     extends GenericInstitutionalDao<ViewcountAttachment, ViewcountAttachmentId> {
   int getAttachmentViewCountForCollection(long collectionId);
 
   void deleteAttachmentViewCountForItem(Institution institution, ItemKey itemKey);
+
+  /**
+   * Add to the count of an existing row, leaving it to the database to do the addition so that
+   * concurrent updates from other nodes are not lost.
+   *
+   * @return The number of rows updated, 0 if there is no row for the ID yet.
+   */
+  int addViews(ViewcountAttachmentId id, int views, Instant lastViewed);
 }
@@ -25,6 +25,7 @@ import com.tle.beans.viewcount.ViewcountAttachmentId;
 import com.tle.common.institution.CurrentInstitution;
 import com.tle.core.guice.Bind;
 import com.tle.core.hibernate.dao.GenericInstitionalDaoImpl;
+import java.time.Instant;
 import java.util.Optional;
 import javax.inject.Singleton;
 
@@ -66,4 +67,20 @@ public class AttachmentViewCountDaoImpl
                     .setParameter("institutionId", institution.getDatabaseId())
                     .executeUpdate());
   }
+
+  @Override
+  public int addViews(ViewcountAttachmentId id, int views, Instant lastViewed) {
+    return getHibernateTemplate()
+        .execute(
+            session ->
+                session
+                    .getNamedQuery("addAttachmentViews")
+                    .setParameter("views", views)
+                    .setParameter("lastViewed", lastViewed)
+                    .setParameter("itemVersion", id.getItemVersion())
+                    .setParameter("itemUuid", id.getItemUuid())
+                    .setParameter("institutionId", id.getInst())
+                    .setParameter("attachment", id.getAttachment())
+                    .executeUpdate());
+  }
 }
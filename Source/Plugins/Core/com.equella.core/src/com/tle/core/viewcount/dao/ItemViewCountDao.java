@@ -23,9 +23,18 @@ import com.tle.beans.item.ItemKey;
 import com.tle.beans.viewcount.ViewcountItem;
 import com.tle.beans.viewcount.ViewcountItemId;
 import com.tle.core.hibernate.dao.GenericInstitutionalDao;
+import java.time.Instant;
 
 public interface ItemViewCountDao extends GenericInstitutionalDao<ViewcountItem, ViewcountItemId> {
   int getItemCountForCollection(long collectionId);
 
   void deleteItemViewCount(Institution institution, ItemKey itemKey);
+
+  /**
+   * Add to the count of an existing row, leaving it to the database to do the addition so that
+   * concurrent updates from other nodes are not lost.
+   *
+   * @return The number of rows updated, 0 if there is no row for the ID yet.
+   */
+  int addViews(ViewcountItemId id, int views, Instant lastViewed);
 }
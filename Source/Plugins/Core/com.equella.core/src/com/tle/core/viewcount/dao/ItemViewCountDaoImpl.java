@@ -25,6 +25,7 @@ import com.tle.beans.viewcount.ViewcountItemId;
 import com.tle.common.institution.CurrentInstitution;
 import com.tle.core.guice.Bind;
 import com.tle.core.hibernate.dao.GenericInstitionalDaoImpl;
+import java.time.Instant;
 import java.util.Optional;
 import javax.inject.Singleton;
 
@@ -65,4 +66,19 @@ public class ItemViewCountDaoImpl extends GenericInstitionalDaoImpl<ViewcountIte
                     .setParameter("institutionId", institution.getDatabaseId())
                     .executeUpdate());
   }
+
+  @Override
+  public int addViews(ViewcountItemId id, int views, Instant lastViewed) {
+    return getHibernateTemplate()
+        .execute(
+            session ->
+                session
+                    .getNamedQuery("addItemViews")
+                    .setParameter("views", views)
+                    .setParameter("lastViewed", lastViewed)
+                    .setParameter("itemVersion", id.getItemVersion())
+                    .setParameter("itemUuid", id.getItemUuid())
+                    .setParameter("institutionId", id.getInst())
+                    .executeUpdate());
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.viewcount.service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Views which have not been written to the database yet, keyed by view count ID. Updates for a key
+ * happen under the map's lock for that key only, so views of different resources never contend and
+ * a drained entry can't miss an increment that raced with it.
+ */
+class ViewCountBuffer<K> {
+  private final ConcurrentMap<K, Pending> pending = new ConcurrentHashMap<>();
+
+  void add(K key, int views, Instant lastViewed) {
+    pending.compute(
+        key,
+        (k, p) -> {
+          if (p == null) {
+            return new Pending(views, lastViewed);
+          }
+          p.views += views;
+          if (lastViewed.isAfter(p.lastViewed)) {
+            p.lastViewed = lastViewed;
+          }
+          return p;
+        });
+  }
+
+  int getViews(K key) {
+    // Reading under the lock for the key, as the Pending is mutated in place
+    int[] views = new int[1];
+    pending.computeIfPresent(
+        key,
+        (k, p) -> {
+          views[0] = p.views;
+          return p;
+        });
+    return views[0];
+  }
+
+  void discard(Predicate<K> filter) {
+    pending.keySet().removeIf(filter);
+  }
+
+  boolean isEmpty() {
+    return pending.isEmpty();
+  }
+
+  /** Removes and returns everything currently buffered. */
+  Map<K, Pending> drain() {
+    Map<K, Pending> drained = new HashMap<>();
+    for (K key : pending.keySet()) {
+      Pending p = pending.remove(key);
+      if (p != null) {
+        drained.put(key, p);
+      }
+    }
+    return drained;
+  }
+
+  /** Puts back views which could not be written, adding to any that arrived since. */
+  void restore(Map<K, Pending> drained) {
+    drained.forEach((key, p) -> add(key, p.views, p.lastViewed));
+  }
+
+  static final class Pending {
+    private int views;
+    private Instant lastViewed;
+
+    Pending(int views, Instant lastViewed) {
+      this.views = views;
+      this.lastViewed = lastViewed;
+    }
+
+    int getViews() {
+      return views;
+    }
+
+    Instant getLastViewed() {
+      return lastViewed;
+    }
+  }
+}
@@ -92,22 +92,25 @@ public interface ViewCountService {
 
   /**
    * Increase an Item's view count by 1. If the Item does not have any view count yet, initialise
-   * the count to 1.
+   * the count to 1. Views are buffered in memory and written to the database periodically, but are
+   * included in {@link #getItemViewCount(ItemKey)} straight away.
    *
    * @param itemKey The Item's unique key.
-   * @return The increased view count.
    */
-  int incrementItemViewCount(ItemKey itemKey);
+  void incrementItemViewCount(ItemKey itemKey);
 
   /**
    * Increase an Attachment's view count by 1. If the Attachment does not have any view count yet,
-   * initialise the count to 1.
+   * initialise the count to 1. Views are buffered the same as for {@link
+   * #incrementItemViewCount(ItemKey)}.
    *
    * @param itemKey The Item's unique key.
    * @param attachmentUuid UUID of the Attachment.
-   * @return The increased view count.
    */
-  int incrementAttachmentViewCount(ItemKey itemKey, String attachmentUuid);
+  void incrementAttachmentViewCount(ItemKey itemKey, String attachmentUuid);
+
+  /** Write any buffered views for all Institutions to the database. */
+  void flushViewCounts();
 
   /**
    * Delete view count of both an Item and the Item's Attachments.
@@ -28,22 +28,51 @@ import com.tle.beans.viewcount.ViewcountItem;
 import com.tle.beans.viewcount.ViewcountItemId;
 import com.tle.common.institution.CurrentInstitution;
 import com.tle.core.guice.Bind;
+import com.tle.core.institution.InstitutionService;
+import com.tle.core.institution.RunAsInstitution;
 import com.tle.core.viewcount.dao.AttachmentViewCountDao;
 import com.tle.core.viewcount.dao.ItemViewCountDao;
+import com.tle.core.viewcount.service.ViewCountBuffer.Pending;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Restrictions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Views are counted in memory and written to the database every few seconds as increments, so a
+ * popular resource costs one update per flush rather than a read and a write per view, and nodes in
+ * a cluster add to each other's counts rather than overwriting them.
+ */
 @Bind(ViewCountService.class)
 @Singleton
 public class ViewCountServiceImpl implements ViewCountService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ViewCountServiceImpl.class);
+
   @Inject private ItemViewCountDao itemViewCountDao;
   @Inject private AttachmentViewCountDao attachmentViewCountDao;
+  @Inject private InstitutionService institutionService;
+  @Inject private RunAsInstitution runAsInstitution;
+
+  /** How often buffered views are written. 0 writes every view immediately. */
+  @Inject(optional = true)
+  @Named("viewcount.flushSeconds")
+  private int flushSeconds = 10;
+
+  private final ConcurrentMap<Long, InstitutionViews> pendingViews = new ConcurrentHashMap<>();
+  private ScheduledExecutorService flusher;
 
   private ViewcountItemId buildViewCountItemId(ItemKey itemKey) {
     return new ViewcountItemId(
@@ -62,18 +91,6 @@ public class ViewCountServiceImpl implements ViewCountService {
     return Restrictions.eq("id.inst", institution.getDatabaseId());
   }
 
-  // If the given ViewCount exists, plus the current view count by 1, update the last viewed
-  // time and return it.
-  private <T extends AbstractViewcount> Optional<T> updateIfExists(T viewCount) {
-    return Optional.ofNullable(viewCount)
-        .map(
-            vc -> {
-              vc.setCount(vc.getCount() + 1);
-              vc.setLastViewed(Instant.now());
-              return vc;
-            });
-  }
-
   // If the given ViewCount exists, return the count. Otherwise, return 0.
   private int getViewCount(AbstractViewcount viewCount) {
     return Optional.ofNullable(viewCount).map(AbstractViewcount::getCount).orElse(0);
@@ -83,6 +100,7 @@ public class ViewCountServiceImpl implements ViewCountService {
   @Transactional
   public void setItemViewCount(ItemKey itemKey, int viewCount, Instant lastViewed) {
     ViewcountItemId id = buildViewCountItemId(itemKey);
+    getPendingViews(CurrentInstitution.get()).items.discard(id::equals);
     itemViewCountDao.saveOrUpdate(new ViewcountItem(id, viewCount, lastViewed));
   }
 
@@ -91,53 +109,143 @@ public class ViewCountServiceImpl implements ViewCountService {
   public void setAttachmentViewCount(
       ItemKey itemKey, String attachmentUuid, int viewCount, Instant lastViewed) {
     ViewcountAttachmentId id = buildViewCountAttachmentId(itemKey, attachmentUuid);
+    getPendingViews(CurrentInstitution.get()).attachments.discard(id::equals);
     attachmentViewCountDao.saveOrUpdate(new ViewcountAttachment(id, viewCount, lastViewed));
   }
 
   @Override
-  public int incrementItemViewCount(ItemKey itemKey) {
-    ViewcountItemId id = buildViewCountItemId(itemKey);
+  public void incrementItemViewCount(ItemKey itemKey) {
+    InstitutionViews views = getPendingViews(CurrentInstitution.get());
+    views.items.add(buildViewCountItemId(itemKey), 1, Instant.now());
+    viewed(views);
+  }
 
-    ViewcountItem viewcountItem =
-        updateIfExists(itemViewCountDao.findById(id))
-            .orElse(new ViewcountItem(id, 1, Instant.now()));
+  @Override
+  public void incrementAttachmentViewCount(ItemKey itemKey, String attachmentUuid) {
+    InstitutionViews views = getPendingViews(CurrentInstitution.get());
+    views.attachments.add(buildViewCountAttachmentId(itemKey, attachmentUuid), 1, Instant.now());
+    viewed(views);
+  }
 
-    itemViewCountDao.saveOrUpdate(viewcountItem);
-    return viewcountItem.getCount();
+  @Override
+  public int getItemViewCount(ItemKey itemKey) {
+    ViewcountItemId id = buildViewCountItemId(itemKey);
+    return getViewCount(itemViewCountDao.findById(id))
+        + getPendingViews(CurrentInstitution.get()).items.getViews(id);
   }
 
   @Override
-  public int incrementAttachmentViewCount(ItemKey itemKey, String attachmentUuid) {
+  public int getAttachmentViewCount(ItemKey itemKey, String attachmentUuid) {
     ViewcountAttachmentId id = buildViewCountAttachmentId(itemKey, attachmentUuid);
+    return getViewCount(attachmentViewCountDao.findById(id))
+        + getPendingViews(CurrentInstitution.get()).attachments.getViews(id);
+  }
 
-    ViewcountAttachment viewcountAttachment =
-        updateIfExists(attachmentViewCountDao.findById(id))
-            .orElse(new ViewcountAttachment(id, 1, Instant.now()));
+  private InstitutionViews getPendingViews(Institution institution) {
+    return pendingViews.computeIfAbsent(
+        institution.getUniqueId(), id -> new InstitutionViews(institution));
+  }
 
-    attachmentViewCountDao.saveOrUpdate(viewcountAttachment);
+  private void viewed(InstitutionViews views) {
+    if (flushSeconds <= 0) {
+      writePendingViews(views);
+    } else {
+      startFlusher();
+    }
+  }
 
-    return viewcountAttachment.getCount();
+  private synchronized void startFlusher() {
+    if (flusher == null) {
+      flusher =
+          Executors.newSingleThreadScheduledExecutor(
+              r -> {
+                Thread thread = new Thread(r, "View count writer");
+                thread.setDaemon(true);
+                return thread;
+              });
+      flusher.scheduleWithFixedDelay(
+          this::flushViewCounts, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+      Runtime.getRuntime()
+          .addShutdownHook(new Thread(this::flushViewCounts, "View count shutdown writer"));
+    }
   }
 
   @Override
-  public int getItemViewCount(ItemKey itemKey) {
-    return getViewCount(itemViewCountDao.findById(buildViewCountItemId(itemKey)));
+  public void flushViewCounts() {
+    for (InstitutionViews views : pendingViews.values()) {
+      if (views.isEmpty()) {
+        continue;
+      }
+      if (institutionService.getInstitution(views.institution.getUniqueId()) == null) {
+        // Deleted or unloaded
+        pendingViews.remove(views.institution.getUniqueId());
+        continue;
+      }
+      try {
+        runAsInstitution.executeAsSystem(views.institution, () -> writePendingViews(views));
+      } catch (Exception e) {
+        LOGGER.warn(
+            "Error writing view counts for institution " + views.institution.getUniqueId(), e);
+      }
+    }
   }
 
-  @Override
-  public int getAttachmentViewCount(ItemKey itemKey, String attachmentUuid) {
-    return getViewCount(
-        attachmentViewCountDao.findById(buildViewCountAttachmentId(itemKey, attachmentUuid)));
+  /** Must be called with the institution of the views as the current institution. */
+  private void writePendingViews(InstitutionViews views) {
+    Map<ViewcountItemId, Pending> items = views.items.drain();
+    Map<ViewcountAttachmentId, Pending> attachments = views.attachments.drain();
+    if (items.isEmpty() && attachments.isEmpty()) {
+      return;
+    }
+    try {
+      addViews(items, attachments);
+    } catch (RuntimeException e) {
+      // Nothing was committed, so keep the views to try again. The most likely failure is another
+      // node inserting the same new row first, which will be an update next time.
+      views.items.restore(items);
+      views.attachments.restore(attachments);
+      throw e;
+    }
+  }
+
+  @Transactional
+  public void addViews(
+      Map<ViewcountItemId, Pending> items, Map<ViewcountAttachmentId, Pending> attachments) {
+    items.forEach(
+        (id, p) -> {
+          if (itemViewCountDao.addViews(id, p.getViews(), p.getLastViewed()) == 0) {
+            itemViewCountDao.save(new ViewcountItem(id, p.getViews(), p.getLastViewed()));
+          }
+        });
+    attachments.forEach(
+        (id, p) -> {
+          if (attachmentViewCountDao.addViews(id, p.getViews(), p.getLastViewed()) == 0) {
+            attachmentViewCountDao.save(
+                new ViewcountAttachment(id, p.getViews(), p.getLastViewed()));
+          }
+        });
+  }
+
+  private void flushCurrentInstitution() {
+    Institution institution = CurrentInstitution.get();
+    if (institution != null) {
+      InstitutionViews views = pendingViews.get(institution.getUniqueId());
+      if (views != null) {
+        writePendingViews(views);
+      }
+    }
   }
 
   @Override
   public List<ViewcountItem> getItemViewCountList(Institution institution) {
+    flushCurrentInstitution();
     return itemViewCountDao.findAllByCriteria(restrictedByInstitution(institution));
   }
 
   @Override
   public List<ViewcountAttachment> getAttachmentViewCountList(
       Institution institution, ItemKey itemKey) {
+    flushCurrentInstitution();
     return attachmentViewCountDao.findAllByCriteria(
         restrictedByInstitution(institution),
         Restrictions.eq("id.itemVersion", itemKey.getVersion()),
@@ -146,18 +254,41 @@ public class ViewCountServiceImpl implements ViewCountService {
 
   @Override
   public int getItemViewCountForCollection(ItemDefinition col) {
+    flushCurrentInstitution();
     return itemViewCountDao.getItemCountForCollection(col.getId());
   }
 
   @Override
   public int getAttachmentViewCountForCollection(ItemDefinition col) {
+    flushCurrentInstitution();
     return attachmentViewCountDao.getAttachmentViewCountForCollection(col.getId());
   }
 
   @Override
   @Transactional
   public void deleteViewCount(Institution institution, ItemKey itemKey) {
+    InstitutionViews views = getPendingViews(institution);
+    views.items.discard(id -> isItem(itemKey, id.getItemUuid(), id.getItemVersion()));
+    views.attachments.discard(id -> isItem(itemKey, id.getItemUuid(), id.getItemVersion()));
     itemViewCountDao.deleteItemViewCount(institution, itemKey);
     attachmentViewCountDao.deleteAttachmentViewCountForItem(institution, itemKey);
   }
+
+  private static boolean isItem(ItemKey itemKey, String uuid, int version) {
+    return itemKey.getVersion() == version && itemKey.getUuid().equals(uuid);
+  }
+
+  private static final class InstitutionViews {
+    private final Institution institution;
+    private final ViewCountBuffer<ViewcountItemId> items = new ViewCountBuffer<>();
+    private final ViewCountBuffer<ViewcountAttachmentId> attachments = new ViewCountBuffer<>();
+
+    InstitutionViews(Institution institution) {
+      this.institution = institution;
+    }
+
+    boolean isEmpty() {
+      return items.isEmpty() && attachments.isEmpty();
+    }
+  }
 }
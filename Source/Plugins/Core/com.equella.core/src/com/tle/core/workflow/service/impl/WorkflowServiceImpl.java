@@ -118,6 +118,11 @@ public class WorkflowServiceImpl
     this.workflowDao = workflowDao;
   }
 
+  @Override
+  protected boolean isCachedByUuid() {
+    return true;
+  }
+
   @Override
   protected Collection<Pair<Object, Node>> getOtherTargetListObjects(Workflow workflow) {
     Collection<WorkflowItem> tasks = workflow.getAllWorkflowItems().values();
@@ -24,28 +24,62 @@ import com.tle.core.imagemagick.ThumbnailOptions;
 import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
+/**
+ * Common web image formats are thumbnailed in the JVM by {@link JavaImageThumbnailer}, everything
+ * else (and anything it fails on) goes to ImageMagick. Both together get one {@code
+ * thumbnailing.timeout}, so ImageMagick only has whatever time the JVM attempt left over.
+ */
 @Bind
 @Singleton
+@SuppressWarnings("nls")
 public class ImageThumbnailGenerator implements ThumbnailGenerator {
   @Inject private ImageMagickService imageMagickService;
+  @Inject private JavaImageThumbnailer javaThumbnailer;
+
+  // In seconds, 0 for no limit
+  @Inject
+  @Named("thumbnailing.timeout")
+  private int timeout;
 
   @Override
   public void generateThumbnail(File src, File dest) {
-    imageMagickService.generateStandardThumbnail(src, dest);
+    generateThumbnailAdvanced(src, dest, ThumbnailOptions.standard());
   }
 
   @Override
-  public void generateThumbnailAdvanced(File srcFile, File dstFile, ThumbnailOptions options)
-      throws Exception {
-    imageMagickService.generateThumbnailAdvanced(srcFile, dstFile, options);
+  public void generateThumbnailAdvanced(File srcFile, File dstFile, ThumbnailOptions options) {
+    final long start = System.nanoTime();
+    if (!javaThumbnailer.generateThumbnail(srcFile, dstFile, options)) {
+      imageMagickService.generateThumbnailAdvanced(
+          srcFile, dstFile, options, getRemainingTimeout(srcFile, start));
+    }
+  }
+
+  private int getRemainingTimeout(File srcFile, long start) {
+    if (timeout <= 0) {
+      return 0;
+    }
+    final long remaining = timeout - TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+    if (remaining < 1) {
+      throw new RuntimeException(
+          "Timer of "
+              + timeout
+              + " seconds on thumbnailing "
+              + srcFile.getAbsolutePath()
+              + " was exceeded.");
+    }
+    return (int) remaining;
   }
 
   @Override
   public Dimension getImageDimensions(File srcFile) throws IOException {
-    return imageMagickService.getImageDimensions(srcFile);
+    final Dimension dimensions = javaThumbnailer.getImageDimensions(srcFile);
+    return dimensions != null ? dimensions : imageMagickService.getImageDimensions(srcFile);
   }
 
   @Override
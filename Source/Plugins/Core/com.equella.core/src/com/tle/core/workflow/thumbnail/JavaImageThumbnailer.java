@@ -0,0 +1,374 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.workflow.thumbnail;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.annotation.Nullable;
+import com.tle.common.Check;
+import com.tle.common.NamedThreadFactory;
+import com.tle.core.guice.Bind;
+import com.tle.core.imagemagick.ThumbnailOptions;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.annotation.PostConstruct;
+import javax.imageio.stream.ImageOutputStream;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates thumbnails for the common web image formats inside the JVM, rather than forking
+ * ImageMagick for every image. Images are decoded with source subsampling so that only roughly
+ * twice the required number of pixels is ever held in memory, regardless of the size of the
+ * original.
+ *
+ * <p>Only the subset of {@link ThumbnailOptions} used by the thumbnail pipeline is supported
+ * (centred cropping and padding). Anything else, and any image that ImageIO cannot decode (e.g.
+ * CMYK JPEGs), is reported as not handled so the caller can fall back to ImageMagick.
+ *
+ * <p>Thumbnails are generated on a pool of {@code thumbnailing.threads} threads under the same
+ * {@code thumbnailing.timeout} as ImageMagick, so that a pathological image can't hold up the
+ * calling thread indefinitely. A decode that ignores being aborted keeps its pool thread until it
+ * finishes, so such images can only ever tie up that many threads.
+ */
+@Bind
+@Singleton
+@SuppressWarnings("nls")
+@NonNullByDefault
+public class JavaImageThumbnailer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(JavaImageThumbnailer.class);
+
+  private static final Set<String> FORMATS = ImmutableSet.of("jpeg", "png", "gif", "bmp");
+  private static final float JPEG_QUALITY = 0.9f;
+  // Pixels with a luma above 99% count as white when checking for blank thumbnails
+  private static final int BLANK_THRESHOLD = 253;
+
+  @Inject(optional = true)
+  @Named("thumbnailing.java")
+  private boolean enabled = true;
+
+  // In seconds, 0 for no limit
+  @Inject(optional = true)
+  @Named("thumbnailing.timeout")
+  private int timeout = 20;
+
+  @Inject(optional = true)
+  @Named("thumbnailing.threads")
+  private int threads = 2;
+
+  private ExecutorService executor;
+
+  @PostConstruct
+  public void init() {
+    executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, threads), new NamedThreadFactory("JavaImageThumbnailer"));
+  }
+
+  /**
+   * @return false if the image was not handled, in which case ImageMagick should be used instead
+   */
+  public boolean generateThumbnail(File srcFile, File dstFile, ThumbnailOptions options) {
+    if (!enabled || !supportsOptions(options)) {
+      return false;
+    }
+    final Color background = getBackground(options);
+    if (background == null) {
+      return false;
+    }
+    final AtomicReference<ImageReader> activeReader = new AtomicReference<>();
+    final Future<Boolean> result =
+        executor.submit(() -> thumbnail(srcFile, dstFile, options, background, activeReader));
+    try {
+      return timeout > 0 ? result.get(timeout, TimeUnit.SECONDS) : result.get();
+    } catch (TimeoutException e) {
+      LOGGER.warn(
+          "Timed out thumbnailing "
+              + srcFile.getAbsolutePath()
+              + " in the JVM after "
+              + timeout
+              + " seconds, falling back to ImageMagick");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOGGER.warn("Could not thumbnail " + srcFile.getAbsolutePath() + " in the JVM", e);
+    }
+    // Stops the decode, and stops the thumbnail being written if it gets that far anyway
+    final ImageReader reader = activeReader.get();
+    if (reader != null) {
+      reader.abort();
+    }
+    result.cancel(true);
+    return false;
+  }
+
+  private boolean thumbnail(
+      File srcFile,
+      File dstFile,
+      ThumbnailOptions options,
+      Color background,
+      AtomicReference<ImageReader> activeReader) {
+    try (ImageInputStream in = ImageIO.createImageInputStream(srcFile)) {
+      final ImageReader reader = getReader(in);
+      if (reader == null) {
+        return false;
+      }
+      activeReader.set(reader);
+      try {
+        reader.setInput(in, true, true);
+        final int width = reader.getWidth(0);
+        final int height = reader.getHeight(0);
+        options.setImgWidth(width);
+        options.setImgHeight(height);
+
+        final Dimension scaled = getScaledSize(width, height, options);
+        final ImageReadParam param = reader.getDefaultReadParam();
+        // Keep at least twice the target resolution for a decent downscale
+        final int subsampling =
+            (int) Math.max(1, Math.min(width / 2.0 / scaled.width, height / 2.0 / scaled.height));
+        if (subsampling > 1) {
+          param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        }
+        final BufferedImage image = reader.read(0, param);
+        if (image == null || Thread.currentThread().isInterrupted()) {
+          return false;
+        }
+        final BufferedImage thumb =
+            render(image, scaled, getCanvasSize(scaled, options), background);
+        if (Thread.currentThread().isInterrupted()) {
+          return false;
+        }
+        if (!options.isSkipBlankCheck() && isBlank(thumb)) {
+          LOGGER.debug("Not writing blank thumbnail for " + srcFile.getAbsolutePath());
+          return true;
+        }
+        writeJpeg(thumb, dstFile);
+        return true;
+      } finally {
+        reader.dispose();
+      }
+    } catch (Exception | OutOfMemoryError e) {
+      LOGGER.warn(
+          "Could not thumbnail "
+              + srcFile.getAbsolutePath()
+              + " in the JVM, falling back to ImageMagick: "
+              + e.getMessage());
+      if (dstFile.exists() && !dstFile.delete()) {
+        LOGGER.warn("Unable to delete partial thumbnail " + dstFile.getAbsolutePath());
+      }
+      return false;
+    }
+  }
+
+  /** @return null if the image is not one that is handled */
+  @Nullable
+  public Dimension getImageDimensions(File srcFile) {
+    if (!enabled) {
+      return null;
+    }
+    try (ImageInputStream in = ImageIO.createImageInputStream(srcFile)) {
+      final ImageReader reader = getReader(in);
+      if (reader == null) {
+        return null;
+      }
+      try {
+        reader.setInput(in, true, true);
+        return new Dimension(reader.getWidth(0), reader.getHeight(0));
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException e) {
+      LOGGER.debug("Could not read dimensions of " + srcFile.getAbsolutePath(), e);
+      return null;
+    }
+  }
+
+  @Nullable
+  private ImageReader getReader(@Nullable ImageInputStream in) throws IOException {
+    if (in == null) {
+      return null;
+    }
+    final Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+    if (readers.hasNext()) {
+      final ImageReader reader = readers.next();
+      if (FORMATS.contains(reader.getFormatName().toLowerCase(Locale.ENGLISH))) {
+        return reader;
+      }
+      reader.dispose();
+    }
+    return null;
+  }
+
+  private boolean supportsOptions(ThumbnailOptions options) {
+    final String gravity = options.getGravity();
+    final boolean centred = gravity == null || gravity.equalsIgnoreCase("center");
+    final boolean cropped = options.getCropWidth() > 0 && options.getCropHeight() > 0;
+    return centred
+        && !(cropped && gravity == null)
+        && options.getCropX() == 0
+        && options.getCropY() == 0;
+  }
+
+  @Nullable
+  private Color getBackground(ThumbnailOptions options) {
+    final String colour = options.getBackgroundColour();
+    if (Check.isEmpty(colour) || colour.equalsIgnoreCase("white")) {
+      return Color.WHITE;
+    }
+    try {
+      return Color.decode(colour);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /** Mirrors the ImageMagick '-thumbnail WxH&gt;' and '-thumbnail WxH^' geometries. */
+  private Dimension getScaledSize(int width, int height, ThumbnailOptions options) {
+    if (options.isNoSize()) {
+      return new Dimension(width, height);
+    }
+    final double scaleX = (double) options.getWidth() / width;
+    final double scaleY = (double) options.getHeight() / height;
+    final double scale;
+    if (options.isKeepAspect() || (height < options.getHeight() && width < options.getWidth())) {
+      scale = Math.min(1.0, Math.min(scaleX, scaleY));
+    } else {
+      scale = Math.max(scaleX, scaleY);
+    }
+    return new Dimension(
+        Math.max(1, (int) Math.round(width * scale)),
+        Math.max(1, (int) Math.round(height * scale)));
+  }
+
+  private Dimension getCanvasSize(Dimension scaled, ThumbnailOptions options) {
+    final int cropWidth = options.getCropWidth();
+    final int cropHeight = options.getCropHeight();
+    if (options.isNoSize() || cropWidth <= 0 || cropHeight <= 0) {
+      return scaled;
+    }
+    // Without a background border, cropping can only make the image smaller
+    if (Check.isEmpty(options.getBackgroundColour())) {
+      return new Dimension(Math.min(cropWidth, scaled.width), Math.min(cropHeight, scaled.height));
+    }
+    return new Dimension(cropWidth, cropHeight);
+  }
+
+  private BufferedImage render(
+      BufferedImage image, Dimension scaled, Dimension canvas, Color background) {
+    final BufferedImage source = downscale(image, scaled);
+    final BufferedImage thumb =
+        new BufferedImage(canvas.width, canvas.height, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D g = thumb.createGraphics();
+    try {
+      g.setColor(background);
+      g.fillRect(0, 0, canvas.width, canvas.height);
+      g.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.drawImage(
+          source,
+          (canvas.width - scaled.width) / 2,
+          (canvas.height - scaled.height) / 2,
+          scaled.width,
+          scaled.height,
+          null);
+    } finally {
+      g.dispose();
+    }
+    return thumb;
+  }
+
+  /**
+   * Halves the image until it is within a factor of two of the target size, so the final bilinear
+   * pass doesn't skip source pixels.
+   */
+  private BufferedImage downscale(BufferedImage image, Dimension scaled) {
+    BufferedImage current = image;
+    while (current.getWidth() / 2 >= scaled.width && current.getHeight() / 2 >= scaled.height) {
+      final int width = current.getWidth() / 2;
+      final int height = current.getHeight() / 2;
+      final BufferedImage half = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      final Graphics2D g = half.createGraphics();
+      try {
+        g.setRenderingHint(
+            RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(current, 0, 0, width, height, null);
+      } finally {
+        g.dispose();
+      }
+      current = half;
+    }
+    return current;
+  }
+
+  private boolean isBlank(BufferedImage thumb) {
+    for (int y = 0; y < thumb.getHeight(); y++) {
+      for (int x = 0; x < thumb.getWidth(); x++) {
+        final int rgb = thumb.getRGB(x, y);
+        final double luma =
+            0.299 * ((rgb >> 16) & 0xff) + 0.587 * ((rgb >> 8) & 0xff) + 0.114 * (rgb & 0xff);
+        if (luma < BLANK_THRESHOLD) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void writeJpeg(BufferedImage thumb, File dstFile) throws IOException {
+    final File parent = dstFile.getParentFile();
+    if (!(parent.mkdirs() || parent.exists())) {
+      throw new IOException("Could not create/confirm directory " + parent.getAbsolutePath());
+    }
+    final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    try (ImageOutputStream out = ImageIO.createImageOutputStream(dstFile)) {
+      final ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(JPEG_QUALITY);
+      writer.setOutput(out);
+      writer.write(null, new IIOImage(thumb, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package com.tle.core.workflow.thumbnail.service.impl;
 
 import com.google.inject.assistedinject.Assisted;
+import com.google.inject.name.Named;
 import com.tle.beans.Institution;
 import com.tle.beans.item.ItemId;
 import com.tle.common.BlockingThreadPoolExecutor;
@@ -52,14 +53,18 @@ import org.slf4j.LoggerFactory;
   @Inject private ThumbingCallableFactory callableFactory;
   @Inject private RunAsInstitution runAs;
 
+  @Inject
+  @Named("thumbnailing.threads")
+  private int threads;
+
   private CompletionService<ThumbingCallableResult> completionService;
 
   @PostConstruct
   public void init() {
     final ThreadPoolExecutor executor =
         new BlockingThreadPoolExecutor(
-            2,
-            2,
+            threads,
+            threads,
             5,
             TimeUnit.MINUTES,
             2,
@@ -22,79 +22,144 @@ import com.google.common.collect.Lists;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
+import com.google.inject.name.Named;
 import com.tle.beans.Institution;
 import com.tle.beans.item.ItemIdKey;
-import com.tle.common.Check;
 import com.tle.common.institution.CurrentInstitution;
 import com.tle.core.guice.BindFactory;
 import com.tle.core.hibernate.CurrentDataSource;
 import com.tle.core.hibernate.DataSourceHolder;
 import com.tle.core.system.service.SchemaDataSourceService;
 import com.tle.freetext.ItemSyncer.ItemSyncFactory;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Summary;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Indexes items in the background as a pipeline of three stages, each with its own threads:
+ *
+ * <ol>
+ *   <li><b>Prepare:</b> loads batches of waiting items from the database
+ *   <li><b>Extract:</b> runs the indexing extensions over each item, including the (slow) text
+ *       extraction of attachments
+ *   <li><b>Write:</b> adds batches of indexed items to Lucene
+ * </ol>
+ *
+ * Items are handed between stages on queues ordered by expected return time, so "index now" items
+ * jump ahead of a bulk reindex. The queues into the extract and write stages are bounded, so a
+ * slow stage holds back the ones feeding it rather than letting prepared items pile up in memory.
+ * Stage threads block on their queues and wake as soon as there is work for them.
+ *
+ * <p>The write stage is deliberately a single thread (the one calling {@link #run()}) so that
+ * batches for the same item are always written in order.
+ */
+@SuppressWarnings("nls")
 public class BackgroundIndexerImpl implements BackgroundIndexer {
-  private static final int BATCH_PREPARE = 10;
-
   protected static final int MAX_WAITING = 10000;
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundIndexerImpl.class);
 
-  private static final int MAXTHREADS = 4;
-  private static final int REAL_MAXTHREADS = MAXTHREADS * 2;
-  private static final int MAXBATCH = 50;
-
-  private static final long WAITTIME = TimeUnit.SECONDS.toMillis(2);
   private static final long CHECKTIME = TimeUnit.SECONDS.toMillis(15);
   private static final long INTERRUPT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+  // Longest a partial batch waits for more items before being written
+  private static final long WRITE_LINGER = TimeUnit.SECONDS.toMillis(2);
+
+  private static final String STAGE_PREPARE = "prepare";
+  private static final String STAGE_EXTRACT = "extract";
+  private static final String STAGE_WRITE = "write";
+
+  private static final Gauge QUEUE_DEPTH =
+      Gauge.build()
+          .name("background_indexer_queue_depth")
+          .help("Number of items waiting for each stage of the background indexer")
+          .labelNames("schema", "stage")
+          .register();
+  private static final Counter ITEMS_PROCESSED =
+      Counter.build()
+          .name("background_indexer_items_total")
+          .help("Number of items processed by each stage of the background indexer")
+          .labelNames("schema", "stage")
+          .register();
+  private static final Summary STAGE_LATENCY =
+      Summary.build()
+          .name("background_indexer_stage_seconds")
+          .help("Time taken by each stage of the background indexer per item or batch")
+          .labelNames("schema", "stage")
+          .register();
+
+  private static final Comparator<IndexedItem> BY_RETURN_TIME =
+      Comparator.comparingLong(IndexedItem::getExpectedReturnTime);
 
   @Inject private IndexedItemFactory indexedItemFactory;
   @Inject private ItemSyncFactory syncerFactory;
   @Inject private Provider<IndexerThread> indexerThreadProvider;
   @Inject private FreetextIndex freetextIndex;
 
-  private Object listLock = new Object();
-  private Object threadingLock = new Object();
+  @Inject(optional = true)
+  @Named("freetextIndex.indexer.prepareThreads")
+  private int prepareThreads = 1;
+
+  @Inject(optional = true)
+  @Named("freetextIndex.indexer.prepareBatch")
+  private int prepareBatch = 10;
+
+  @Inject(optional = true)
+  @Named("freetextIndex.indexer.extractThreads")
+  private int extractThreads = 4;
+
+  @Inject(optional = true)
+  @Named("freetextIndex.indexer.extractQueueSize")
+  private int extractQueueSize = 100;
+
+  @Inject(optional = true)
+  @Named("freetextIndex.indexer.writeBatch")
+  private int writeBatch = 50;
+
+  @Inject(optional = true)
+  @Named("freetextIndex.indexer.writeQueueSize")
+  private int writeQueueSize = 500;
+
+  // The current item for each ID, whether it is still waiting or being indexed
+  private final Map<FullIdKey, IndexedItem> currentItems =
+      new ConcurrentHashMap<FullIdKey, IndexedItem>();
 
-  // Priority list of items waiting. Purposeful choice of LinkedList instead
-  // of interface
-  private LinkedList<IndexedItem> waitingList = new LinkedList<IndexedItem>(); // NOSONAR
-  // Items needing to be indexed
-  private Map<FullIdKey, IndexedItem> waitingMap = new HashMap<FullIdKey, IndexedItem>();
-  // Items currently being indexed or waiting to be added to index
-  private Map<FullIdKey, IndexedItem> indexingMap = new HashMap<FullIdKey, IndexedItem>();
-  // Items finished indexing, but waiting to be added to lucene
-  private LinkedList<IndexedItem> indexedList = new LinkedList<IndexedItem>(); // NOSONAR
+  private StageQueue waitingQueue;
+  private StageQueue extractQueue;
+  private StageQueue writeQueue;
 
-  private final Stack<IndexerThread> freeThreads = new Stack<IndexerThread>();
-  private final List<IndexerThread> inuseThreads = new LinkedList<IndexerThread>();
+  // Items taken off the waiting queue which haven't made it to the write queue yet
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger errors = new AtomicInteger();
 
-  private int indexerThreads;
-  private long nextCheck;
+  private final List<IndexerThread> indexerThreads = new CopyOnWriteArrayList<IndexerThread>();
+  private ExecutorService prepareExecutor;
+  private ScheduledExecutorService timer;
 
-  private int docsDone;
-  private int docsDoneSinceLast;
-  private int errors;
-  private int deletions;
-  private boolean dead;
-  private volatile boolean wakeup;
+  private volatile boolean dead;
 
   private final DataSourceHolder dataSource;
   private final long schemaId;
+  private final String schemaLabel;
   private final SchemaDataSourceService schemaService;
 
   private ExecutorService syncFullExecutor = Executors.newCachedThreadPool();
@@ -102,53 +167,70 @@ public class BackgroundIndexerImpl implements BackgroundIndexer {
   @AssistedInject
   public BackgroundIndexerImpl(@Assisted long schemaId, SchemaDataSourceService schemaService) {
     this.schemaId = schemaId;
+    this.schemaLabel = Long.toString(schemaId);
     this.schemaService = schemaService;
     dataSource = schemaService.getDataSourceForId(schemaId);
   }
 
+  @Inject
+  void createQueues() {
+    waitingQueue = new StageQueue(STAGE_PREPARE, Integer.MAX_VALUE);
+    extractQueue = new StageQueue(STAGE_EXTRACT, extractQueueSize);
+    writeQueue = new StageQueue(STAGE_WRITE, writeQueueSize);
+  }
+
+  /** Starts the prepare and extract stages, then runs the write stage on the calling thread. */
   @Override
   public void run() {
     CurrentDataSource.set(dataSource);
-    while (true) {
-      try {
-        if (dead) {
-          LOGGER.debug("dead, returning"); // $NON-NLS-1$
-          return;
-        }
-
-        wakeup = false;
-        boolean wait = processEvent();
-        if (wait && !wakeup) {
-          try {
-            synchronized (this) {
-              if (!wakeup) {
-                wait(WAITTIME);
-              }
-            }
-          } catch (InterruptedException e) {
-            LOGGER.error("Interrupted"); // $NON-NLS-1$
-          }
-        }
-      } catch (Throwable t) {
-        LOGGER.error("Unhandled exception during event loop", t); // $NON-NLS-1$
+    startStages();
+    try {
+      writeLoop();
+    } finally {
+      LOGGER.debug("dead, returning");
+      prepareExecutor.shutdownNow();
+      timer.shutdownNow();
+      for (IndexerThread thread : indexerThreads) {
+        thread.interrupt();
       }
     }
   }
 
-  public boolean processEvent() {
-    boolean wait = true;
-    long now = System.currentTimeMillis();
-    boolean needsCheck = now >= nextCheck;
-
-    wait &= checkNewIndexThreads(now);
-    wait &= checkBatchIndex(now);
-    wait &= checkSlowIndexes(now);
+  private void startStages() {
+    final AtomicInteger prepareCount = new AtomicInteger();
+    prepareExecutor =
+        Executors.newFixedThreadPool(
+            prepareThreads,
+            r -> {
+              Thread thread =
+                  new Thread(r, "Background indexer prepare - " + prepareCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    for (int i = 0; i < prepareThreads; i++) {
+      prepareExecutor.execute(this::prepareLoop);
+    }
 
-    if (needsCheck) {
-      nextCheck = now + CHECKTIME;
-      statusUpdate(now);
+    // Express threads only pick up overdue items when the regular threads are all busy, the same
+    // way "index now" items used to get an extra thread
+    for (int i = 0; i < extractThreads * 2; i++) {
+      IndexerThread thread = indexerThreadProvider.get();
+      thread.setNumber(i);
+      thread.setExpress(i >= extractThreads);
+      thread.setBackground(this);
+      thread.setExtensions(freetextIndex.getIndexingExtensions());
+      indexerThreads.add(thread);
+      thread.start();
     }
-    return wait;
+
+    timer =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "Background indexer timer - " + schemaId);
+              thread.setDaemon(true);
+              return thread;
+            });
+    timer.scheduleWithFixedDelay(this::statusUpdate, CHECKTIME, CHECKTIME, TimeUnit.MILLISECONDS);
   }
 
   @Override
@@ -162,205 +244,243 @@ public class BackgroundIndexerImpl implements BackgroundIndexer {
     schemaService.executeWithSchema(schemaId, syncerFactory.create(institutions, since, this));
   }
 
-  @SuppressWarnings("nls")
-  private boolean checkSlowIndexes(long now) {
-    synchronized (threadingLock) {
-      for (IndexerThread thread : inuseThreads) {
-        IndexedItem indexedItem = thread.getIndexedItem();
-        if (indexedItem != null) {
-          if (!indexedItem.isOnIndexList()
-              && !indexedItem.isNoLongerCurrent()
-              && !indexedItem.isFinishedAllIndexing()
-              && !indexedItem.isIndexed()
-              && now >= indexedItem.getExpectedReturnTime()) {
-            ItemIdKey itemKey = indexedItem.getItemIdKey();
-            if (indexedItem.isFinishedFastIndexing()) {
-              synchronized (listLock) {
-                if (!indexedItem.isOnIndexList()) {
-                  LOGGER.info("Item overdue: " + itemKey + " indexing now.");
-                  addToIndexedList(indexedItem);
-                }
-              }
-            } else {
-              LOGGER.info("Item overdue: " + itemKey + " but still not \"fast\" indexed.");
-            }
-          }
+  private void prepareLoop() {
+    CurrentDataSource.set(dataSource);
+    while (!dead) {
+      final List<IndexedItem> batch = Lists.newArrayList();
+      try {
+        batch.add(waitingQueue.take());
+        waitingQueue.drainTo(batch, prepareBatch - 1);
+        inFlight.addAndGet(batch.size());
+        prepareBatch(batch);
+      } catch (InterruptedException e) {
+        if (!dead) {
+          LOGGER.error("Interrupted");
+        }
+      } catch (Throwable t) {
+        LOGGER.error("Unhandled exception preparing items", t);
+      } finally {
+        // Whatever wasn't handed on would otherwise never leave currentItems
+        for (IndexedItem item : batch) {
+          inFlight.decrementAndGet();
+          addErroredDoc(item);
         }
       }
-      return true;
     }
   }
 
-  @SuppressWarnings("nls")
-  private boolean checkBatchIndex(long now) {
-    List<IndexedItem> batch = null;
-    synchronized (listLock) {
-      if (indexedList.isEmpty()) {
-        return true;
+  /** Removes each item from the batch as it is handed on to the next stage. */
+  private void prepareBatch(List<IndexedItem> batch) throws InterruptedException {
+    List<IndexedItem> toPrepare = Lists.newArrayList();
+    for (IndexedItem item : batch) {
+      if (!item.isNoLongerCurrent() && !item.isPrepared()) {
+        toPrepare.add(item);
       }
-      boolean overdue = now >= indexedList.element().getExpectedReturnTime();
-      if (indexedList.size() >= MAXBATCH || indexerThreads == 0 || overdue) {
-        int num = 0;
-        if (overdue) {
-          for (IndexedItem indItem : indexedList) {
-            if (now < indItem.getExpectedReturnTime()) {
-              break;
-            }
-            num++;
-          }
-        } else {
-          num = Math.min(MAXBATCH, indexedList.size());
-        }
+    }
+    if (!toPrepare.isEmpty()) {
+      long start = System.nanoTime();
+      populateItemBatch(toPrepare);
+      observe(STAGE_PREPARE, start, toPrepare.size());
+    }
 
-        List<IndexedItem> indexBatch = indexedList.subList(0, num);
-        for (IndexedItem item : indexBatch) {
-          item.setOnIndexList(false);
-        }
-        batch = Lists.newArrayList(indexBatch);
-        indexBatch.clear();
+    for (Iterator<IndexedItem> iter = batch.iterator(); iter.hasNext(); ) {
+      final IndexedItem item = iter.next();
+      if (item.isNoLongerCurrent()) {
+        inFlight.decrementAndGet();
+      } else if (item.isErrored()) {
+        inFlight.decrementAndGet();
+        addErroredDoc(item);
+      } else if (!item.isAdd()) {
+        // No longer in the database, so just delete it from the index
+        inFlight.decrementAndGet();
+        item.setFinishedAllIndexing(true);
+        queueForWrite(item);
       } else {
-        return true;
+        extractQueue.put(item);
       }
+      iter.remove();
     }
+  }
 
+  private void populateItemBatch(List<IndexedItem> batch) {
     try {
-      LOGGER.info("Indexing batch of " + batch.size() + " items");
-      freetextIndex.indexBatch(batch);
-    } catch (Exception e) {
-      LOGGER.error("Serious Error indexing a batch", e);
+      freetextIndex.prepareItemsForIndexing(batch);
+    } catch (Exception t) {
+      LOGGER.error("Failed to prepare batch for indexing, trying 1", t);
+      freetextIndex.prepareItemsForIndexing(batch.subList(0, 1));
     }
-    synchronized (listLock) {
-      for (IndexedItem indexedItem : batch) {
-        if (indexedItem.isFinishedAllIndexing()) {
-          indexingMap.remove(indexedItem.getId());
-        }
-        indexedItem.setIndexed(true);
-      }
-      return false;
-    }
-  }
-
-  private boolean checkNewIndexThreads(long now) {
-    IndexedItem item = null;
-    List<IndexedItem> batch = null;
-    synchronized (listLock) {
-      if (!waitingList.isEmpty()
-          && indexerThreads < REAL_MAXTHREADS
-          && (indexerThreads < MAXTHREADS
-              || now >= waitingList.element().getExpectedReturnTime())) {
-        item = waitingList.get(0);
-        if (!item.isPrepared()) {
-          int batchSize = BATCH_PREPARE;
-          if (waitingList.size() < batchSize) {
-            batchSize = waitingList.size();
+  }
+
+  /** Blocks until there is an item to extract, called by the regular indexer threads. */
+  IndexedItem takeForExtraction() throws InterruptedException {
+    return extractQueue.take();
+  }
+
+  /** Blocks until there is an overdue item to extract, called by the express indexer threads. */
+  IndexedItem takeOverdueForExtraction() throws InterruptedException {
+    return extractQueue.takeOverdue();
+  }
+
+  /**
+   * Called by the indexer threads once the fast extensions have been run. If the slow extensions
+   * haven't finished by the time the item is due, the item gets written without them and then
+   * written again once they're done.
+   */
+  void fastIndexingFinished(final IndexedItem item) {
+    long returnTime = item.getExpectedReturnTime();
+    if (returnTime == Long.MAX_VALUE) {
+      return;
+    }
+    timer.schedule(
+        () -> {
+          if (!item.isNoLongerCurrent() && !item.isFinishedAllIndexing() && !item.isIndexed()) {
+            LOGGER.info("Item overdue: " + item.getItemIdKey() + " indexing now.");
+            queueForWrite(item);
+          }
+        },
+        Math.max(0, returnTime - System.currentTimeMillis()),
+        TimeUnit.MILLISECONDS);
+  }
+
+  private void writeLoop() {
+    List<IndexedItem> batch = Lists.newArrayList();
+    while (!dead) {
+      try {
+        batch.add(writeQueue.take());
+        writeQueue.drainTo(batch, writeBatch - 1);
+        while (batch.size() < writeBatch && !isExtractionIdle()) {
+          long wait = getEarliestReturnTime(batch) - System.currentTimeMillis();
+          if (wait <= 0) {
+            break;
+          }
+          IndexedItem next = writeQueue.poll(Math.min(wait, WRITE_LINGER));
+          if (next == null) {
+            break;
           }
-          batch = Lists.newArrayList(waitingList.subList(0, batchSize));
+          batch.add(next);
         }
-      } else {
-        return true;
+        writeBatch(batch);
+      } catch (InterruptedException e) {
+        if (!dead) {
+          LOGGER.error("Interrupted");
+        }
+      } catch (Throwable t) {
+        LOGGER.error("Unhandled exception during event loop", t);
+      } finally {
+        batch.clear();
       }
     }
+  }
+
+  private boolean isExtractionIdle() {
+    return inFlight.get() == 0 && waitingQueue.size() == 0;
+  }
 
-    if (!Check.isEmpty(batch)) {
-      populateItemBatch(batch);
+  private long getEarliestReturnTime(List<IndexedItem> batch) {
+    long earliest = Long.MAX_VALUE;
+    for (IndexedItem item : batch) {
+      earliest = Math.min(earliest, item.getExpectedReturnTime());
     }
+    return earliest;
+  }
 
-    synchronized (listLock) {
-      if (item.isNoLongerCurrent()) {
-        return false;
+  private void writeBatch(List<IndexedItem> batch) {
+    List<IndexedItem> current = Lists.newArrayListWithCapacity(batch.size());
+    for (IndexedItem item : batch) {
+      synchronized (item) {
+        item.setOnIndexList(false);
       }
-      waitingList.remove(item);
-      FullIdKey idKey = item.getId();
-      waitingMap.remove(idKey);
-      if (item.isAdd()) {
-        indexingMap.put(idKey, item);
+      // Superseded items will be written by their replacement
+      if (!item.isNoLongerCurrent()) {
+        current.add(item);
+      }
+    }
+    if (current.isEmpty()) {
+      return;
+    }
 
-        if (item.isErrored()) {
-          addErroredDoc(item);
-        } else {
-          IndexerThread indexerThread = getIndexerThread();
-          indexerThread.startIndexing(item);
-        }
-      } else {
-        indexingMap.put(idKey, item);
-        item.setFinishedAllIndexing(true);
-        addToIndexedList(item);
+    long start = System.nanoTime();
+    try {
+      LOGGER.info("Indexing batch of " + current.size() + " items");
+      freetextIndex.indexBatch(current);
+    } catch (Exception e) {
+      LOGGER.error("Serious Error indexing a batch", e);
+    }
+    observe(STAGE_WRITE, start, current.size());
+
+    for (IndexedItem indexedItem : current) {
+      if (indexedItem.isFinishedAllIndexing()) {
+        currentItems.remove(indexedItem.getId(), indexedItem);
       }
-      return false;
+      indexedItem.setIndexed(true);
     }
   }
 
-  @SuppressWarnings("nls")
-  private void populateItemBatch(List<IndexedItem> batch) {
-    try {
-      freetextIndex.prepareItemsForIndexing(batch);
-    } catch (Exception t) {
-      LOGGER.error("Failed to prepare batch for indexing, trying 1", t);
-      freetextIndex.prepareItemsForIndexing(batch.subList(0, 1));
+  private void queueForWrite(IndexedItem item) {
+    if (markOnIndexList(item)) {
+      writeQueue.add(item);
     }
   }
 
-  @SuppressWarnings("nls")
-  private void statusUpdate(long now) {
-    if (docsDoneSinceLast != docsDone || indexerThreads > 0) {
-      docsDoneSinceLast = docsDone;
-      LOGGER.info(
-          "Report: "
-              + indexerThreads
-              + " threads running, "
-              + waitingList.size()
-              + " documents waiting, "
-              + docsDone
-              + " done overall, "
-              + errors
-              + " errors, "
-              + deletions
-              + " docs in Index but not in database");
-      synchronized (threadingLock) {
-        Iterator<IndexerThread> iter = inuseThreads.iterator();
-        while (iter.hasNext()) {
-          IndexerThread thread = iter.next();
-          long millis = now - thread.getStarted();
-          if (!thread.isAlive()) {
-            LOGGER.error("Thread died:" + thread + " was indexing " + thread.getItemId());
-            iter.remove();
-            indexerThreads--;
-          } else {
-            if (millis > INTERRUPT_MILLIS) {
-              Exception exception = new Exception();
-              exception.setStackTrace(thread.getStackTrace());
-              LOGGER.warn("Thread taking too long:" + thread, exception);
-            }
-            LOGGER.info(
-                "Thread "
-                    + thread
-                    + " indexing "
-                    + thread.getItemId()
-                    + " and has been for "
-                    + millis
-                    + " milliseconds");
-          }
-        }
+  /** @return false if the item is already waiting to be written */
+  private boolean markOnIndexList(IndexedItem item) {
+    synchronized (item) {
+      if (item.isOnIndexList()) {
+        return false;
       }
+      item.setOnIndexList(true);
+      return true;
     }
   }
 
-  private IndexerThread getIndexerThread() {
-    synchronized (threadingLock) {
-      indexerThreads++;
-      IndexerThread thread;
-      if (freeThreads.size() == 0) {
-        thread = indexerThreadProvider.get();
-        thread.setNumber(inuseThreads.size());
-        thread.setBackground(this);
-        thread.setExtensions(freetextIndex.getIndexingExtensions());
-        thread.start();
+  private void observe(String stage, long startNanos, int items) {
+    STAGE_LATENCY
+        .labels(schemaLabel, stage)
+        .observe((System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1));
+    ITEMS_PROCESSED.labels(schemaLabel, stage).inc(items);
+  }
+
+  private void statusUpdate() {
+    if (inFlight.get() == 0 && waitingQueue.size() == 0 && writeQueue.size() == 0) {
+      return;
+    }
+    LOGGER.info(
+        "Report: "
+            + waitingQueue.size()
+            + " documents waiting, "
+            + extractQueue.size()
+            + " waiting for extraction, "
+            + writeQueue.size()
+            + " waiting to be written, "
+            + (int) ITEMS_PROCESSED.labels(schemaLabel, STAGE_EXTRACT).get()
+            + " done overall, "
+            + errors.get()
+            + " errors");
+
+    long now = System.currentTimeMillis();
+    for (IndexerThread thread : indexerThreads) {
+      ItemIdKey itemId = thread.getItemId();
+      if (itemId == null) {
+        continue;
+      }
+      long millis = now - thread.getStarted();
+      if (!thread.isAlive()) {
+        LOGGER.error("Thread died:" + thread + " was indexing " + itemId);
       } else {
-        thread = freeThreads.pop();
+        if (millis > INTERRUPT_MILLIS) {
+          Exception exception = new Exception();
+          exception.setStackTrace(thread.getStackTrace());
+          LOGGER.warn("Thread taking too long:" + thread, exception);
+        }
+        LOGGER.info(
+            "Thread "
+                + thread
+                + " indexing "
+                + itemId
+                + " and has been for "
+                + millis
+                + " milliseconds");
       }
-      LOGGER.debug("**new inuse thread added**"); // $NON-NLS-1$
-      inuseThreads.add(thread);
-      return thread;
     }
   }
 
@@ -391,7 +511,7 @@ public class BackgroundIndexerImpl implements BackgroundIndexer {
 
   @Override
   public boolean isRoomForItems(int size) {
-    return (waitingList.size() + indexingMap.size() + size) < MAX_WAITING;
+    return (currentItems.size() + size) < MAX_WAITING;
   }
 
   /*
@@ -401,58 +521,20 @@ public class BackgroundIndexerImpl implements BackgroundIndexer {
    */
   @Override
   public void addAllToQueue(Collection<IndexedItem> items) {
-    synchronized (listLock) {
-      for (IndexedItem item : items) {
-        FullIdKey id = item.getId();
-        IndexedItem existing = waitingMap.get(id);
-        if (existing != null) {
-          existing.setNoLongerCurrent(true);
-          waitingList.remove(existing);
-          waitingMap.remove(id);
-        }
-        existing = indexingMap.get(id);
-        if (existing != null) {
-          LOGGER.debug(
-              "Item " + item.getItemIdKey().toString() + " already on indexingMap. Removing.");
-          existing.setNoLongerCurrent(true);
-          indexingMap.remove(id);
-          if (existing.isOnIndexList()) {
-            indexedList.remove(existing);
-          }
-        }
-
-        if (item.isAdd()) {
-          priorityInsert(waitingList, item);
-          waitingMap.put(id, item);
-        } else {
-          addToIndexedList(item);
-          item.setFinishedAllIndexing(true);
-          indexingMap.put(id, item);
-        }
+    for (IndexedItem item : items) {
+      IndexedItem existing = currentItems.put(item.getId(), item);
+      if (existing != null) {
+        LOGGER.debug("Item " + item.getItemIdKey() + " already queued. Replacing.");
+        existing.setNoLongerCurrent(true);
       }
-    }
-    wakeup();
-  }
 
-  private synchronized void wakeup() {
-    wakeup = true;
-    notifyAll();
-  }
-
-  private void addToIndexedList(IndexedItem item) {
-    item.setOnIndexList(true);
-    priorityInsert(indexedList, item);
-  }
-
-  private void priorityInsert(LinkedList<IndexedItem> list, IndexedItem item) {
-    long retTime = item.getExpectedReturnTime();
-    int i;
-    for (i = 0; i < list.size(); i++) {
-      if (retTime <= list.get(i).getExpectedReturnTime()) {
-        break;
+      if (item.isAdd()) {
+        waitingQueue.add(item);
+      } else {
+        item.setFinishedAllIndexing(true);
+        queueForWrite(item);
       }
     }
-    list.add(i, item);
   }
 
   /*
@@ -461,20 +543,16 @@ public class BackgroundIndexerImpl implements BackgroundIndexer {
    * com.tle.freetext.BackgroundIndexer#addIndexedDoc(com.tle.freetext.IndexedItem
    * )
    */
-  public void addIndexedDoc(IndexedItem item) {
-    synchronized (listLock) {
-      // Only add doc if we are the one.
-      if (!item.isNoLongerCurrent()) {
-        item.setFinishedAllIndexing(true);
-        // Only add it to the indexedList if it
-        // isn't already there from the "slow" thread
-        // checker
-        if (!item.isOnIndexList()) {
-          addToIndexedList(item);
-        }
+  public void addIndexedDoc(IndexedItem item) throws InterruptedException {
+    // Only add doc if we are the one.
+    if (!item.isNoLongerCurrent()) {
+      item.setFinishedAllIndexing(true);
+      // Only add it to the write queue if it isn't already there from
+      // being overdue. Waits if the write stage is falling behind.
+      if (markOnIndexList(item)) {
+        writeQueue.put(item);
       }
     }
-    wakeup();
   }
 
   /*
@@ -484,26 +562,16 @@ public class BackgroundIndexerImpl implements BackgroundIndexer {
    * )
    */
   public void addErroredDoc(IndexedItem item) {
-    synchronized (listLock) {
-      FullIdKey id = item.getId();
-      LOGGER.error("Error in doc " + id); // $NON-NLS-1$
-      if (!item.isNoLongerCurrent()) {
-        indexingMap.remove(id);
-      }
-      errors++;
-    }
-    wakeup();
+    FullIdKey id = item.getId();
+    LOGGER.error("Error in doc " + id); // $NON-NLS-1$
+    currentItems.remove(id, item);
+    errors.incrementAndGet();
   }
 
-  public void threadFinished(IndexerThread thread) {
-    synchronized (threadingLock) {
-      indexerThreads--;
-      docsDone++;
-      LOGGER.debug("**inuse thread removed**"); // $NON-NLS-1$
-      inuseThreads.remove(thread);
-      freeThreads.push(thread);
-    }
-    wakeup();
+  /** Called by the indexer threads once they have finished with an item, errored or not. */
+  void extractionFinished(long startNanos) {
+    inFlight.decrementAndGet();
+    observe(STAGE_EXTRACT, startNanos, 1);
   }
 
   public boolean isDead() {
@@ -515,41 +583,167 @@ public class BackgroundIndexerImpl implements BackgroundIndexer {
    * @see com.tle.freetext.BackgroundIndexer#kill()
    */
   @Override
-  @SuppressWarnings("nls")
   public void kill() {
     LOGGER.debug("Kill");
+    dead = true;
+    // Wake up anything blocked on a queue
+    waitingQueue.wakeAll();
+    extractQueue.wakeAll();
+    writeQueue.wakeAll();
+  }
 
-    synchronized (this) {
-      LOGGER.debug("dead=true");
-      dead = true;
+  @Override
+  public IndexedItem getIndexedItem(ItemIdKey key) {
+    FullIdKey fullId = new FullIdKey(key.getKey(), CurrentInstitution.get().getUniqueId());
+    return currentItems.get(fullId);
+  }
+
+  @Override
+  public IndexedItem createIndexedItem(ItemIdKey key) {
+    return indexedItemFactory.create(key, CurrentInstitution.get());
+  }
+
+  /**
+   * A queue of items for a stage, ordered by expected return time. Only {@link #put} respects the
+   * capacity, so that the stage feeding the queue can be held back while items coming from
+   * elsewhere (deletes, overdue items) are never blocked.
+   */
+  private final class StageQueue {
+    private final PriorityQueue<IndexedItem> queue = new PriorityQueue<IndexedItem>(BY_RETURN_TIME);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final int capacity;
+    private final Gauge.Child depth;
+
+    StageQueue(String stage, int capacity) {
+      this.capacity = capacity;
+      this.depth = QUEUE_DEPTH.labels(schemaLabel, stage);
     }
 
-    for (IndexerThread t : freeThreads) {
-      LOGGER.debug("freeThread.wakeup");
-      t.wakeup();
+    void put(IndexedItem item) throws InterruptedException {
+      lock.lockInterruptibly();
+      try {
+        while (queue.size() >= capacity && !dead) {
+          notFull.await();
+        }
+        enqueue(item);
+      } finally {
+        lock.unlock();
+      }
     }
 
-    for (IndexerThread t : inuseThreads) {
-      LOGGER.debug("inuseThread.wakeup");
-      t.wakeup();
+    void add(IndexedItem item) {
+      lock.lock();
+      try {
+        enqueue(item);
+      } finally {
+        lock.unlock();
+      }
     }
-  }
 
-  @Override
-  public IndexedItem getIndexedItem(ItemIdKey key) {
-    synchronized (listLock) {
-      FullIdKey fullId = new FullIdKey(key.getKey(), CurrentInstitution.get().getUniqueId());
-      IndexedItem indexedItem = waitingMap.get(fullId);
-      if (indexedItem != null) {
-        return indexedItem;
+    private void enqueue(IndexedItem item) {
+      queue.add(item);
+      depth.set(queue.size());
+      // Both regular and express takers wait on this
+      notEmpty.signalAll();
+    }
+
+    IndexedItem take() throws InterruptedException {
+      lock.lockInterruptibly();
+      try {
+        while (queue.isEmpty()) {
+          checkDead();
+          notEmpty.await();
+        }
+        return dequeue();
+      } finally {
+        lock.unlock();
       }
-      return indexingMap.get(fullId);
     }
-  }
 
-  @Override
-  public IndexedItem createIndexedItem(ItemIdKey key) {
-    return indexedItemFactory.create(key, CurrentInstitution.get());
+    /** Waits until the item at the head of the queue is overdue, then takes it. */
+    IndexedItem takeOverdue() throws InterruptedException {
+      lock.lockInterruptibly();
+      try {
+        while (true) {
+          checkDead();
+          IndexedItem head = queue.peek();
+          if (head == null) {
+            notEmpty.await();
+          } else {
+            long wait = head.getExpectedReturnTime() - System.currentTimeMillis();
+            if (wait <= 0) {
+              return dequeue();
+            }
+            notEmpty.await(wait, TimeUnit.MILLISECONDS);
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    IndexedItem poll(long millis) throws InterruptedException {
+      long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+      lock.lockInterruptibly();
+      try {
+        while (queue.isEmpty()) {
+          if (nanos <= 0 || dead) {
+            return null;
+          }
+          nanos = notEmpty.awaitNanos(nanos);
+        }
+        return dequeue();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void drainTo(List<IndexedItem> items, int max) {
+      lock.lock();
+      try {
+        for (int i = 0; i < max && !queue.isEmpty(); i++) {
+          items.add(queue.poll());
+        }
+        depth.set(queue.size());
+        notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private IndexedItem dequeue() {
+      IndexedItem item = queue.poll();
+      depth.set(queue.size());
+      notFull.signal();
+      return item;
+    }
+
+    private void checkDead() throws InterruptedException {
+      if (dead) {
+        throw new InterruptedException("Background indexer killed");
+      }
+    }
+
+    int size() {
+      lock.lock();
+      try {
+        return queue.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void wakeAll() {
+      lock.lock();
+      try {
+        notEmpty.signalAll();
+        notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
   }
 
   @BindFactory
@@ -0,0 +1,120 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.freetext;
+
+import com.google.common.io.CharStreams;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.annotation.Nullable;
+import com.tle.common.Check;
+import com.tle.common.filesystem.handle.FileHandle;
+import com.tle.core.TextExtracterExtension;
+import com.tle.core.guice.Bind;
+import com.tle.core.services.FileSystemService;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the text extracted from attachment files alongside the files themselves, so that
+ * re-indexing an item doesn't need to parse unchanged PDFs and Office documents again. Each entry
+ * lives at {@link FileSystemService#EXTRACTED_TEXT_FOLDER}/&lt;filename&gt;.txt in the item's
+ * filestore and starts with a header line holding the key it was extracted under: the file's MD5
+ * and size, the extracter class and version and the summary size. An entry whose header doesn't
+ * match the current key is ignored and overwritten. Entries are removed along with their file
+ * when an attachment is deleted in the wizard.
+ */
+@NonNullByDefault
+@Bind
+@Singleton
+@SuppressWarnings("nls")
+public class ExtractedTextCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExtractedTextCache.class);
+
+  @Inject private FileSystemService fileSystemService;
+
+  /**
+   * @param md5 The checksum recorded against the attachment, or null or empty to calculate it from
+   *     the file
+   * @throws IOException if the file doesn't exist
+   */
+  public String getKey(
+      FileHandle handle,
+      String filename,
+      @Nullable String md5,
+      TextExtracterExtension extracter,
+      int maxSize)
+      throws IOException {
+    final long size = fileSystemService.fileLength(handle, filename);
+    final String checksum =
+        Check.isEmpty(md5) ? fileSystemService.getMD5Checksum(handle, filename) : md5;
+    return checksum
+        + ':'
+        + size
+        + ':'
+        + extracter.getClass().getName()
+        + ':'
+        + extracter.getVersion()
+        + ':'
+        + maxSize;
+  }
+
+  /** @return The cached text, or null if there is no entry for this exact key */
+  @Nullable
+  public String get(FileHandle handle, String filename, String key) {
+    final String path = getPath(filename);
+    if (!fileSystemService.fileExists(handle, path)) {
+      return null;
+    }
+    try (InputStream in = fileSystemService.read(handle, path)) {
+      final String contents =
+          CharStreams.toString(new InputStreamReader(in, StandardCharsets.UTF_8));
+      final int eol = contents.indexOf('\n');
+      if (eol < 0 || !contents.substring(0, eol).equals(key)) {
+        return null;
+      }
+      return contents.substring(eol + 1);
+    } catch (IOException io) {
+      LOGGER.warn("Error reading extracted text for " + filename, io);
+      return null;
+    }
+  }
+
+  public void put(FileHandle handle, String filename, String key, String text) {
+    try {
+      fileSystemService.write(
+          handle, getPath(filename), new StringReader(key + '\n' + text), false);
+    } catch (Exception e) {
+      // Only costs us a re-extraction next time
+      LOGGER.warn("Error caching extracted text for " + filename, e);
+    }
+  }
+
+  private static String getPath(String filename) {
+    return FileSystemService.EXTRACTED_TEXT_FOLDER
+        + '/'
+        + filename
+        + FileSystemService.EXTRACTED_TEXT_EXTENSION;
+  }
+}
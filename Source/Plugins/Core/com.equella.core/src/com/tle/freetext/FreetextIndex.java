@@ -19,11 +19,14 @@
 package com.tle.freetext;
 
 import com.google.common.collect.Multimap;
+import com.tle.annotation.Nullable;
 import com.tle.common.Pair;
 import com.tle.common.searching.Search;
 import com.tle.common.searching.SearchResults;
 import com.tle.common.settings.standard.SearchSettings;
+import com.tle.core.freetext.index.CursorSearchResults;
 import com.tle.core.freetext.index.ItemIndex;
+import com.tle.core.freetext.index.SearchCursor;
 import com.tle.core.freetext.indexer.IndexingExtension;
 import com.tle.core.remoting.MatrixResults;
 import com.tle.core.services.item.FreetextResult;
@@ -62,10 +65,20 @@ public interface FreetextIndex {
   <T extends FreetextResult> SearchResults<T> search(
       Search searchReq, int start, int count, boolean searchAttachments);
 
+  <T extends FreetextResult> CursorSearchResults<T> searchAfter(
+      Search searchReq, @Nullable SearchCursor after, int count, boolean searchAttachments);
+
   LongSet searchBitSet(Search searchReq);
 
   int count(Search searchReq);
 
+  /**
+   * Counts several searches at once, making a single pass over each index involved.
+   *
+   * @return The count for each search, in order, or -1 for null searches
+   */
+  int[] count(List<? extends Search> searchReqs);
+
   /** @return Collection of value/count pairs */
   Multimap<String, Pair<String, Integer>> facetCount(Search search, Collection<String> fields);
 
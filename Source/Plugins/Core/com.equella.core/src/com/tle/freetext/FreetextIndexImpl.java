@@ -21,9 +21,13 @@ package com.tle.freetext;
 import com.dytech.devlib.PropBagEx;
 import com.dytech.edge.exceptions.InvalidSearchQueryException;
 import com.dytech.edge.exceptions.SearchingException;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.tle.annotation.Nullable;
 import com.tle.beans.Institution;
 import com.tle.beans.item.Item;
 import com.tle.beans.item.ItemPack;
@@ -34,8 +38,11 @@ import com.tle.common.searching.Search;
 import com.tle.common.searching.SearchResults;
 import com.tle.common.settings.standard.SearchSettings;
 import com.tle.core.events.services.EventService;
+import com.tle.core.freetext.event.CountsChangedEvent;
 import com.tle.core.freetext.index.AbstractIndexEngine.IndexBuilder;
+import com.tle.core.freetext.index.CursorSearchResults;
 import com.tle.core.freetext.index.ItemIndex;
+import com.tle.core.freetext.index.SearchCursor;
 import com.tle.core.freetext.indexer.IndexingExtension;
 import com.tle.core.guice.Bind;
 import com.tle.core.healthcheck.listeners.ServiceCheckRequestListener;
@@ -61,9 +68,12 @@ import com.tle.core.zookeeper.ZookeeperService;
 import it.uniroma3.mat.extendedset.wrappers.LongSet;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import javax.inject.Singleton;
 import org.apache.lucene.search.BooleanQuery;
@@ -175,6 +185,22 @@ public class FreetextIndexImpl
     }
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T extends FreetextResult> CursorSearchResults<T> searchAfter(
+      Search searchReq, @Nullable SearchCursor after, int count, boolean searchAttachments) {
+    try {
+      return (CursorSearchResults<T>)
+          getIndexer(searchReq.getSearchType())
+              .searchAfter(searchReq, after, count, searchAttachments);
+    } catch (SearchingException ex) {
+      if (!ex.isLogged()) {
+        LOGGER.error(ex.getMessage(), ex);
+      }
+      throw ex;
+    }
+  }
+
   @Override
   public LongSet searchBitSet(Search searchReq) {
     try {
@@ -206,6 +232,42 @@ public class FreetextIndexImpl
     }
   }
 
+  @Override
+  public int[] count(List<? extends Search> searchReqs) {
+    final int[] counts = new int[searchReqs.size()];
+    Arrays.fill(counts, -1);
+
+    // Batch up the searches for each index
+    final ListMultimap<String, Integer> positions = ArrayListMultimap.create();
+    for (int i = 0; i < searchReqs.size(); i++) {
+      Search searchReq = searchReqs.get(i);
+      if (searchReq != null) {
+        positions.put(searchReq.getSearchType(), i);
+      }
+    }
+
+    try {
+      boolean searchNotInAttachment = isSearchAttachment();
+      for (String index : positions.keySet()) {
+        List<Integer> indexPositions = positions.get(index);
+        List<Search> batch = Lists.newArrayListWithCapacity(indexPositions.size());
+        for (Integer pos : indexPositions) {
+          batch.add(searchReqs.get(pos));
+        }
+        int[] batchCounts = getIndexer(index).count(batch, searchNotInAttachment);
+        for (int i = 0; i < batchCounts.length; i++) {
+          counts[indexPositions.get(i)] = batchCounts[i];
+        }
+      }
+    } catch (SearchingException ex) {
+      if (!ex.isLogged()) {
+        LOGGER.error(ex.getMessage(), ex);
+      }
+      throw ex;
+    }
+    return counts;
+  }
+
   @Override
   public ItemIndex<? extends FreetextResult> getIndexer(String index) {
     return getIndexerMap().get(index);
@@ -268,6 +330,12 @@ public class FreetextIndexImpl
     for (ItemIndex<?> itemIndex : allIndexes) {
       itemIndex.indexBatch(batch);
     }
+
+    Set<Long> institutionIds = new HashSet<Long>();
+    for (IndexedItem item : batch) {
+      institutionIds.add(item.getInstitution().getUniqueId());
+    }
+    eventService.publishApplicationEvent(CountsChangedEvent.indexed(institutionIds));
   }
 
   @Override
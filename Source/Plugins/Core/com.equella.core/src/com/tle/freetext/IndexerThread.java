@@ -28,6 +28,11 @@ import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A worker for the extract stage of the {@link BackgroundIndexerImpl} pipeline. Regular threads
+ * take the next item off the extract queue, express threads only take items which are already
+ * overdue.
+ */
 @Bind
 public class IndexerThread extends Thread {
   private static final Logger LOGGER = LoggerFactory.getLogger(IndexerThread.class);
@@ -35,13 +40,15 @@ public class IndexerThread extends Thread {
   @Inject private RunAsInstitution runAs;
 
   private BackgroundIndexerImpl background;
-  private IndexedItem indexedItem;
+  private volatile IndexedItem indexedItem;
   private Collection<IndexingExtension> extensions;
+  private boolean express;
 
-  private long started;
+  private volatile long started;
 
   public IndexerThread() {
     setPriority(Thread.MIN_PRIORITY);
+    setDaemon(true);
   }
 
   public void setNumber(int number) {
@@ -53,79 +60,74 @@ public class IndexerThread extends Thread {
     extensions = freetextIndex.getIndexingExtensions();
   }
 
-  public synchronized void startIndexing(IndexedItem backDoc) {
-    this.indexedItem = backDoc;
-    started = System.currentTimeMillis();
-    if (backDoc.isDeadlineAfterStart()) {
-      backDoc.setExpectedReturnTime(started + backDoc.getTimeAfterStart());
-    }
-    notifyAll();
-  }
-
-  public synchronized void wakeup() {
-    notifyAll(); // NOSONAR
-  }
-
   @Override
   public void run() {
-    while (true) {
-      if (background.isDead()) {
-        return;
+    while (!background.isDead()) {
+      final IndexedItem item;
+      try {
+        item = express ? background.takeOverdueForExtraction() : background.takeForExtraction();
+      } catch (InterruptedException e) {
+        if (!background.isDead()) {
+          LOGGER.error("Interrupted", e); // $NON-NLS-1$
+        }
+        continue;
       }
 
-      if (indexedItem == null) // NOSONAR
-      {
-        try {
-          synchronized (this) {
-            if (indexedItem == null) {
-              wait();
-            }
-          }
-        } catch (InterruptedException e1) {
-          LOGGER.error("Interrupted", e1); // $NON-NLS-1$
-        }
-      } else {
-        final ItemIdKey key = indexedItem.getItemIdKey();
-
-        try {
-          runAs.executeAsSystem(
-              indexedItem.getInstitution(),
-              new Callable<Void>() {
-                @Override
-                public Void call() throws Exception {
-                  synchronized (indexedItem) {
-                    for (IndexingExtension indexer : extensions) {
-                      indexer.indexFast(indexedItem);
-                    }
-                    indexedItem.notifyAll();
-                    indexedItem.setFinishedFastIndexing(true);
-                  }
-                  for (IndexingExtension indexer : extensions) {
-                    indexer.indexSlow(indexedItem);
-                  }
-                  background.addIndexedDoc(indexedItem);
-                  return null;
-                }
-              });
-        } catch (Exception e) {
-          LOGGER.error("Error indexing: " + key, e); // $NON-NLS-1$
-          indexedItem.setError(e);
-          background.addErroredDoc(indexedItem);
+      started = System.currentTimeMillis();
+      long startNanos = System.nanoTime();
+      if (item.isDeadlineAfterStart()) {
+        item.setExpectedReturnTime(started + item.getTimeAfterStart());
+      }
+      indexedItem = item;
+      try {
+        if (!item.isNoLongerCurrent()) {
+          index(item);
         }
-
+      } finally {
         indexedItem = null;
-        background.threadFinished(this);
+        background.extractionFinished(startNanos);
       }
     }
   }
 
+  private void index(final IndexedItem item) {
+    final ItemIdKey key = item.getItemIdKey();
+    try {
+      runAs.executeAsSystem(
+          item.getInstitution(),
+          new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              synchronized (item) {
+                for (IndexingExtension indexer : extensions) {
+                  indexer.indexFast(item);
+                }
+                item.notifyAll();
+                item.setFinishedFastIndexing(true);
+              }
+              background.fastIndexingFinished(item);
+              for (IndexingExtension indexer : extensions) {
+                indexer.indexSlow(item);
+              }
+              background.addIndexedDoc(item);
+              return null;
+            }
+          });
+    } catch (Exception e) {
+      LOGGER.error("Error indexing: " + key, e); // $NON-NLS-1$
+      item.setError(e);
+      background.addErroredDoc(item);
+    }
+  }
+
   public long getStarted() {
     return started;
   }
 
   public ItemIdKey getItemId() {
-    if (indexedItem != null) {
-      return indexedItem.getItemIdKey();
+    IndexedItem item = indexedItem;
+    if (item != null) {
+      return item.getItemIdKey();
     } else {
       return null;
     }
@@ -142,4 +144,8 @@ public class IndexerThread extends Thread {
   public void setExtensions(Collection<IndexingExtension> extensions) {
     this.extensions = extensions;
   }
+
+  public void setExpress(boolean express) {
+    this.express = express;
+  }
 }
@@ -79,6 +79,7 @@ public class TextExtracter {
   @Inject private ItemFileService itemFileService;
   @Inject private MimeTypeService mimeService;
   @Inject private IMSService imsService;
+  @Inject private ExtractedTextCache extractedTextCache;
 
   @Inject(optional = true)
   @Named("textExtracter.indexAttachments")
@@ -94,6 +95,10 @@ public class TextExtracter {
   @Named("textExtracter.parseDurationCap")
   private long parseDurationCap = 60000;
 
+  @Inject(optional = true)
+  @Named("textExtracter.cacheExtractedText")
+  private boolean cacheExtractedText = true;
+
   @SuppressWarnings("nls")
   public List<Fieldable> indexAttachments(IndexedItem indexedItem, SearchSettings searchSettings) {
     final List<Fieldable> fields = new ArrayList<Fieldable>();
@@ -119,23 +124,14 @@ public class TextExtracter {
                   sbuf.append(filename);
                   sbuf.append(' ');
 
-                  indexSingleFile(item, sbuf, filename);
+                  indexSingleFile(item, sbuf, filename, attach.getMd5sum());
                 }
                 break;
               }
             case HTML:
               {
                 final HtmlAttachment htmlAttach = (HtmlAttachment) attach;
-                final String filename = htmlAttach.getFilename();
-                final MimeEntry mimeEntry = mimeService.getEntryForFilename(filename);
-
-                final List<TextExtracterExtension> extractors = getExtractors(mimeEntry);
-                if (!extractors.isEmpty()) {
-                  try (InputStream input =
-                      fileSystemService.read(itemFileService.getItemFile(item), filename)) {
-                    extractTextFromStream(extractors, input, mimeEntry, sbuf);
-                  }
-                }
+                indexSingleFile(item, sbuf, htmlAttach.getFilename(), null);
                 break;
               }
 
@@ -217,7 +213,7 @@ public class TextExtracter {
               String type = customAttach.getType();
               if (type.equals(CloudProviderService.CloudAttachmentType())) {
                 for (String fname : CloudProviderService.filesToIndex(customAttach)) {
-                  indexSingleFile(item, sbuf, fname);
+                  indexSingleFile(item, sbuf, fname, null);
                 }
               } else if (type.equals("scorm") && indexImsPackages) {
                 indexIms(attach, sbuf, item);
@@ -291,15 +287,35 @@ public class TextExtracter {
     return fields;
   }
 
-  private void indexSingleFile(Item item, StringBuilder sbuf, String filename) throws Exception {
+  /** @param md5 The checksum recorded for the file, if known */
+  private void indexSingleFile(Item item, StringBuilder sbuf, String filename, String md5)
+      throws Exception {
     final MimeEntry mimeEntry = mimeService.getEntryForFilename(filename);
     final List<TextExtracterExtension> extractors = getExtractors(mimeEntry);
-    if (!extractors.isEmpty()) {
-      try (InputStream input =
-          fileSystemService.read(itemFileService.getItemFile(item), filename)) {
-        extractTextFromStream(extractors, input, mimeEntry, sbuf);
+    if (extractors.isEmpty()) {
+      return;
+    }
+
+    final ItemFile itemFile = itemFileService.getItemFile(item);
+    String cacheKey = null;
+    if (cacheExtractedText) {
+      cacheKey =
+          extractedTextCache.getKey(itemFile, filename, md5, extractors.get(0), SUMMARY_SIZE);
+      final String cached = extractedTextCache.get(itemFile, filename, cacheKey);
+      if (cached != null) {
+        LOGGER.trace("Using cached text for " + filename); // $NON-NLS-1$
+        sbuf.append(cached);
+        return;
       }
     }
+
+    final int start = sbuf.length();
+    try (InputStream input = fileSystemService.read(itemFile, filename)) {
+      extractTextFromStream(extractors, input, mimeEntry, sbuf);
+    }
+    if (cacheKey != null) {
+      extractedTextCache.put(itemFile, filename, cacheKey, sbuf.substring(start));
+    }
   }
 
   private void indexIms(Attachment imsAttach, StringBuilder sbuf, Item item) throws Exception {
@@ -310,7 +326,7 @@ public class TextExtracter {
       List<IMSResource> allResources = imsManifest.getAllResources();
       for (IMSResource res : allResources) {
         String fullHref = res.getFullHref();
-        indexSingleFile(item, sbuf, imsFolder + '/' + fullHref);
+        indexSingleFile(item, sbuf, imsFolder + '/' + fullHref, null);
       }
     }
   }
@@ -0,0 +1,166 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.freetext;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.annotation.Nullable;
+import com.tle.common.institution.CurrentInstitution;
+import com.tle.common.usermanagement.user.CurrentUser;
+import com.tle.core.events.services.EventService;
+import com.tle.core.freetext.event.CountsChangedEvent;
+import com.tle.core.freetext.event.listener.CountsChangedListener;
+import com.tle.core.guice.Bind;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import javax.annotation.PostConstruct;
+import javax.inject.Singleton;
+
+/**
+ * Per-user search counts (e.g. the task and notification counts in the top bar), shared by all of
+ * a user's sessions on this node.
+ *
+ * <p>Rather than removing entries, changes are recorded as timestamps and a count is only used if
+ * it was computed after the last relevant change. Indexing records a change for the institutions
+ * involved. Since newly indexed documents only become searchable when the NRT searcher is
+ * reopened, counts computed shortly after an indexing change aren't trusted either.
+ */
+@Bind
+@Singleton
+@NonNullByDefault
+public class UserCountCache implements CountsChangedListener {
+  // The longest the reopen thread in AbstractIndexEngine leaves a searcher stale
+  private static final long REOPEN_SLACK = TimeUnit.SECONDS.toMillis(5);
+
+  @Inject private EventService eventService;
+
+  @Inject(optional = true)
+  @Named("freetextIndex.countCache.ttlSeconds")
+  private int ttlSeconds = 60;
+
+  private final Map<Long, Long> indexChanges = new ConcurrentHashMap<Long, Long>();
+  private Cache<Key, Long> userChanges;
+  private Cache<Key, CachedCount> counts;
+
+  @PostConstruct
+  public void init() {
+    counts =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .maximumSize(100000)
+            .build();
+    userChanges =
+        CacheBuilder.newBuilder().expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+  }
+
+  /**
+   * @param kind Identifies what is being counted
+   * @param counter Does the count for the current user, if there is no usable cached count
+   */
+  public int getCount(String kind, IntSupplier counter) {
+    final Key key = currentUserKey(kind);
+    final CachedCount cached = counts.getIfPresent(key);
+    if (cached != null && isCurrent(key, cached)) {
+      return cached.count;
+    }
+
+    final long started = System.currentTimeMillis();
+    final int count = counter.getAsInt();
+    counts.put(key, new CachedCount(count, started));
+    return count;
+  }
+
+  /** Forgets the current user's count on every node in the cluster. */
+  public void invalidate(String kind) {
+    eventService.publishApplicationEvent(
+        CountsChangedEvent.forUser(
+            CurrentInstitution.get().getUniqueId(), CurrentUser.getUserID(), kind));
+  }
+
+  @Override
+  public void countsChanged(CountsChangedEvent event) {
+    final Long now = System.currentTimeMillis();
+    final String userId = event.getUserId();
+    final String kind = event.getKind();
+    for (Long institutionId : event.getInstitutionIds()) {
+      if (userId != null && kind != null) {
+        userChanges.put(new Key(institutionId, userId, kind), now);
+      } else {
+        indexChanges.put(institutionId, now);
+      }
+    }
+  }
+
+  private boolean isCurrent(Key key, CachedCount cached) {
+    final Long indexChange = indexChanges.get(key.institutionId);
+    if (indexChange != null && cached.started < indexChange + REOPEN_SLACK) {
+      return false;
+    }
+    final Long userChange = userChanges.getIfPresent(key);
+    return userChange == null || cached.started >= userChange;
+  }
+
+  private Key currentUserKey(String kind) {
+    return new Key(CurrentInstitution.get().getUniqueId(), CurrentUser.getUserID(), kind);
+  }
+
+  private static final class CachedCount {
+    final int count;
+    final long started;
+
+    CachedCount(int count, long started) {
+      this.count = count;
+      this.started = started;
+    }
+  }
+
+  private static final class Key {
+    final long institutionId;
+    final String userId;
+    final String kind;
+
+    Key(long institutionId, String userId, String kind) {
+      this.institutionId = institutionId;
+      this.userId = userId;
+      this.kind = kind;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(institutionId, userId, kind);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return institutionId == other.institutionId
+          && userId.equals(other.userId)
+          && kind.equals(other.kind);
+    }
+  }
+}
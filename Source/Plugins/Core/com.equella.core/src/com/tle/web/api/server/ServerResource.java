@@ -21,12 +21,15 @@ package com.tle.web.api.server;
 import bean.ServerInfo;
 import com.google.inject.Singleton;
 import com.tle.core.guice.Bind;
+import com.tle.web.core.startup.SectionTreeWarmer;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import javax.inject.Inject;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 
 /** @author Seb */
 @Bind
@@ -35,6 +38,8 @@ import javax.ws.rs.core.Response;
 @Produces({"application/json"})
 @Singleton
 public class ServerResource {
+  @Inject private SectionTreeWarmer sectionTreeWarmer;
+
   @GET
   @Path("")
   @ApiOperation("Check server health")
@@ -42,6 +47,17 @@ public class ServerResource {
     return Response.ok(new ServerInfo()).build();
   }
 
+  @GET
+  @Path("ready")
+  @Produces({"text/plain"})
+  @ApiOperation("Check the server has finished starting up and is ready for requests")
+  public Response isReady() {
+    if (!sectionTreeWarmer.isReady()) {
+      return Response.status(Status.SERVICE_UNAVAILABLE).entity("STARTING").build();
+    }
+    return Response.ok("OK").build();
+  }
+
   @GET
   @Path("heartbeat")
   @Produces({"text/plain"})
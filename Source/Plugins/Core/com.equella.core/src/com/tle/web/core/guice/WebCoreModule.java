@@ -24,5 +24,7 @@ public class WebCoreModule extends OptionalConfigModule {
   @Override
   protected void configure() {
     bindInt("strictTransportSecurity.maxage", -1);
+    bindBoolean("sections.warmup.enabled", false);
+    bindInt("sections.warmup.threads", 4);
   }
 }
@@ -0,0 +1,125 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.web.core.startup;
+
+import com.google.inject.name.Named;
+import com.tle.common.NamedThreadFactory;
+import com.tle.core.application.StartupBean;
+import com.tle.core.guice.Bind;
+import com.tle.web.sections.registry.TreeRegistry;
+import io.prometheus.client.Gauge;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds every registered section tree once Tomcat has started, so that the first request for each
+ * page doesn't have to resolve its sections and run the registration handlers. The server only
+ * reports itself as ready once all of the trees have been built (or have failed to build, in which
+ * case they are retried on first request as before).
+ */
+@Bind
+@Singleton
+@SuppressWarnings("nls")
+public class SectionTreeWarmer implements StartupBean {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SectionTreeWarmer.class);
+
+  private static final Gauge BUILD_SECONDS =
+      Gauge.build()
+          .name("section_tree_build_seconds")
+          .help("Time taken to build each section tree at startup")
+          .labelNames("path")
+          .register();
+
+  @com.google.inject.Inject(optional = true)
+  @Named("sections.warmup.enabled")
+  private boolean enabled;
+
+  @com.google.inject.Inject(optional = true)
+  @Named("sections.warmup.threads")
+  private int threads = 4;
+
+  @Inject private TreeRegistry treeRegistry;
+
+  private volatile boolean ready;
+
+  @Override
+  public void startup() {
+    if (!enabled) {
+      ready = true;
+      return;
+    }
+
+    final long start = System.nanoTime();
+    final Collection<String> paths = treeRegistry.getTreePaths();
+    final ExecutorService pool =
+        Executors.newFixedThreadPool(
+            Math.max(1, threads), new NamedThreadFactory("SectionTreeWarmer"));
+    try {
+      final List<Callable<Void>> builds = new ArrayList<>(paths.size());
+      for (final String path : paths) {
+        builds.add(
+            () -> {
+              build(path);
+              return null;
+            });
+      }
+      pool.invokeAll(builds);
+      LOGGER.info(
+          "Built "
+              + paths.size()
+              + " section trees in "
+              + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+              + "ms");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOGGER.warn("Interrupted while building section trees");
+    } finally {
+      pool.shutdownNow();
+      ready = true;
+    }
+  }
+
+  private void build(String path) {
+    final long start = System.nanoTime();
+    try {
+      treeRegistry.getTreeForPath(path);
+    } catch (RuntimeException e) {
+      LOGGER.error("Error building section tree " + path, e);
+      return;
+    }
+    final long nanos = System.nanoTime() - start;
+    BUILD_SECONDS.labels(path).set(nanos / 1e9);
+    LOGGER.info(
+        "Built section tree " + path + " in " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms");
+  }
+
+  /** @return false while the section trees are still being built at startup */
+  public boolean isReady() {
+    return ready;
+  }
+}
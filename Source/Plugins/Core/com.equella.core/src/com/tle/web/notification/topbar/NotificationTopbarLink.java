@@ -37,8 +37,6 @@ import javax.inject.Inject;
 
 @Bind
 public class NotificationTopbarLink extends AbstractCachedTopbarLink {
-  private static final String SESSION_KEY = NotificationTopbarLink.class.getName();
-
   @PlugKey("topbar.link.notifications")
   public static Label LINK_TITLE;
 
@@ -67,9 +65,4 @@ public class NotificationTopbarLink extends AbstractCachedTopbarLink {
     notificationLink.setTitle(LINK_TITLE);
     return new LinkRenderer(notificationLink);
   }
-
-  @Override
-  public String getSessionKey() {
-    return SESSION_KEY + CurrentUser.getSessionID();
-  }
 }
@@ -23,10 +23,20 @@ import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.tle.annotation.Nullable;
 import com.tle.core.guice.Bind;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.inject.Singleton;
@@ -41,18 +51,11 @@ import org.apache.commons.logging.LogFactory;
 @Singleton
 public class ContentStreamWriter {
   private static final int RANGEBUFFER_SIZE = 16384;
-  private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+  private static final String RANGE_UNIT = "bytes=";
+  private static final Pattern RANGE_PATTERN = Pattern.compile("^(\\d*)-(\\d*)$");
+  private static final int MAX_RANGES = 20;
   private static final Log LOGGER = LogFactory.getLog(ContentStreamWriter.class);
 
-  private static final long[] NOT_RANGE_REQUEST =
-      new long[] {
-        -1L, -1L,
-      };
-  private static final long[] INVALID_RANGE_REQUEST =
-      new long[] {
-        -2L, -2L,
-      };
-
   @Inject(optional = true)
   @Named("files.useXSendfile")
   private boolean useXSendfile;
@@ -137,37 +140,54 @@ public class ContentStreamWriter {
           }
 
           // Check for a range request?
-          final long[] range = getRange(request, contentStream);
+          final List<ByteRange> ranges =
+              getRanges(request, contentStream, directFile != null, isCalculateETag);
 
           // Invalid range request? Setup headers and return
           // serving nothing.
-          if (range == INVALID_RANGE_REQUEST) {
+          if (ranges == null) {
             response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
             response.setHeader("Content-Range", "bytes */" + contentLength);
             response.setContentLength(-1);
             return;
           }
+          if (contentLength > 0) {
+            response.setHeader("Accept-Ranges", "bytes");
+          }
+
+          // Several ranges go out as a multipart response, and we
+          // only get them when there's a file to read them from.
+          if (ranges.size() > 1) {
+            serveMultipart(response, contentStream, directFile, outputStream, ranges);
+            return;
+          }
 
           // Valid range request. Modify headers for partial
           // content and continue to let the content be served.
-          if (range != NOT_RANGE_REQUEST) {
+          final ByteRange range = ranges.isEmpty() ? null : ranges.get(0);
+          if (range != null) {
             response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-            response.setContentLength((int) (range[1] - range[0]));
-            response.setHeader(
-                "Content-Range", "bytes " + range[0] + "-" + (range[1] - 1) + "/" + contentLength);
+            response.setContentLengthLong(range.getLength());
+            response.setHeader("Content-Range", range.toContentRange(contentLength));
           }
 
           // Is Tomcat's SendFile support available?
           if (contentLength > 0
               && Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))
               && directFile != null) {
-            final long start = range == NOT_RANGE_REQUEST ? 0L : range[0];
-            final long end = range == NOT_RANGE_REQUEST ? contentLength : range[1];
+            final long start = range == null ? 0L : range.start;
+            final long end = range == null ? contentLength : range.end;
 
             request.setAttribute(
                 "org.apache.tomcat.sendfile.filename", directFile.getCanonicalPath());
             request.setAttribute("org.apache.tomcat.sendfile.start", start);
             request.setAttribute("org.apache.tomcat.sendfile.end", end);
+          } else if (directFile != null) {
+            serveFromFile(
+                response,
+                directFile,
+                outputStream,
+                range == null ? new ByteRange(0, contentLength) : range);
           } else {
             serveFromStream(response, contentStream, outputStream, range);
           }
@@ -180,34 +200,140 @@ public class ContentStreamWriter {
     }
   }
 
-  private long[] getRange(HttpServletRequest request, ContentStream contentStream) {
+  /**
+   * @return The requested ranges, an empty list if the whole content should be served or null if
+   *     the ranges can't be satisfied
+   */
+  @Nullable
+  private List<ByteRange> getRanges(
+      HttpServletRequest request,
+      ContentStream contentStream,
+      boolean randomAccess,
+      boolean isCalculateETag) {
     final long contentLength = contentStream.getContentLength();
     if (contentLength < 0) {
-      return NOT_RANGE_REQUEST;
+      return Collections.emptyList();
     }
 
     final String rangeHeader = request.getHeader("Range");
-    if (rangeHeader == null) {
-      return NOT_RANGE_REQUEST;
+    if (rangeHeader == null || !ifRangeMatches(request, contentStream, isCalculateETag)) {
+      return Collections.emptyList();
     }
 
-    long[] range = parseRange(rangeHeader, contentLength);
-    if (range == null) {
-      return INVALID_RANGE_REQUEST;
+    final List<ByteRange> ranges = parseRanges(rangeHeader, contentLength);
+    // A server is free to ignore a range request, which is the simplest
+    // thing to do with lots of ranges or several ranges of a stream.
+    if (ranges != null && ranges.size() > 1 && (!randomAccess || ranges.size() > MAX_RANGES)) {
+      return Collections.emptyList();
+    }
+    return ranges;
+  }
+
+  /**
+   * An If-Range header asks for the ranges only if the content hasn't changed, which is checked
+   * against the ETag or the last modified date, whichever it holds.
+   */
+  private boolean ifRangeMatches(
+      HttpServletRequest request, ContentStream contentStream, boolean isCalculateETag) {
+    final String ifRange = request.getHeader("If-Range");
+    if (ifRange == null) {
+      return true;
+    }
+
+    long date;
+    try {
+      date = request.getDateHeader("If-Range");
+    } catch (IllegalArgumentException notADate) {
+      date = -1;
+    }
+    if (date != -1) {
+      return date / 1000 == contentStream.getLastModified() / 1000;
     }
+    return isCalculateETag && ifRange.equals(contentStream.calculateETag());
+  }
 
-    return range;
+  private void serveFromFile(
+      HttpServletResponse response,
+      File file,
+      @Nullable OutputStream outputStream,
+      ByteRange range)
+      throws IOException {
+    final OutputStream out = (outputStream == null ? response.getOutputStream() : outputStream);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      transfer(channel, out, range);
+      out.flush();
+    }
+  }
+
+  private void serveMultipart(
+      HttpServletResponse response,
+      ContentStream contentStream,
+      File file,
+      @Nullable OutputStream outputStream,
+      List<ByteRange> ranges)
+      throws IOException {
+    final long contentLength = contentStream.getContentLength();
+    final String boundary = UUID.randomUUID().toString();
+
+    final List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+    long length = 0;
+    for (ByteRange range : ranges) {
+      final byte[] partHeader =
+          ("\r\n--"
+                  + boundary
+                  + "\r\nContent-Type: "
+                  + contentStream.getMimeType()
+                  + "\r\nContent-Range: "
+                  + range.toContentRange(contentLength)
+                  + "\r\n\r\n")
+              .getBytes(StandardCharsets.ISO_8859_1);
+      partHeaders.add(partHeader);
+      length += partHeader.length + range.getLength();
+    }
+    final byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    length += end.length;
+
+    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    response.setContentType("multipart/byteranges; boundary=" + boundary);
+    response.setContentLengthLong(length);
+
+    final OutputStream out = (outputStream == null ? response.getOutputStream() : outputStream);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      for (int i = 0; i < ranges.size(); i++) {
+        out.write(partHeaders.get(i));
+        transfer(channel, out, ranges.get(i));
+      }
+      out.write(end);
+      out.flush();
+    }
+  }
+
+  /**
+   * Reads the range at its position in the file, rather than reading through everything before
+   * it.
+   */
+  private void transfer(FileChannel channel, OutputStream out, ByteRange range)
+      throws IOException {
+    final WritableByteChannel target = Channels.newChannel(out);
+    long position = range.start;
+    while (position < range.end) {
+      final long sent = channel.transferTo(position, range.end - position, target);
+      if (sent <= 0) {
+        throw new EOFException("File shorter than expected");
+      }
+      position += sent;
+    }
   }
 
   private void serveFromStream(
       HttpServletResponse response,
       ContentStream contentStream,
       @Nullable OutputStream outputStream,
-      long[] range)
+      @Nullable ByteRange range)
       throws IOException {
     final OutputStream out = (outputStream == null ? response.getOutputStream() : outputStream);
     try (InputStream input = contentStream.getInputStream()) {
-      if (range == NOT_RANGE_REQUEST) {
+      if (range == null) {
         // While we may be able to handle range requests when we don't
         // know the content length, it's only really going to get here
         // for dynamically generated content where we usually don't know
@@ -219,12 +345,10 @@ public class ContentStreamWriter {
       }
 
       // We're here because it's a range request
-      long startByte = range[0];
-      long maxBytes = range[1] - startByte;
+      long startByte = range.start;
+      long maxBytes = range.getLength();
 
-      if (input.skip(startByte) != startByte) {
-        throw new IOException("Failed to skip to right part of file");
-      }
+      ByteStreams.skipFully(input, startByte);
 
       final byte[] rangeBuffer = new byte[RANGEBUFFER_SIZE];
       while (maxBytes > 0) {
@@ -239,30 +363,45 @@ public class ContentStreamWriter {
     }
   }
 
-  private long[] parseRange(String rangeHeader, long length) {
-    Matcher matcher = RANGE_PATTERN.matcher(rangeHeader);
-    if (!matcher.matches()) {
+  /** @return The ranges, or null if none of them can be satisfied */
+  @Nullable
+  private List<ByteRange> parseRanges(String rangeHeader, long length) {
+    final String header = rangeHeader.trim();
+    if (!header.startsWith(RANGE_UNIT)) {
       return null;
     }
 
-    long start;
-    long end = length;
-    String rangeStart = matcher.group(1);
-    String rangeEnd = matcher.group(2);
-    if (rangeStart.isEmpty()) {
-      start = length - Long.parseLong(rangeEnd);
-    } else {
-      start = Long.parseLong(rangeStart);
-      if (!rangeEnd.isEmpty()) {
-        end = Long.parseLong(rangeEnd) + 1;
+    final List<ByteRange> ranges = new ArrayList<>();
+    for (String spec : header.substring(RANGE_UNIT.length()).split(",")) {
+      Matcher matcher = RANGE_PATTERN.matcher(spec.trim());
+      if (!matcher.matches()) {
+        return null;
       }
-    }
 
-    if (start < 0 || start >= length || end > length || end <= start) {
-      return null;
-    }
+      long start;
+      long end = length;
+      String rangeStart = matcher.group(1);
+      String rangeEnd = matcher.group(2);
+      if (rangeStart.isEmpty()) {
+        if (rangeEnd.isEmpty()) {
+          return null;
+        }
+        // The last n bytes, which may be more than there are
+        start = Math.max(0, length - Long.parseLong(rangeEnd));
+      } else {
+        start = Long.parseLong(rangeStart);
+        if (!rangeEnd.isEmpty()) {
+          end = Math.min(length, Long.parseLong(rangeEnd) + 1);
+        }
+      }
 
-    return new long[] {start, end};
+      // Unsatisfiable ranges are dropped, and it's only an error if
+      // they all are
+      if (start < length && end > start) {
+        ranges.add(new ByteRange(start, end));
+      }
+    }
+    return ranges.isEmpty() ? null : ranges;
   }
 
   protected boolean checkModifiedSince(
@@ -298,4 +437,23 @@ public class ContentStreamWriter {
 
     return hasBeenModified;
   }
+
+  /** Bytes from start (inclusive) to end (exclusive). */
+  private static class ByteRange {
+    final long start;
+    final long end;
+
+    ByteRange(long start, long end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    long getLength() {
+      return end - start;
+    }
+
+    String toContentRange(long contentLength) {
+      return "bytes " + start + "-" + (end - 1) + "/" + contentLength;
+    }
+  }
 }
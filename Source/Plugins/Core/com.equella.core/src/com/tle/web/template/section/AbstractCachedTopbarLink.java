@@ -18,28 +18,28 @@
 
 package com.tle.web.template.section;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import java.util.concurrent.TimeUnit;
+import com.tle.freetext.UserCountCache;
+import javax.inject.Inject;
 
+/**
+ * Counts are cached per user (across sessions and pages) by {@link UserCountCache}, until indexing
+ * changes them or they time out.
+ */
 public abstract class AbstractCachedTopbarLink implements TopbarLink {
-  private Cache<String, Integer> countCache =
-      CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.MINUTES).softValues().build();
+  @Inject private UserCountCache countCache;
 
   public int getCachedValue() {
-    Integer count = countCache.getIfPresent(getSessionKey());
-    if (count == null) {
-      count = getCount();
-      countCache.put(getSessionKey(), new Integer(count));
-    }
-    return count;
+    return countCache.getCount(getCountKind(), this::getCount);
   }
 
+  @Override
   public void clearCachedCount() {
-    countCache.invalidate(getSessionKey());
+    countCache.invalidate(getCountKind());
   }
 
   public abstract int getCount();
 
-  public abstract String getSessionKey();
+  protected String getCountKind() {
+    return getClass().getName();
+  }
 }
@@ -301,6 +301,15 @@ public class WebRepository implements LERepository {
     if (fsys.fileExists(stagingHandle, tile)) {
       fsys.removeFile(stagingHandle, tile);
     }
+
+    String text =
+        FileSystemService.EXTRACTED_TEXT_FOLDER
+            + '/'
+            + filename
+            + FileSystemService.EXTRACTED_TEXT_EXTENSION;
+    if (fsys.fileExists(stagingHandle, text)) {
+      fsys.removeFile(stagingHandle, text);
+    }
   }
 
   @Override
@@ -37,8 +37,6 @@ import javax.inject.Inject;
 
 @Bind
 public class TasksTopbarLink extends AbstractCachedTopbarLink {
-  private static final String SESSION_KEY = TasksTopbarLink.class.getName();
-
   @PlugKey("topbar.link.tasks")
   public static Label LINK_TITLE;
 
@@ -67,9 +65,4 @@ public class TasksTopbarLink extends AbstractCachedTopbarLink {
     taskLink.setTitle(LINK_TITLE);
     return new LinkRenderer(taskLink);
   }
-
-  @Override
-  public String getSessionKey() {
-    return SESSION_KEY + CurrentUser.getSessionID();
-  }
 }
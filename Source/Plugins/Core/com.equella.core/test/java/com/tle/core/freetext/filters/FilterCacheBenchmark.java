@@ -0,0 +1,195 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.freetext.filters;
+
+import com.dytech.edge.queries.FreeTextQuery;
+import com.google.common.collect.ImmutableList;
+import com.tle.beans.Institution;
+import com.tle.common.searching.Field;
+import com.tle.core.freetext.index.FacetStore;
+import com.tle.freetext.LuceneConstants;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ChainedFilter;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.OpenBitSet;
+
+/**
+ * Measures the latency and heap allocated per search, count and facet call with the institution
+ * and must filters that ItemIndex applies to every request, built from postings each time versus
+ * taken from a {@link FilterCache}. Not run as part of the tests, run it with:
+ *
+ * <pre>
+ * sbt "com_equella_core/Test/runMain com.tle.core.freetext.filters.FilterCacheBenchmark [docs]"
+ * </pre>
+ */
+@SuppressWarnings("nls")
+public class FilterCacheBenchmark {
+  private static final int SEGMENTS = 10;
+  private static final int INSTITUTIONS = 5;
+  private static final int COLLECTIONS = 20;
+  private static final int WARMUP = 200;
+  private static final int ITERATIONS = 1000;
+  private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "epsilon"};
+
+  public static void main(String[] args) throws IOException {
+    final int docs = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    final IndexReader reader = IndexReader.open(createIndex(docs));
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    final Query query = new TermQuery(new Term(FreeTextQuery.FIELD_BODY, "gamma"));
+    System.out.println(
+        docs + " documents in " + reader.getSequentialSubReaders().length + " segments");
+
+    final FilterCache cache = new FilterCache();
+    for (boolean cached : new boolean[] {false, true}) {
+      final FacetStore facets = new FacetStore();
+      final String name = cached ? "cached" : "uncached";
+      run(name + " search", () -> searcher.search(query, filter(cache, cached), 10));
+      run(
+          name + " count",
+          () -> searcher.search(query, filter(cache, cached), new TotalHitCountCollector()));
+      run(
+          name + " facet",
+          () -> {
+            final OpenBitSet bits = new OpenBitSet(reader.maxDoc());
+            searcher.search(query, filter(cache, cached), new BitSetCollector(bits));
+            facets.count(reader, bits, Collections.singletonList(FreeTextQuery.FIELD_ITEMDEFID));
+          });
+    }
+  }
+
+  /** A new set of filters per call, as ItemIndex.getFilters creates for every request. */
+  private static Filter filter(FilterCache cache, boolean cached) {
+    final Institution institution = new Institution();
+    institution.setUniqueId(1);
+    final List<List<Field>> live =
+        ImmutableList.of(ImmutableList.of(new Field(FreeTextQuery.FIELD_ITEMSTATUS, "live")));
+    final Filter[] filters = {new InstitutionFilter(institution), new MustFilter(live)};
+    if (cached) {
+      for (int i = 0; i < filters.length; i++) {
+        filters[i] = cache.wrap(filters[i]);
+      }
+    }
+    return new ChainedFilter(filters, ChainedFilter.AND);
+  }
+
+  private static void run(String name, Operation operation) throws IOException {
+    for (int i = 0; i < WARMUP; i++) {
+      operation.run();
+    }
+    final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final long thread = Thread.currentThread().getId();
+    final long bytes = threads.getThreadAllocatedBytes(thread);
+    final long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      operation.run();
+    }
+    final long micros = (System.nanoTime() - start) / 1000 / ITERATIONS;
+    final long allocated = (threads.getThreadAllocatedBytes(thread) - bytes) / ITERATIONS;
+    System.out.println(String.format("%-16s %8d us/op %12d bytes/op", name, micros, allocated));
+  }
+
+  private static RAMDirectory createIndex(int docs) throws IOException {
+    final RAMDirectory directory = new RAMDirectory();
+    final IndexWriterConfig config =
+        new IndexWriterConfig(
+                LuceneConstants.LATEST_VERSION,
+                new WhitespaceAnalyzer(LuceneConstants.LATEST_VERSION))
+            .setMergePolicy(NoMergePolicy.COMPOUND_FILES);
+    final IndexWriter writer = new IndexWriter(directory, config);
+    final Random random = new Random(42);
+    for (int i = 0; i < docs; i++) {
+      final Document doc = new Document();
+      doc.add(keyword(FreeTextQuery.FIELD_INSTITUTION, random.nextInt(INSTITUTIONS)));
+      doc.add(keyword(FreeTextQuery.FIELD_ITEMSTATUS, random.nextInt(4) == 0 ? "draft" : "live"));
+      doc.add(keyword(FreeTextQuery.FIELD_ITEMDEFID, random.nextInt(COLLECTIONS)));
+      doc.add(
+          new org.apache.lucene.document.Field(
+              FreeTextQuery.FIELD_BODY,
+              WORDS[random.nextInt(WORDS.length)] + ' ' + WORDS[random.nextInt(WORDS.length)],
+              org.apache.lucene.document.Field.Store.NO,
+              org.apache.lucene.document.Field.Index.ANALYZED));
+      writer.addDocument(doc);
+      if ((i + 1) % Math.max(1, docs / SEGMENTS) == 0) {
+        writer.commit();
+      }
+    }
+    writer.close();
+    return directory;
+  }
+
+  private static org.apache.lucene.document.Field keyword(String name, Object value) {
+    return new org.apache.lucene.document.Field(
+        name,
+        value.toString(),
+        org.apache.lucene.document.Field.Store.NO,
+        org.apache.lucene.document.Field.Index.NOT_ANALYZED_NO_NORMS);
+  }
+
+  private interface Operation {
+    void run() throws IOException;
+  }
+
+  private static class BitSetCollector extends Collector {
+    private final OpenBitSet bits;
+    private int docBase;
+
+    BitSetCollector(OpenBitSet bits) {
+      this.bits = bits;
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) {
+      // Not needed
+    }
+
+    @Override
+    public void collect(int doc) {
+      bits.set(docBase + doc);
+    }
+
+    @Override
+    public void setNextReader(IndexReader reader, int docBase) {
+      this.docBase = docBase;
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+      return true;
+    }
+  }
+}
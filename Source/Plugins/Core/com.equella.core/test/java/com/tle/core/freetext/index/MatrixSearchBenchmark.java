@@ -0,0 +1,118 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.tle.core.freetext.index;
+
+import com.dytech.edge.queries.FreeTextQuery;
+import com.tle.freetext.LuceneConstants;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.OpenBitSet;
+
+/**
+ * Measures the latency and heap allocated per matrix search over two fields as the share of
+ * documents matching the search changes, next to the heap that one bitset the size of the index
+ * per term (the previous implementation) takes. Not run as part of the tests, run it with:
+ *
+ * <pre>
+ * sbt "com_equella_core/Test/runMain com.tle.core.freetext.index.MatrixSearchBenchmark [docs]"
+ * </pre>
+ */
+@SuppressWarnings("nls")
+public class MatrixSearchBenchmark {
+  private static final int WARMUP = 20;
+  private static final int ITERATIONS = 100;
+  private static final int TERMS_A = 200;
+  private static final int TERMS_B = 20;
+  private static final List<String> FIELDS = Arrays.asList("/item/a", "/item/b");
+
+  public static void main(String[] args) throws IOException {
+    final int docs = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    final IndexReader reader = IndexReader.open(createIndex(docs));
+    final long bitsets = (long) (TERMS_A + TERMS_B) * (reader.maxDoc() / 8);
+    System.out.println(docs + " documents, term bitsets would take " + bitsets + " bytes");
+
+    final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final long thread = Thread.currentThread().getId();
+    final Random random = new Random(3);
+    for (int percent : new int[] {1, 10, 50, 100}) {
+      final OpenBitSet matches = new OpenBitSet(reader.maxDoc());
+      for (int i = 0; i < reader.maxDoc(); i++) {
+        if (random.nextInt(100) < percent) {
+          matches.fastSet(i);
+        }
+      }
+      for (boolean countOnly : new boolean[] {true, false}) {
+        final ItemKeyCache.ItemKeys keys = countOnly ? null : new ItemKeyCache().getKeys(reader);
+        for (int i = 0; i < WARMUP; i++) {
+          new MatrixSearcher(reader, matches, keys).search(FIELDS);
+        }
+        final long bytes = threads.getThreadAllocatedBytes(thread);
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+          new MatrixSearcher(reader, matches, keys).search(FIELDS);
+        }
+        final long micros = (System.nanoTime() - start) / 1000 / ITERATIONS;
+        final long allocated = (threads.getThreadAllocatedBytes(thread) - bytes) / ITERATIONS;
+        System.out.println(
+            String.format(
+                "%3d%% matching %-6s %8d us/op %12d bytes/op",
+                percent, countOnly ? "counts" : "items", micros, allocated));
+      }
+    }
+  }
+
+  private static RAMDirectory createIndex(int docs) throws IOException {
+    final RAMDirectory directory = new RAMDirectory();
+    final IndexWriter writer =
+        new IndexWriter(
+            directory,
+            new IndexWriterConfig(
+                LuceneConstants.LATEST_VERSION,
+                new WhitespaceAnalyzer(LuceneConstants.LATEST_VERSION)));
+    final Random random = new Random(42);
+    for (int i = 0; i < docs; i++) {
+      final Document doc = new Document();
+      doc.add(keyword(FreeTextQuery.FIELD_ID, Integer.toString(i + 1)));
+      doc.add(keyword(FreeTextQuery.FIELD_UNIQUE, "uuid-" + i + "/1"));
+      doc.add(keyword(FIELDS.get(0), "a" + random.nextInt(TERMS_A)));
+      if (random.nextInt(4) != 0) {
+        doc.add(keyword(FIELDS.get(1), "b" + random.nextInt(TERMS_B)));
+      }
+      writer.addDocument(doc);
+    }
+    writer.close();
+    return directory;
+  }
+
+  private static Field keyword(String name, String value) {
+    return new Field(name, value, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS);
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.tle.core.freetext.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.dytech.edge.queries.FreeTextQuery;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.tle.beans.item.ItemIdKey;
+import com.tle.core.remoting.MatrixResults;
+import com.tle.core.remoting.MatrixResults.MatrixEntry;
+import com.tle.freetext.LuceneConstants;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.OpenBitSet;
+import org.junit.Test;
+
+/**
+ * Checks the matrix against one worked out document by document, including the blank values
+ * for documents without a value in a field.
+ */
+@SuppressWarnings("nls")
+public class MatrixSearcherTest {
+  private static final String A = "/item/a";
+  private static final String B = "/item/b";
+  private static final List<String> FIELDS = Arrays.asList(A, B);
+
+  @Test
+  public void testOrder() throws IOException {
+    final IndexReader reader =
+        createIndex(new String[][] {{"x"}, {"y"}, {}}, new String[][] {{"p"}, {}, {"q"}}, 3);
+    try {
+      final OpenBitSet matches = new OpenBitSet(reader.maxDoc());
+      matches.set(0, reader.maxDoc());
+      final MatrixResults results = new MatrixSearcher(reader, matches, null).search(FIELDS);
+      assertEquals(FIELDS, results.getFields());
+      final List<MatrixEntry> entries = results.getEntries();
+      assertEquals(3, entries.size());
+      // Terms in order, then the blank value, for each field in turn
+      assertEntry(entries.get(0), 1, "x", "p");
+      assertEntry(entries.get(1), 1, "y", "");
+      assertEntry(entries.get(2), 1, "", "q");
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testUnmatchedDocsIgnored() throws IOException {
+    final IndexReader reader =
+        createIndex(new String[][] {{"x"}, {"x", "y"}, {"z"}}, new String[][] {{}, {}, {"p"}}, 3);
+    try {
+      final OpenBitSet matches = new OpenBitSet(reader.maxDoc());
+      matches.set(1);
+      final List<MatrixEntry> entries =
+          new MatrixSearcher(reader, matches, null).search(FIELDS).getEntries();
+      // Neither z nor p belong to a matching document, so don't turn up as (empty) entries
+      assertEquals(2, entries.size());
+      assertEntry(entries.get(0), 1, "x", "");
+      assertEntry(entries.get(1), 1, "y", "");
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testAgainstEachDocument() throws IOException {
+    final Random random = new Random(11);
+    final int docs = 200;
+    final String[][] as = new String[docs][];
+    final String[][] bs = new String[docs][];
+    for (int i = 0; i < docs; i++) {
+      as[i] = randomValues(random, new String[] {"x", "y", "z"}, 2);
+      bs[i] = randomValues(random, new String[] {"p", "q"}, 1);
+    }
+    // Several segments, so top level document numbers are mapped to the right item keys
+    final IndexReader reader = createIndex(as, bs, 30);
+    try {
+      final OpenBitSet matches = new OpenBitSet(docs);
+      for (int i = 0; i < docs; i++) {
+        if (random.nextInt(3) != 0) {
+          matches.set(i);
+        }
+      }
+
+      // Work out each combination of values, and the items that have them, one doc at a time
+      final Map<List<String>, List<ItemIdKey>> expected = Maps.newHashMap();
+      for (int i = 0; i < docs; i++) {
+        if (!matches.get(i) || (as[i].length == 0 && bs[i].length == 0)) {
+          continue;
+        }
+        for (String a : orBlank(as[i])) {
+          for (String b : orBlank(bs[i])) {
+            final List<String> values = Arrays.asList(a, b);
+            List<ItemIdKey> items = expected.get(values);
+            if (items == null) {
+              items = Lists.newArrayList();
+              expected.put(values, items);
+            }
+            items.add(itemKey(i));
+          }
+        }
+      }
+
+      final Map<List<String>, List<ItemIdKey>> actual = Maps.newHashMap();
+      final MatrixResults results =
+          new MatrixSearcher(reader, matches, new ItemKeyCache().getKeys(reader)).search(FIELDS);
+      for (MatrixEntry entry : results.getEntries()) {
+        assertEquals(entry.getItems().size(), entry.getCount());
+        assertNull(actual.put(entry.getFieldValues(), entry.getItems()));
+      }
+      assertEquals(expected, actual);
+
+      final Map<List<String>, Integer> counts = Maps.newHashMap();
+      for (MatrixEntry entry :
+          new MatrixSearcher(reader, matches, null).search(FIELDS).getEntries()) {
+        assertNull(entry.getItems());
+        counts.put(entry.getFieldValues(), entry.getCount());
+      }
+      assertEquals(expected.keySet(), counts.keySet());
+      for (Map.Entry<List<String>, List<ItemIdKey>> entry : expected.entrySet()) {
+        assertEquals(entry.getValue().size(), counts.get(entry.getKey()).intValue());
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static void assertEntry(MatrixEntry entry, int count, String... values) {
+    assertEquals(Arrays.asList(values), entry.getFieldValues());
+    assertEquals(count, entry.getCount());
+  }
+
+  private static String[] randomValues(Random random, String[] values, int max) {
+    final List<String> list = Lists.newArrayList(values);
+    Collections.shuffle(list, random);
+    final List<String> chosen = list.subList(0, random.nextInt(max + 1));
+    Collections.sort(chosen);
+    return chosen.toArray(new String[chosen.size()]);
+  }
+
+  private static String[] orBlank(String[] values) {
+    return values.length == 0 ? new String[] {""} : values;
+  }
+
+  private static ItemIdKey itemKey(int doc) {
+    return new ItemIdKey(1000 + doc, "uuid-" + (doc / 2), doc % 2 + 1);
+  }
+
+  private static IndexReader createIndex(String[][] as, String[][] bs, int segmentSize)
+      throws IOException {
+    final RAMDirectory directory = new RAMDirectory();
+    final IndexWriter writer =
+        new IndexWriter(
+            directory,
+            new IndexWriterConfig(
+                    LuceneConstants.LATEST_VERSION,
+                    new WhitespaceAnalyzer(LuceneConstants.LATEST_VERSION))
+                .setMergePolicy(NoMergePolicy.COMPOUND_FILES));
+    for (int i = 0; i < as.length; i++) {
+      final ItemIdKey key = itemKey(i);
+      final Document doc = new Document();
+      doc.add(keyword(FreeTextQuery.FIELD_ID, Long.toString(key.getKey())));
+      doc.add(keyword(FreeTextQuery.FIELD_UNIQUE, key.getUuid() + '/' + key.getVersion()));
+      for (String a : as[i]) {
+        doc.add(keyword(A, a));
+      }
+      for (String b : bs[i]) {
+        doc.add(keyword(B, b));
+      }
+      writer.addDocument(doc);
+      if (i % segmentSize == segmentSize - 1) {
+        writer.commit();
+      }
+    }
+    writer.close();
+    return IndexReader.open(directory);
+  }
+
+  private static Field keyword(String name, String value) {
+    return new Field(name, value, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS);
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.tle.core.freetext.index;
+
+import static org.junit.Assert.assertEquals;
+
+import com.dytech.edge.queries.FreeTextQuery;
+import com.tle.freetext.LuceneConstants;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Pages through a sorted search the way ItemIndex.searchAfter does and checks the pages add up to
+ * the same hits, in the same order, as one search for everything.
+ */
+@SuppressWarnings("nls")
+public class SearchAfterCollectorTest {
+  private static final int DOCS = 103;
+  private static final String NAME = "/item/name";
+  private static final String[] NAMES = {"apple", "banana", "cherry"};
+
+  private IndexReader reader;
+  private IndexSearcher searcher;
+
+  @Before
+  public void createIndex() throws IOException {
+    final RAMDirectory directory = new RAMDirectory();
+    final IndexWriter writer =
+        new IndexWriter(
+            directory,
+            new IndexWriterConfig(
+                    LuceneConstants.LATEST_VERSION,
+                    new WhitespaceAnalyzer(LuceneConstants.LATEST_VERSION))
+                .setMergePolicy(NoMergePolicy.COMPOUND_FILES));
+    // Item keys in a different order to the documents, so ties aren't broken by document number
+    final List<Integer> ids = new ArrayList<Integer>();
+    for (int i = 0; i < DOCS; i++) {
+      ids.add(i + 1);
+    }
+    Collections.shuffle(ids, new Random(7));
+    for (int i = 0; i < DOCS; i++) {
+      final Document doc = new Document();
+      doc.add(keyword(NAME, NAMES[i % NAMES.length]));
+      doc.add(keyword(FreeTextQuery.FIELD_ID, ids.get(i).toString()));
+      writer.addDocument(doc);
+      // Several segments, so pages cross segment boundaries
+      if (i % 20 == 19) {
+        writer.commit();
+      }
+    }
+    writer.close();
+    reader = IndexReader.open(directory);
+    searcher = new IndexSearcher(reader);
+  }
+
+  @After
+  public void close() throws IOException {
+    searcher.close();
+    reader.close();
+  }
+
+  @Test
+  public void testTiesBrokenByKey() throws IOException {
+    assertPages(
+        new Sort(
+            new SortField(NAME, SortField.STRING),
+            new SortField(FreeTextQuery.FIELD_ID, SortField.LONG)));
+  }
+
+  @Test
+  public void testReverse() throws IOException {
+    assertPages(
+        new Sort(
+            new SortField(NAME, SortField.STRING, true),
+            new SortField(FreeTextQuery.FIELD_ID, SortField.LONG)));
+    assertPages(new Sort(new SortField(FreeTextQuery.FIELD_ID, SortField.LONG, true)));
+  }
+
+  @Test
+  public void testLastPage() throws IOException {
+    final Sort sort = new Sort(new SortField(FreeTextQuery.FIELD_ID, SortField.LONG));
+    final TopDocs first = search(sort, null, DOCS - 1);
+    final TopDocs last = search(sort, (FieldDoc) first.scoreDocs[DOCS - 2], DOCS);
+    assertEquals(1, last.totalHits);
+    assertEquals(1, last.scoreDocs.length);
+    final TopDocs none = search(sort, (FieldDoc) last.scoreDocs[0], DOCS);
+    assertEquals(0, none.totalHits);
+  }
+
+  private void assertPages(Sort sort) throws IOException {
+    final List<Integer> expected = docs(search(sort, null, DOCS).scoreDocs);
+    assertEquals(DOCS, expected.size());
+    for (int pageSize : new int[] {1, 4, 10, DOCS}) {
+      final List<Integer> paged = new ArrayList<Integer>();
+      FieldDoc after = null;
+      int remaining = DOCS;
+      while (true) {
+        final TopDocs page = search(sort, after, pageSize);
+        // The total is what's left from this page onwards
+        assertEquals(remaining, page.totalHits);
+        paged.addAll(docs(page.scoreDocs));
+        remaining -= page.scoreDocs.length;
+        if (page.totalHits <= page.scoreDocs.length) {
+          break;
+        }
+        after = (FieldDoc) page.scoreDocs[page.scoreDocs.length - 1];
+      }
+      assertEquals("Page size " + pageSize, expected, paged);
+    }
+  }
+
+  private TopDocs search(Sort sort, FieldDoc after, int count) throws IOException {
+    final TopFieldCollector collector =
+        TopFieldCollector.create(sort, count, true, false, false, true);
+    searcher.search(
+        new MatchAllDocsQuery(),
+        after == null ? collector : new SearchAfterCollector(sort, after, collector));
+    return collector.topDocs();
+  }
+
+  private static List<Integer> docs(ScoreDoc[] scoreDocs) {
+    final List<Integer> docs = new ArrayList<Integer>();
+    for (ScoreDoc scoreDoc : scoreDocs) {
+      docs.add(scoreDoc.doc);
+    }
+    return docs;
+  }
+
+  private static Field keyword(String name, String value) {
+    return new Field(name, value, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS);
+  }
+}
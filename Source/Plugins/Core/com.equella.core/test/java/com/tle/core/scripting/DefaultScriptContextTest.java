@@ -0,0 +1,120 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.tle.core.scripting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Runs scripts in the child scopes that ScriptingServiceImpl creates for each run, over both a
+ * shared sealed standard scope and a new unsealed one per run.
+ */
+@SuppressWarnings("nls")
+public class DefaultScriptContextTest {
+  private Context cx;
+
+  @Before
+  public void enter() {
+    cx = Context.enter();
+  }
+
+  @After
+  public void exit() {
+    Context.exit();
+  }
+
+  @Test
+  public void testGlobalsDoNotLeakThroughSealedScope() {
+    final Scriptable shared = DefaultScriptContext.createStandardScope(cx, true);
+    assertEquals("42", run(shared, "leaked = 42; leaked"));
+    assertEquals("undefined", run(shared, "typeof leaked"));
+    assertEquals("1", run(shared, "var declared = 1; declared"));
+    assertEquals("undefined", run(shared, "typeof declared"));
+    assertEquals("undefined", run(shared, "typeof leaked"));
+  }
+
+  @Test
+  public void testCompiledScriptDoesNotLeakThroughSealedScope() {
+    // The compiled script cache executes the same Script in every run
+    final Scriptable shared = DefaultScriptContext.createStandardScope(cx, true);
+    final Script script =
+        cx.compileString(
+            "var first = typeof counter == 'undefined'; counter = 1; first", "script", 1, null);
+    assertEquals(Boolean.TRUE, script.exec(cx, newScope(shared)));
+    assertEquals(Boolean.TRUE, script.exec(cx, newScope(shared)));
+  }
+
+  @Test
+  public void testGlobalsDoNotLeakBetweenUnsealedScopes() {
+    assertEquals("42", run(DefaultScriptContext.createStandardScope(cx, false), "leaked = 42"));
+    assertEquals(
+        "undefined", run(DefaultScriptContext.createStandardScope(cx, false), "typeof leaked"));
+  }
+
+  @Test
+  public void testSealedScopeRejectsBuiltInChanges() {
+    final Scriptable shared = DefaultScriptContext.createStandardScope(cx, true);
+    try {
+      run(shared, "Array.prototype.leaked = function() { return 42; }");
+      fail("Sealed Array.prototype was modified");
+    } catch (EvaluatorException e) {
+      // expected
+    }
+    assertEquals("undefined", run(shared, "typeof [].leaked"));
+  }
+
+  @Test
+  public void testUnsealedScopeAllowsBuiltInChanges() {
+    assertEquals(
+        "42",
+        run(
+            DefaultScriptContext.createStandardScope(cx, false),
+            "Array.prototype.answer = function() { return 42; }; [].answer()"));
+    assertEquals(
+        "undefined",
+        run(DefaultScriptContext.createStandardScope(cx, false), "typeof [].answer"));
+  }
+
+  @Test
+  public void testJavaPackagesRemoved() {
+    final Scriptable shared = DefaultScriptContext.createStandardScope(cx, true);
+    assertEquals("undefined", run(shared, "typeof Packages"));
+    assertEquals("undefined", run(shared, "typeof java"));
+  }
+
+  private String run(Scriptable shared, String script) {
+    return Context.toString(cx.evaluateString(newScope(shared), script, "script", 1, null));
+  }
+
+  private Scriptable newScope(Scriptable shared) {
+    return new DefaultScriptContext(
+            new HashMap<String, Object>(), new HashMap<String, Object>(), null)
+        .getScope(cx, shared);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.tle.core.scripting;
+
+import com.dytech.devlib.PropBagEx;
+import com.dytech.edge.common.PropBagWrapper;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Measures the latency and heap allocated per script run with a new unsealed standard scope per
+ * run (the default) versus one shared sealed scope ({@code scripting.sealStandardObjects}), for
+ * scripts like those in wizard visibility and display templates. Scripts are compiled once, as
+ * the compiled script cache does. Not run as part of the tests, run it with:
+ *
+ * <pre>
+ * sbt "com_equella_core/Test/runMain com.tle.core.scripting.ScriptingBenchmark"
+ * </pre>
+ */
+@SuppressWarnings("nls")
+public class ScriptingBenchmark {
+  private static final int WARMUP = 2000;
+  private static final int ITERATIONS = 20000;
+  private static final String XML =
+      "<xml><item><name>Benchmark</name><keywords><keyword>one</keyword>"
+          + "<keyword>two</keyword><keyword>three</keyword></keywords>"
+          + "<type>Lecture</type></item></xml>";
+  private static final String[][] SCRIPTS = {
+    {"visibility", "xml.get('/item/type') == 'Lecture'"},
+    {
+      "keywords",
+      "var list = xml.list('/item/keywords/keyword'); var out = '';\n"
+          + "for (var i = 0; i < list.size(); i++) { out += list.get(i) + ', '; }\nout"
+    },
+    {"string", "var name = xml.get('/item/name'); name.toUpperCase().substring(0, 5)"},
+  };
+
+  public static void main(String[] args) {
+    final Context cx = Context.enter();
+    try {
+      cx.setOptimizationLevel(args.length > 0 ? Integer.parseInt(args[0]) : -1);
+      final Scriptable sealed = DefaultScriptContext.createStandardScope(cx, true);
+      for (String[] script : SCRIPTS) {
+        final Script compiled = cx.compileString(script[1], script[0], 1, null);
+        run(
+            script[0] + " unsealed",
+            () ->
+                compiled.exec(
+                    cx, newScope(cx, DefaultScriptContext.createStandardScope(cx, false))));
+        run(script[0] + " sealed", () -> compiled.exec(cx, newScope(cx, sealed)));
+      }
+    } finally {
+      Context.exit();
+    }
+  }
+
+  private static Scriptable newScope(Context cx, Scriptable shared) {
+    final PropBagWrapper xml = new PropBagWrapper(new PropBagEx(XML));
+    final Map<String, Object> objects = new HashMap<String, Object>();
+    objects.put("xml", xml);
+    return new DefaultScriptContext(objects, new HashMap<String, Object>(), xml)
+        .getScope(cx, shared);
+  }
+
+  private static void run(String name, Runnable operation) {
+    for (int i = 0; i < WARMUP; i++) {
+      operation.run();
+    }
+    final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final long thread = Thread.currentThread().getId();
+    final long bytes = threads.getThreadAllocatedBytes(thread);
+    final long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      operation.run();
+    }
+    final long nanos = (System.nanoTime() - start) / ITERATIONS;
+    final long allocated = (threads.getThreadAllocatedBytes(thread) - bytes) / ITERATIONS;
+    System.out.println(String.format("%-20s %10d ns/op %10d bytes/op", name, nanos, allocated));
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.taxonomy.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.tle.common.Pair;
+import com.tle.common.taxonomy.SelectionRestriction;
+import com.tle.core.taxonomy.TermResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class TermIndexTest {
+  private final TermIndex index =
+      new TermIndex(
+          Arrays.asList(
+              new TermResult("Vegetables", "Vegetables", false),
+              new TermResult("Carrot", "Vegetables\\Carrot", true),
+              new TermResult("Fruit", "Fruit", false),
+              new TermResult("Apple", "Fruit\\Apple", false),
+              new TermResult("Red Apple", "Fruit\\Apple\\Red Apple", true),
+              new TermResult("Banana", "Fruit\\Banana", true),
+              new TermResult("Apricot", "Apricot", true)));
+
+  @Test
+  public void testPrefix() {
+    assertSearch("ap*", 2, "Apple", "Apricot");
+    assertSearch("AP%", 2, "Apple", "Apricot");
+    assertSearch("apple*", 1, "Apple");
+    assertSearch("zebra*", 0);
+  }
+
+  @Test
+  public void testInfix() {
+    assertSearch("*ppl*", 2, "Apple", "Red Apple");
+    assertSearch("*apple", 2, "Apple", "Red Apple");
+    assertSearch("r*e", 1, "Red Apple");
+    // Too short to use the trigrams, so every term is checked
+    assertSearch("*an*", 1, "Banana");
+  }
+
+  @Test
+  public void testSingleCharacterWildcard() {
+    assertSearch("b_nana", 1, "Banana");
+    assertSearch("_arrot", 1, "Carrot");
+    assertSearch("carro_", 1, "Carrot");
+    assertSearch("carr_", 0);
+  }
+
+  @Test
+  public void testExactMatch() {
+    assertSearch("banana", 1, "Banana");
+    assertSearch("banan", 0);
+  }
+
+  @Test
+  public void testEmptyQuery() {
+    assertSearch("", 0);
+  }
+
+  @Test
+  public void testLimit() {
+    final String[] all = {"Apple", "Apricot", "Banana", "Carrot", "Red Apple", "Vegetables"};
+    assertSearch("*a*", -1, 6, all);
+    assertSearch("*a*", 0, 6, all);
+    assertSearch("*a*", 2, 6, "Apple", "Apricot");
+    assertSearch("ap*", 1, 2, "Apple");
+  }
+
+  @Test
+  public void testTopLevelOnly() {
+    Pair<Long, List<TermResult>> results =
+        index.search("*", SelectionRestriction.TOP_LEVEL_ONLY, -1, false);
+    assertTerms(results, 3, "Apricot", "Fruit", "Vegetables");
+
+    results = index.search("ap*", SelectionRestriction.TOP_LEVEL_ONLY, -1, false);
+    assertTerms(results, 1, "Apricot");
+  }
+
+  @Test
+  public void testLeafOnly() {
+    Pair<Long, List<TermResult>> results =
+        index.search("*", SelectionRestriction.LEAF_ONLY, -1, false);
+    assertTerms(results, 4, "Apricot", "Banana", "Carrot", "Red Apple");
+
+    results = index.search("*ppl*", SelectionRestriction.LEAF_ONLY, -1, false);
+    assertTerms(results, 1, "Red Apple");
+  }
+
+  @Test
+  public void testFullTerms() {
+    Pair<Long, List<TermResult>> results =
+        index.search("fruit\\apple*", SelectionRestriction.UNRESTRICTED, -1, true);
+    assertTerms(results, 2, "Apple", "Red Apple");
+
+    results = index.search("*\\carrot", SelectionRestriction.UNRESTRICTED, -1, true);
+    assertTerms(results, 1, "Carrot");
+    assertTrue(
+        index.search("carrot", SelectionRestriction.UNRESTRICTED, -1, true).getSecond().isEmpty());
+  }
+
+  private void assertSearch(String query, long total, String... terms) {
+    assertSearch(query, -1, total, terms);
+  }
+
+  private void assertSearch(String query, int limit, long total, String... terms) {
+    assertTerms(index.search(query, SelectionRestriction.UNRESTRICTED, limit, false), total, terms);
+  }
+
+  private static void assertTerms(
+      Pair<Long, List<TermResult>> results, long total, String... terms) {
+    assertEquals(total, results.getFirst().longValue());
+    List<String> found = new ArrayList<String>();
+    for (TermResult result : results.getSecond()) {
+      found.add(result.getTerm());
+    }
+    assertEquals(Arrays.asList(terms), found);
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.tle.web.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+@SuppressWarnings("nls")
+public class ContentStreamWriterTest {
+  private static final int LENGTH = 10000;
+  private static final String MIME_TYPE = "application/octet-stream";
+
+  private final ContentStreamWriter writer = new ContentStreamWriter();
+  private final byte[] data = new byte[LENGTH];
+  private File file;
+
+  @Before
+  public void createFile() throws IOException {
+    for (int i = 0; i < LENGTH; i++) {
+      data[i] = (byte) (i % 251);
+    }
+    file = File.createTempFile("range", ".bin");
+    Files.write(file.toPath(), data);
+  }
+
+  @After
+  public void deleteFile() {
+    file.delete();
+  }
+
+  @Test
+  public void testFirstByte() throws IOException {
+    assertPartial(serve("bytes=0-0"), 0, 1);
+  }
+
+  @Test
+  public void testSuffix() throws IOException {
+    assertPartial(serve("bytes=-500"), 9500, LENGTH);
+    // More than there is, so all of it
+    assertPartial(serve("bytes=-20000"), 0, LENGTH);
+  }
+
+  @Test
+  public void testOpenEnded() throws IOException {
+    assertPartial(serve("bytes=9500-"), 9500, LENGTH);
+    assertPartial(serve(" bytes=9999- "), 9999, LENGTH);
+  }
+
+  @Test
+  public void testEndPastLength() throws IOException {
+    assertPartial(serve("bytes=9000-20000"), 9000, LENGTH);
+  }
+
+  @Test
+  public void testUnsatisfiable() throws IOException {
+    for (String range :
+        new String[] {
+          "bytes=10000-", "bytes=20000-30000", "bytes=-0", "bytes=500-499", "bytes=-", "bytes=a-b",
+          "items=0-1"
+        }) {
+      final Served served = serve(range);
+      verify(served.response).setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      verify(served.response).setHeader("Content-Range", "bytes */" + LENGTH);
+      assertEquals(range, 0, served.body.length);
+    }
+  }
+
+  @Test
+  public void testUnsatisfiableRangeDropped() throws IOException {
+    assertPartial(serve("bytes=20000-, 0-9"), 0, 10);
+  }
+
+  @Test
+  public void testNoRange() throws IOException {
+    assertFull(serve(null));
+  }
+
+  @Test
+  public void testMultipart() throws IOException {
+    assertMultipart(serve("bytes=0-9, 9990-"), new long[][] {{0, 10}, {9990, LENGTH}});
+  }
+
+  @Test
+  public void testOverlapping() throws IOException {
+    // Ranges aren't coalesced, each part is sent as asked for
+    assertMultipart(
+        serve("bytes=0-99,50-149,-10"), new long[][] {{0, 100}, {50, 150}, {9990, LENGTH}});
+  }
+
+  @Test
+  public void testTooManyRanges() throws IOException {
+    final StringBuilder range = new StringBuilder("bytes=0-0");
+    for (int i = 1; i <= 20; i++) {
+      range.append(',').append(i * 10).append('-').append(i * 10);
+    }
+    assertFull(serve(range.toString()));
+  }
+
+  @Test
+  public void testStream() throws IOException {
+    final ContentStream stream = new ByteArrayContentStream(data, "range.bin", MIME_TYPE);
+    assertPartial(serve(stream, "bytes=-500"), 9500, LENGTH);
+    // Several ranges need random access to the content, so all of it is sent
+    assertFull(serve(stream, "bytes=0-9, 9990-"));
+  }
+
+  private void assertPartial(Served served, int start, int end) {
+    verify(served.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    verify(served.response, atLeastOnce()).setContentLengthLong(end - start);
+    verify(served.response)
+        .setHeader("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + LENGTH);
+    assertArrayEquals(Arrays.copyOfRange(data, start, end), served.body);
+  }
+
+  private void assertFull(Served served) {
+    verify(served.response, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    verify(served.response, never()).setHeader(eq("Content-Range"), anyString());
+    assertArrayEquals(data, served.body);
+  }
+
+  private void assertMultipart(Served served, long[][] ranges) {
+    verify(served.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+    final ArgumentCaptor<String> contentType = ArgumentCaptor.forClass(String.class);
+    verify(served.response, atLeastOnce()).setContentType(contentType.capture());
+    final String prefix = "multipart/byteranges; boundary=";
+    final String type = contentType.getValue();
+    assertTrue(type, type.startsWith(prefix));
+    final String boundary = type.substring(prefix.length());
+
+    final ArgumentCaptor<Long> contentLength = ArgumentCaptor.forClass(Long.class);
+    verify(served.response, atLeastOnce()).setContentLengthLong(contentLength.capture());
+    final List<Long> lengths = contentLength.getAllValues();
+    assertEquals(served.body.length, lengths.get(lengths.size() - 1).longValue());
+
+    // ISO-8859-1 maps each byte to one char, so offsets in the string are offsets in the body
+    final String body = new String(served.body, StandardCharsets.ISO_8859_1);
+    int offset = 0;
+    for (long[] range : ranges) {
+      final String header =
+          "\r\n--"
+              + boundary
+              + "\r\nContent-Type: "
+              + MIME_TYPE
+              + "\r\nContent-Range: bytes "
+              + range[0]
+              + "-"
+              + (range[1] - 1)
+              + "/"
+              + LENGTH
+              + "\r\n\r\n";
+      assertEquals(header, body.substring(offset, offset + header.length()));
+      offset += header.length();
+      final int partLength = (int) (range[1] - range[0]);
+      assertArrayEquals(
+          Arrays.copyOfRange(data, (int) range[0], (int) range[1]),
+          Arrays.copyOfRange(served.body, offset, offset + partLength));
+      offset += partLength;
+    }
+    assertEquals("\r\n--" + boundary + "--\r\n", body.substring(offset));
+  }
+
+  private Served serve(String range) {
+    return serve(new FileContentStream(file, "range.bin", MIME_TYPE), range);
+  }
+
+  private Served serve(ContentStream stream, String range) {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getMethod()).thenReturn("GET");
+    when(request.getHeader("Range")).thenReturn(range);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.outputStream(request, response, stream, out);
+    return new Served(response, out.toByteArray());
+  }
+
+  private static class Served {
+    final HttpServletResponse response;
+    final byte[] body;
+
+    Served(HttpServletResponse response, byte[] body) {
+      this.response = response;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.cluster;
+
+import com.google.common.io.ByteStreams;
+import com.tle.core.cluster.service.ClusterMessagingService;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The wire format for a batch of serialized messages, which follows the offset of the first message
+ * in the batch: the number of messages, the codec used and the length of the encoded payload, then
+ * the payload. Decoded, the payload is the length of each message followed by the message.
+ */
+@SuppressWarnings("nls")
+public final class MessageBatch {
+  /** The bytes taken by each message in a payload, on top of the message itself */
+  public static final int MESSAGE_OVERHEAD = 4;
+
+  /** @return The number of bytes written */
+  public static int write(DataOutputStream dos, List<byte[]> messages, MessageCodec codec)
+      throws IOException {
+    int size = 0;
+    for (byte[] msg : messages) {
+      size += MESSAGE_OVERHEAD + msg.length;
+    }
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(size);
+    final DataOutputStream payload = new DataOutputStream(bytes);
+    for (byte[] msg : messages) {
+      payload.writeInt(msg.length);
+      payload.write(msg);
+    }
+
+    final byte[] encoded = codec.encode(bytes.toByteArray());
+    dos.writeInt(messages.size());
+    dos.writeByte(codec.getId());
+    dos.writeInt(encoded.length);
+    dos.write(encoded);
+    return 9 + encoded.length;
+  }
+
+  public static List<byte[]> read(DataInputStream dis) throws IOException {
+    final int count = dis.readInt();
+    final MessageCodec codec = MessageCodec.forId(dis.readByte());
+    final int length = dis.readInt();
+    if (count < 1 || length < 0 || length > ClusterMessagingService.MAX_BATCH_SIZE) {
+      throw new IOException("Invalid message batch");
+    }
+    final byte[] encoded = new byte[length];
+    ByteStreams.readFully(dis, encoded);
+
+    final DataInputStream payload =
+        new DataInputStream(
+            new ByteArrayInputStream(
+                codec.decode(encoded, ClusterMessagingService.MAX_BATCH_SIZE)));
+    final List<byte[]> messages = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final int messageSize = payload.readInt();
+      if (messageSize < 0 || messageSize > ClusterMessagingService.MAX_MSG_SIZE) {
+        throw new IOException("Message too big!");
+      }
+      final byte[] msg = new byte[messageSize];
+      payload.readFully(msg);
+      messages.add(msg);
+    }
+    return messages;
+  }
+
+  private MessageBatch() {
+    throw new Error();
+  }
+}
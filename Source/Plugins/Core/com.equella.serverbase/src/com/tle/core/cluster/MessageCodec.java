@@ -0,0 +1,114 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.cluster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * How the payload of a batch of cluster messages is encoded on the wire. The codec is identified
+ * in each batch, so nodes configured with different codecs can still talk to each other.
+ */
+@SuppressWarnings("nls")
+public enum MessageCodec {
+  NONE(0) {
+    @Override
+    public byte[] encode(byte[] data) {
+      return data;
+    }
+
+    @Override
+    public byte[] decode(byte[] data, int maxSize) throws IOException {
+      if (data.length > maxSize) {
+        throw new IOException("Message batch too big!");
+      }
+      return data;
+    }
+  },
+  DEFLATE(1) {
+    @Override
+    public byte[] encode(byte[] data) {
+      final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        deflater.setInput(data);
+        deflater.finish();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        final byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+          out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+      } finally {
+        deflater.end();
+      }
+    }
+
+    @Override
+    public byte[] decode(byte[] data, int maxSize) throws IOException {
+      final Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(data);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2);
+        final byte[] buffer = new byte[8192];
+        while (!inflater.finished()) {
+          final int inflated = inflater.inflate(buffer);
+          if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            throw new IOException("Truncated message batch");
+          }
+          if (out.size() + inflated > maxSize) {
+            throw new IOException("Message batch too big!");
+          }
+          out.write(buffer, 0, inflated);
+        }
+        return out.toByteArray();
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupt message batch", e);
+      } finally {
+        inflater.end();
+      }
+    }
+  };
+
+  private final byte id;
+
+  MessageCodec(int id) {
+    this.id = (byte) id;
+  }
+
+  public byte getId() {
+    return id;
+  }
+
+  public abstract byte[] encode(byte[] data);
+
+  /** @param maxSize The largest decoded size to accept */
+  public abstract byte[] decode(byte[] data, int maxSize) throws IOException;
+
+  public static MessageCodec forId(byte id) throws IOException {
+    for (MessageCodec codec : values()) {
+      if (codec.id == id) {
+        return codec;
+      }
+    }
+    throw new IOException("Unknown message codec " + id);
+  }
+}
@@ -18,8 +18,6 @@
 
 package com.tle.core.cluster;
 
-import com.google.common.io.ByteStreams;
-import com.tle.core.cluster.service.ClusterMessagingService;
 import com.tle.core.plugins.PluginAwareObjectInputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
@@ -123,34 +121,29 @@ public class MessageReceiver implements Runnable {
           }
 
           if (LOGGER.isTraceEnabled()) {
-            LOGGER.trace(MessageFormat.format("Receiving message from NODE: {0}", senderId));
+            LOGGER.trace(MessageFormat.format("Receiving messages from NODE: {0}", senderId));
           }
 
-          int messageSize = dis.readInt();
-
-          if (messageSize > ClusterMessagingService.MAX_MSG_SIZE) {
-            throw new RuntimeException("Message too big!");
-          }
-
-          byte[] data = new byte[messageSize];
-          ByteStreams.readFully(dis, data);
+          List<byte[]> batch = MessageBatch.read(dis);
           lastConnected = System.currentTimeMillis();
 
           if (die) {
             break;
           }
 
-          Object msg = PluginAwareObjectInputStream.fromBytes(data);
-          for (ClusterMessageHandler h : handlers) {
-            Runnable handler = h.canHandle(msg);
-            if (handler != null) {
-              executor.execute(handler);
+          for (byte[] data : batch) {
+            Object msg = PluginAwareObjectInputStream.fromBytes(data);
+            for (ClusterMessageHandler h : handlers) {
+              Runnable handler = h.canHandle(msg);
+              if (handler != null) {
+                executor.execute(handler);
+              }
             }
           }
 
           dos.writeBoolean(true);
           dos.flush();
-          messageOffset = cmo + 1;
+          messageOffset = cmo + batch.size();
         }
       } catch (IOException ex) {
         logError(senderId, ex);
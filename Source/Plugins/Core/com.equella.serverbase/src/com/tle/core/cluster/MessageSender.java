@@ -20,33 +20,96 @@ package com.tle.core.cluster;
 
 import com.tle.core.cluster.exception.MessagingException;
 import com.tle.core.cluster.service.ClusterMessagingService;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Summary;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Sends queued messages to a remote node. Messages queued close together are coalesced into a
+ * single batch, waiting up to the linger time after the first message for others to join it, so
+ * that a burst of messages costs one write and one acknowledgement rather than one each.
+ */
 @SuppressWarnings("nls")
 public class MessageSender {
   private static final Logger LOGGER = LoggerFactory.getLogger(MessageSender.class);
 
+  private static final Gauge QUEUE_MESSAGES =
+      Gauge.build()
+          .name("cluster_messaging_queue_messages")
+          .help("Number of messages waiting to be sent to each node")
+          .labelNames("node")
+          .register();
+  private static final Gauge QUEUE_BYTES =
+      Gauge.build()
+          .name("cluster_messaging_queue_bytes")
+          .help("Size of the messages waiting to be sent to each node")
+          .labelNames("node")
+          .register();
+  private static final Counter SENT_MESSAGES =
+      Counter.build()
+          .name("cluster_messaging_sent_messages_total")
+          .help("Number of messages sent to each node")
+          .labelNames("node")
+          .register();
+  private static final Counter SENT_BATCHES =
+      Counter.build()
+          .name("cluster_messaging_sent_batches_total")
+          .help("Number of message batches sent to each node")
+          .labelNames("node")
+          .register();
+  private static final Counter SENT_BYTES =
+      Counter.build()
+          .name("cluster_messaging_sent_bytes_total")
+          .help("Bytes written to each node, after encoding")
+          .labelNames("node")
+          .register();
+  private static final Counter DROPPED_MESSAGES =
+      Counter.build()
+          .name("cluster_messaging_dropped_messages_total")
+          .help("Number of messages dropped because the queue for a node was full")
+          .labelNames("node")
+          .register();
+  private static final Summary LATENCY =
+      Summary.build()
+          .name("cluster_messaging_latency_seconds")
+          .help("Time from a message being queued until its batch is acknowledged by the node")
+          .labelNames("node")
+          .register();
+
   private String receiverId; // Remote node
-  private final BlockingDeque<byte[]> msgQueue = new LinkedBlockingDeque<>();
+  private final MessageCodec codec;
+  private final long lingerNanos;
+  private final int maxBatch;
+  private final BlockingDeque<QueuedMessage> msgQueue = new LinkedBlockingDeque<>();
   private long totalQueueSize;
   private long headOffset = 0;
 
-  public MessageSender(String receiverId) {
+  /**
+   * @param lingerMillis How long to wait for more messages to join a batch
+   * @param maxBatch The most messages to send in one batch
+   */
+  public MessageSender(String receiverId, MessageCodec codec, long lingerMillis, int maxBatch) {
     this.receiverId = receiverId;
+    this.codec = codec;
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    this.maxBatch = Math.max(1, maxBatch);
   }
 
   public void sendMessages(DataOutputStream dos, DataInputStream dis)
       throws IOException, InterruptedException {
-    byte[] msg = msgQueue.poll(5, TimeUnit.SECONDS);
-    if (msg == null) {
+    QueuedMessage first = msgQueue.poll(5, TimeUnit.SECONDS);
+    if (first == null) {
       if (LOGGER.isDebugEnabled()) {
         LOGGER.debug(MessageFormat.format("Sending keepalive to NODE: {0}", receiverId));
       }
@@ -55,32 +118,86 @@ public class MessageSender {
       return;
     }
 
+    final List<QueuedMessage> batch = collectBatch(first);
+    final List<byte[]> data = new ArrayList<>(batch.size());
+    long batchSize = 0;
+    for (QueuedMessage msg : batch) {
+      data.add(msg.data);
+      batchSize += msg.data.length;
+    }
+
     boolean processed = false;
     try {
-      dos.writeLong(headOffset);
-      int msgSize = msg.length;
-      dos.writeInt(msgSize);
-      dos.write(msg);
+      final long offset;
+      synchronized (this) {
+        offset = headOffset;
+      }
+      dos.writeLong(offset);
+      int written = MessageBatch.write(dos, data, codec);
       dos.flush();
 
       if (LOGGER.isTraceEnabled()) {
-        LOGGER.trace(MessageFormat.format("Sending message to NODE: {0}", receiverId));
+        LOGGER.trace(
+            MessageFormat.format("Sending {0} messages to NODE: {1}", batch.size(), receiverId));
       }
 
       dis.readBoolean();
 
       synchronized (this) {
-        totalQueueSize -= msgSize;
-        headOffset++;
+        totalQueueSize -= batchSize;
+        headOffset += batch.size();
         processed = true;
+        updateQueueMetrics();
       }
+
+      final long now = System.nanoTime();
+      final Summary.Child latency = LATENCY.labels(receiverId);
+      for (QueuedMessage msg : batch) {
+        latency.observe((now - msg.queued) / 1e9);
+      }
+      SENT_MESSAGES.labels(receiverId).inc(batch.size());
+      SENT_BATCHES.labels(receiverId).inc();
+      SENT_BYTES.labels(receiverId).inc(8 + written);
     } finally {
       if (!processed) {
-        msgQueue.addFirst(msg);
+        for (int i = batch.size() - 1; i >= 0; i--) {
+          msgQueue.addFirst(batch.get(i));
+        }
       }
     }
   }
 
+  /**
+   * Takes whatever else is queued behind the first message, waiting until the linger time is up
+   * for more, and stopping when the batch is full.
+   */
+  private List<QueuedMessage> collectBatch(QueuedMessage first) throws InterruptedException {
+    final List<QueuedMessage> batch = new ArrayList<>();
+    batch.add(first);
+    long batchSize = MessageBatch.MESSAGE_OVERHEAD + first.data.length;
+    final long lingerUntil = System.nanoTime() + lingerNanos;
+    while (batch.size() < maxBatch) {
+      QueuedMessage next = msgQueue.poll();
+      if (next == null) {
+        final long remaining = lingerUntil - System.nanoTime();
+        if (remaining <= 0) {
+          break;
+        }
+        next = msgQueue.poll(remaining, TimeUnit.NANOSECONDS);
+        if (next == null) {
+          break;
+        }
+      }
+      batchSize += MessageBatch.MESSAGE_OVERHEAD + next.data.length;
+      if (batchSize > ClusterMessagingService.MAX_BATCH_SIZE) {
+        msgQueue.addFirst(next);
+        break;
+      }
+      batch.add(next);
+    }
+    return batch;
+  }
+
   public void checkExpectedOffset(DataInputStream dis) throws IOException {
     long expectedOffset = dis.readLong();
     if (LOGGER.isTraceEnabled()) {
@@ -105,13 +222,14 @@ public class MessageSender {
 
     int droppedMsgs = 0;
     while (totalQueueSize > ClusterMessagingService.MAX_QUEUE_SIZE && !msgQueue.isEmpty()) {
-      byte[] firstMsg = msgQueue.removeFirst();
-      totalQueueSize -= firstMsg.length;
+      QueuedMessage firstMsg = msgQueue.removeFirst();
+      totalQueueSize -= firstMsg.data.length;
       headOffset++;
       droppedMsgs++;
     }
     if (droppedMsgs > 0) {
       LOGGER.warn("Dropped " + droppedMsgs + " messages from queue for NODE: " + receiverId);
+      DROPPED_MESSAGES.labels(receiverId).inc(droppedMsgs);
     }
 
     if (LOGGER.isTraceEnabled()) {
@@ -120,6 +238,32 @@ public class MessageSender {
               "Queueing message of size: {0}, Total queue size: {1}", msg.length, totalQueueSize));
     }
 
-    msgQueue.add(msg);
+    msgQueue.add(new QueuedMessage(msg));
+    updateQueueMetrics();
+  }
+
+  private void updateQueueMetrics() {
+    QUEUE_MESSAGES.labels(receiverId).set(msgQueue.size());
+    QUEUE_BYTES.labels(receiverId).set(totalQueueSize);
+  }
+
+  /** Stops reporting metrics for the node, once this sender is no longer used. */
+  public void removeMetrics() {
+    QUEUE_MESSAGES.remove(receiverId);
+    QUEUE_BYTES.remove(receiverId);
+    SENT_MESSAGES.remove(receiverId);
+    SENT_BATCHES.remove(receiverId);
+    SENT_BYTES.remove(receiverId);
+    DROPPED_MESSAGES.remove(receiverId);
+    LATENCY.remove(receiverId);
+  }
+
+  private static class QueuedMessage {
+    final byte[] data;
+    final long queued = System.nanoTime();
+
+    QueuedMessage(byte[] data) {
+      this.data = data;
+    }
   }
 }
@@ -37,6 +37,9 @@ public class ClusterModule extends AbstractModule {
       bindProp("messaging.bindAddress");
       bindInt("messaging.bindPort", 8999);
       bindBoolean("messaging.useHostname");
+      bindProp("messaging.codec", "deflate");
+      bindInt("messaging.batchLingerMs", 5);
+      bindInt("messaging.maxBatchMessages", 500);
     }
   }
 
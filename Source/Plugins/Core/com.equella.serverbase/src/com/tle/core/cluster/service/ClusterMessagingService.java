@@ -23,6 +23,7 @@ import java.io.Serializable;
 public interface ClusterMessagingService {
   static final int MAX_MSG_SIZE = 5 * 1024 * 1024;
   static final int MAX_QUEUE_SIZE = 20 * 1024 * 1024;
+  static final int MAX_BATCH_SIZE = 2 * MAX_MSG_SIZE;
 
   void postMessage(Serializable msg);
 
@@ -32,6 +32,7 @@ import com.tle.common.NamedThreadFactory;
 import com.tle.common.Pair;
 import com.tle.core.application.StartupBean;
 import com.tle.core.cluster.ClusterMessageHandler;
+import com.tle.core.cluster.MessageCodec;
 import com.tle.core.cluster.MessageReceiver;
 import com.tle.core.cluster.MessageSender;
 import com.tle.core.cluster.service.ClusterMessagingService;
@@ -88,6 +89,18 @@ public class ClusterMessagingServiceImpl
   @Named("messaging.bindPort")
   private int bindPort;
 
+  @Inject(optional = true)
+  @Named("messaging.codec")
+  private String codec = "deflate";
+
+  @Inject(optional = true)
+  @Named("messaging.batchLingerMs")
+  private int batchLingerMs = 5;
+
+  @Inject(optional = true)
+  @Named("messaging.maxBatchMessages")
+  private int maxBatchMessages = 500;
+
   @Inject private PluginTracker<ClusterMessageHandler> handlerTracker;
   @Inject private ZookeeperService zookeeperService;
 
@@ -112,6 +125,7 @@ public class ClusterMessagingServiceImpl
                     LOGGER.debug(
                         "Removing stale sender from cache for NODE: " + notification.getKey());
                   }
+                  notification.getValue().removeMetrics();
                 }
               })
           .build(
@@ -121,7 +135,8 @@ public class ClusterMessagingServiceImpl
                   if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Loading sender cache for NODE: " + receiverId);
                   }
-                  return new MessageSender(receiverId);
+                  return new MessageSender(
+                      receiverId, getCodec(), batchLingerMs, maxBatchMessages);
                 }
               });
 
@@ -272,6 +287,15 @@ public class ClusterMessagingServiceImpl
     }
   }
 
+  private MessageCodec getCodec() {
+    try {
+      return MessageCodec.valueOf(codec.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Unknown messaging.codec '" + codec + "', sending messages uncompressed");
+      return MessageCodec.NONE;
+    }
+  }
+
   private boolean isThisNode(String nodeId) {
     return zookeeperService.getNodeId().equals(nodeId);
   }
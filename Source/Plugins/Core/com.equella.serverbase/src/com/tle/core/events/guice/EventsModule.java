@@ -19,6 +19,7 @@
 package com.tle.core.events.guice;
 
 import com.google.inject.AbstractModule;
+import com.tle.core.config.guice.OptionalConfigModule;
 import com.tle.core.events.EventExecutor;
 import com.tle.core.events.listeners.ApplicationListener;
 import com.tle.core.guice.PluginTrackerModule;
@@ -27,9 +28,19 @@ import com.tle.core.guice.PluginTrackerModule;
 public class EventsModule extends AbstractModule {
   @Override
   protected void configure() {
+    install(new EventsOptionalModule());
     install(new EventsTrackerModule());
   }
 
+  @SuppressWarnings("nls")
+  public static class EventsOptionalModule extends OptionalConfigModule {
+    @Override
+    protected void configure() {
+      bindInt("events.laneThreads", 20);
+      bindInt("events.laneQueueSize", 5000);
+    }
+  }
+
   public static class EventsTrackerModule extends PluginTrackerModule {
     @Override
     protected String getPluginId() {
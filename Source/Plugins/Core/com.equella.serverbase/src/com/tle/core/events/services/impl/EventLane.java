@@ -0,0 +1,136 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.events.services.impl;
+
+import com.tle.common.NamedThreadFactory;
+import com.tle.core.events.DefaultExecutor;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Summary;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the asynchronous events of a single event class. Each lane has its own threads and a bounded
+ * queue, so a flood of one kind of event can't starve the others or grow without limit. When the
+ * queue is full the publishing thread waits for space. Threads already running events never wait,
+ * since that could deadlock lanes that publish to each other; their events overflow to the shared
+ * {@link DefaultExecutor} instead.
+ */
+@SuppressWarnings("nls")
+class EventLane {
+  private static final ThreadLocal<Boolean> LANE_THREAD = new ThreadLocal<Boolean>();
+
+  static final Gauge QUEUE_DEPTH =
+      Gauge.build()
+          .name("events_lane_queue_depth")
+          .help("Number of events waiting to be dispatched, by event class")
+          .labelNames("event")
+          .register();
+  static final Counter BLOCKED =
+      Counter.build()
+          .name("events_lane_full_total")
+          .help("Number of times an event was published while its lane's queue was full")
+          .labelNames("event")
+          .register();
+  static final Summary DISPATCH_LATENCY =
+      Summary.build()
+          .name("events_dispatch_latency_seconds")
+          .help("Time from an event being published until its listeners are called")
+          .labelNames("event")
+          .register();
+
+  private final Gauge.Child queueDepth;
+  private final Counter.Child blocked;
+  private final Summary.Child dispatchLatency;
+  private final ThreadPoolExecutor executor;
+
+  EventLane(String eventClass, int threads, int queueSize) {
+    queueDepth = QUEUE_DEPTH.labels(eventClass);
+    blocked = BLOCKED.labels(eventClass);
+    dispatchLatency = DISPATCH_LATENCY.labels(eventClass);
+
+    String simpleName = eventClass.substring(eventClass.lastIndexOf('.') + 1);
+    final ThreadFactory namedFactory = new NamedThreadFactory("EventLane-" + simpleName);
+    ThreadFactory laneFactory =
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(final Runnable r) {
+            return namedFactory.newThread(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    LANE_THREAD.set(Boolean.TRUE);
+                    r.run();
+                  }
+                });
+          }
+        };
+    executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize),
+            laneFactory,
+            new WaitForSpace());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  void submit(final Runnable runnable) {
+    final long queued = System.nanoTime();
+    queueDepth.inc();
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            queueDepth.dec();
+            dispatchLatency.observe((System.nanoTime() - queued) / 1.0E9);
+            runnable.run();
+          }
+        });
+  }
+
+  private class WaitForSpace implements RejectedExecutionHandler {
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor tpe) {
+      blocked.inc();
+      if (tpe.isShutdown()) {
+        queueDepth.dec();
+        throw new RejectedExecutionException("Event lane has been shut down");
+      }
+      if (LANE_THREAD.get() != null) {
+        DefaultExecutor.executor.execute(r);
+        return;
+      }
+      try {
+        tpe.getQueue().put(r);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        queueDepth.dec();
+        throw new RejectedExecutionException("Interrupted waiting to queue event", e);
+      }
+    }
+  }
+}
@@ -24,7 +24,6 @@ import com.tle.core.cluster.ClusterMessageHandler;
 import com.tle.core.cluster.service.ClusterMessagingService;
 import com.tle.core.events.ApplicationEvent;
 import com.tle.core.events.ApplicationEvent.PostTo;
-import com.tle.core.events.DefaultExecutor;
 import com.tle.core.events.EventExecutor;
 import com.tle.core.events.listeners.ApplicationListener;
 import com.tle.core.events.services.EventService;
@@ -32,15 +31,20 @@ import com.tle.core.guice.Bind;
 import com.tle.core.plugins.PluginBeanLocator;
 import com.tle.core.plugins.PluginService;
 import com.tle.core.plugins.PluginTracker;
+import io.prometheus.client.Summary;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import org.java.plugin.registry.Extension;
 import org.java.plugin.registry.Extension.Parameter;
@@ -53,14 +57,30 @@ import org.slf4j.LoggerFactory;
 public class EventServiceImpl implements EventService, ClusterMessageHandler {
   private static final Logger LOGGER = LoggerFactory.getLogger(EventServiceImpl.class);
 
+  private static final Summary LISTENER_TIME =
+      Summary.build()
+          .name("events_listener_seconds")
+          .help("Time spent in each listener handling an event")
+          .labelNames("event", "listener")
+          .register();
+
   @Inject private ClusterMessagingService clusterMessagingService;
   @Inject private PluginTracker<ApplicationListener> pluginListeners;
   @Inject private PluginTracker<EventExecutor> executorTracker;
   @Inject private PluginService pluginService;
 
-  private EventExecutor executor;
-  private Map<String, List<ListenerFinder>> extensionMap;
-  private Map<String, Set<ApplicationListener>> extensionBeanMap;
+  @Inject(optional = true)
+  @Named("events.laneThreads")
+  private int laneThreads = 20;
+
+  @Inject(optional = true)
+  @Named("events.laneQueueSize")
+  private int laneQueueSize = 5000;
+
+  private volatile EventExecutor executor;
+  private volatile ListenerSnapshot listenerSnapshot;
+  private final ConcurrentMap<String, EventLane> lanes =
+      new ConcurrentHashMap<String, EventLane>();
 
   private EventExecutor getExecutor() {
     if (executor == null) {
@@ -97,7 +117,20 @@ public class EventServiceImpl implements EventService, ClusterMessageHandler {
   }
 
   private void submitEvent(Institution institution, ApplicationEvent<?> event) {
-    DefaultExecutor.executor.submit(convertToRunnable(getInstitutionId(institution), event));
+    getLane(event.getClass().getName())
+        .submit(convertToRunnable(getInstitutionId(institution), event));
+  }
+
+  private EventLane getLane(String eventClass) {
+    EventLane lane = lanes.get(eventClass);
+    if (lane == null) {
+      EventLane newLane = new EventLane(eventClass, laneThreads, laneQueueSize);
+      lane = lanes.putIfAbsent(eventClass, newLane);
+      if (lane == null) {
+        lane = newLane;
+      }
+    }
+    return lane;
   }
 
   private void postEventToOthers(Institution institution, ApplicationEvent<?> event) {
@@ -113,9 +146,12 @@ public class EventServiceImpl implements EventService, ClusterMessageHandler {
 
     LOGGER.debug("Executing event now: " + event.getClass().getName());
 
+    String eventName = event.getClass().getName();
     Set<ApplicationListener> listeners = getListeners(event.getListener());
     Throwable firstEx = null;
     for (ApplicationListener listener : listeners) {
+      Summary.Timer timer =
+          LISTENER_TIME.labels(eventName, listener.getClass().getName()).startTimer();
       try {
         eventHack.postEvent(listener);
       } catch (Exception ex) {
@@ -128,6 +164,8 @@ public class EventServiceImpl implements EventService, ClusterMessageHandler {
         if (firstEx == null) {
           firstEx = ex;
         }
+      } finally {
+        timer.observeDuration();
       }
     }
     if (firstEx != null) {
@@ -135,53 +173,80 @@ public class EventServiceImpl implements EventService, ClusterMessageHandler {
     }
   }
 
-  private synchronized Set<ApplicationListener> getListeners(Class<?> clazz) {
-    if (extensionBeanMap == null || pluginListeners.needsUpdate()) {
-      extensionBeanMap = new HashMap<String, Set<ApplicationListener>>();
-    }
-
+  private Set<ApplicationListener> getListeners(Class<?> clazz) {
+    ListenerSnapshot snapshot = getListenerSnapshot();
     String clazzName = clazz.getName();
 
-    Set<ApplicationListener> listeners = extensionBeanMap.get(clazzName);
+    Set<ApplicationListener> listeners = snapshot.listeners.get(clazzName);
     if (listeners != null) {
       return listeners;
     }
 
-    listeners = new HashSet<ApplicationListener>();
-    List<ListenerFinder> extList = getExtensionMap().get(clazzName);
+    // Looking up beans may create them, and creating a bean may publish an event, so this is done
+    // outside of any lock. Two threads may both resolve the same class; the results are the same.
+    Set<ApplicationListener> resolved = new HashSet<ApplicationListener>();
+    List<ListenerFinder> extList = snapshot.finders.get(clazzName);
     if (extList != null) {
       for (ListenerFinder finder : extList) {
-        finder.addListeners(listeners);
+        finder.addListeners(resolved);
       }
     }
-    extensionBeanMap.put(clazzName, listeners);
+    listeners = snapshot.listeners.putIfAbsent(clazzName, Collections.unmodifiableSet(resolved));
+    return listeners != null ? listeners : snapshot.listeners.get(clazzName);
+  }
 
-    return listeners;
+  /**
+   * The listener extensions are only re-read when plugins change. Until then every event uses the
+   * same snapshot, only comparing the tracker's change count.
+   */
+  private ListenerSnapshot getListenerSnapshot() {
+    ListenerSnapshot snapshot = listenerSnapshot;
+    if (snapshot == null || snapshot.changeCount != pluginListeners.getChangeCount()) {
+      synchronized (this) {
+        snapshot = listenerSnapshot;
+        int changeCount = pluginListeners.getChangeCount();
+        if (snapshot == null || snapshot.changeCount != changeCount) {
+          snapshot = new ListenerSnapshot(changeCount, buildExtensionMap());
+          listenerSnapshot = snapshot;
+        }
+      }
+    }
+    return snapshot;
   }
 
-  private synchronized Map<String, List<ListenerFinder>> getExtensionMap() {
-    if (extensionMap == null || pluginListeners.needsUpdate()) {
-      extensionMap = new HashMap<String, List<ListenerFinder>>();
-      List<Extension> extensions = pluginListeners.getExtensions();
-      for (Extension extension : extensions) {
-        Parameter listenerParam = extension.getParameter("listener");
-        Collection<Parameter> listClasses = extension.getParameters("listenerClass");
-        for (Parameter listClassname : listClasses) {
-          String listenerClass = listClassname.valueAsString();
-          List<ListenerFinder> extList = extensionMap.get(listenerClass);
-          if (extList == null) {
-            extList = new ArrayList<ListenerFinder>();
-            extensionMap.put(listenerClass, extList);
-          }
-          if (listenerParam == null) {
-            extList.add(new ScanForListeners(listenerClass, extension));
-          } else {
-            extList.add(new BeanListener(listenerParam.valueAsString(), extension));
-          }
+  private Map<String, List<ListenerFinder>> buildExtensionMap() {
+    Map<String, List<ListenerFinder>> extensionMap = new HashMap<String, List<ListenerFinder>>();
+    List<Extension> extensions = pluginListeners.getExtensions();
+    for (Extension extension : extensions) {
+      Parameter listenerParam = extension.getParameter("listener");
+      Collection<Parameter> listClasses = extension.getParameters("listenerClass");
+      for (Parameter listClassname : listClasses) {
+        String listenerClass = listClassname.valueAsString();
+        List<ListenerFinder> extList = extensionMap.get(listenerClass);
+        if (extList == null) {
+          extList = new ArrayList<ListenerFinder>();
+          extensionMap.put(listenerClass, extList);
+        }
+        if (listenerParam == null) {
+          extList.add(new ScanForListeners(listenerClass, extension));
+        } else {
+          extList.add(new BeanListener(listenerParam.valueAsString(), extension));
         }
       }
     }
-    return extensionMap;
+    return Collections.unmodifiableMap(extensionMap);
+  }
+
+  private static final class ListenerSnapshot {
+    final int changeCount;
+    final Map<String, List<ListenerFinder>> finders;
+    final ConcurrentMap<String, Set<ApplicationListener>> listeners =
+        new ConcurrentHashMap<String, Set<ApplicationListener>>();
+
+    ListenerSnapshot(int changeCount, Map<String, List<ListenerFinder>> finders) {
+      this.changeCount = changeCount;
+      this.finders = finders;
+    }
   }
 
   private interface ListenerFinder {
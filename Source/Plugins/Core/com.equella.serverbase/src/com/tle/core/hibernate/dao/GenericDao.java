@@ -85,5 +85,11 @@ public interface GenericDao<T, ID extends Serializable> {
 
   void clear();
 
+  /**
+   * Sets the JDBC batch size used when the current session flushes, overriding the session factory
+   * default. Pass null to revert to the default.
+   */
+  void setJdbcBatchSize(@Nullable Integer batchSize);
+
   void evict(T object);
 }
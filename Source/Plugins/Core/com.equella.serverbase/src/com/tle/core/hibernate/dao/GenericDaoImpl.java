@@ -357,6 +357,19 @@ public class GenericDaoImpl<T, ID extends Serializable> extends AbstractHibernat
     getHibernateTemplate().clear();
   }
 
+  @Override
+  public void setJdbcBatchSize(@Nullable final Integer batchSize) {
+    getHibernateTemplate()
+        .execute(
+            new HibernateCallback() {
+              @Override
+              public Object doInHibernate(Session session) {
+                session.setJdbcBatchSize(batchSize);
+                return null;
+              }
+            });
+  }
+
   @Override
   public void evict(T object) {
     getHibernateTemplate().evict(object);
@@ -0,0 +1,88 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class MessageBatchTest extends TestCase {
+  public void testRoundTripUncompressed() throws IOException {
+    roundTrip(MessageCodec.NONE);
+  }
+
+  public void testRoundTripDeflated() throws IOException {
+    roundTrip(MessageCodec.DEFLATE);
+  }
+
+  public void testDeflateShrinksRepetitiveBatches() throws IOException {
+    List<byte[]> messages = messages(200);
+    int plain =
+        MessageBatch.write(
+            new DataOutputStream(new ByteArrayOutputStream()), messages, MessageCodec.NONE);
+    int deflated =
+        MessageBatch.write(
+            new DataOutputStream(new ByteArrayOutputStream()), messages, MessageCodec.DEFLATE);
+    assertTrue(deflated < plain / 4);
+  }
+
+  public void testRejectsUnknownCodec() {
+    try {
+      MessageCodec.forId((byte) 99);
+      fail();
+    } catch (IOException expected) {
+      // good
+    }
+  }
+
+  private void roundTrip(MessageCodec codec) throws IOException {
+    List<byte[]> messages = messages(50);
+    messages.add(new byte[0]);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(bytes);
+    int written = MessageBatch.write(dos, messages, codec);
+    dos.flush();
+    assertEquals(bytes.size(), written);
+
+    List<byte[]> read =
+        MessageBatch.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(messages.size(), read.size());
+    for (int i = 0; i < messages.size(); i++) {
+      assertTrue(Arrays.equals(messages.get(i), read.get(i)));
+    }
+  }
+
+  private List<byte[]> messages(int count) {
+    List<byte[]> messages = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      messages.add(
+          ("com.tle.core.replicatedcache.CacheInvalidation key " + i)
+              .getBytes(StandardCharsets.UTF_8));
+    }
+    return messages;
+  }
+}
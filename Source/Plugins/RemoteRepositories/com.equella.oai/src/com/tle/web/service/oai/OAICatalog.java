@@ -32,6 +32,7 @@ import ORG.oclc.oai.util.OAIUtil;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.tle.annotation.Nullable;
 import com.tle.beans.entity.DynaCollection;
 import com.tle.beans.item.Item;
 import com.tle.beans.item.ItemId;
@@ -43,6 +44,8 @@ import com.tle.common.searching.Search.SortType;
 import com.tle.common.util.Dates;
 import com.tle.common.util.UtcDate;
 import com.tle.core.dynacollection.DynaCollectionService;
+import com.tle.core.freetext.index.CursorSearchResults;
+import com.tle.core.freetext.index.SearchCursor;
 import com.tle.core.freetext.queries.FreeTextBooleanQuery;
 import com.tle.core.freetext.service.FreeTextService;
 import com.tle.core.institution.InstitutionService;
@@ -54,6 +57,7 @@ import com.tle.core.search.QueryGatherer;
 import com.tle.core.search.VirtualisableAndValue;
 import com.tle.core.services.item.FreetextResult;
 import com.tle.core.services.item.FreetextSearchResults;
+import com.tle.core.services.item.StdFreetextResults;
 import com.tle.core.settings.service.ConfigurationService;
 import java.io.Serializable;
 import java.text.ParseException;
@@ -88,6 +92,7 @@ public class OAICatalog extends AbstractCatalog {
   @Inject private SchemaService schemaService;
   @Inject private ConfigurationService configService;
   @Inject private InstitutionService institutionService;
+  @Inject private OAIRecordCache recordCache;
 
   private ReplicatedCache<ResumptionToken> resumptionTokens;
 
@@ -222,7 +227,22 @@ public class OAICatalog extends AbstractCatalog {
     if (schemaURL == null) {
       throw new CannotDisseminateFormatException(mdPrefix);
     }
-    return getRecordFactory().create(getRecord(identifier), schemaURL, mdPrefix);
+    return createRecord(getRecord(identifier), schemaURL, mdPrefix);
+  }
+
+  private String createRecord(Item item, String schemaURL, String metadataPrefix)
+      throws CannotDisseminateFormatException {
+    if (metadataPrefix == null) {
+      return getRecordFactory().create(item, schemaURL, metadataPrefix);
+    }
+    final String key =
+        recordCache.getKey(item, getRecordFactory().getOAIIdentifier(item), metadataPrefix);
+    String record = recordCache.get(item, metadataPrefix, key);
+    if (record == null) {
+      record = getRecordFactory().create(item, schemaURL, metadataPrefix);
+      recordCache.put(item, metadataPrefix, key, record);
+    }
+    return record;
   }
 
   private Item getRecord(String identifier) throws IdDoesNotExistException {
@@ -240,13 +260,20 @@ public class OAICatalog extends AbstractCatalog {
     // NOTHING TO DO
   }
 
+  /**
+   * Resumes from the date modified and item key of the last record sent rather than an offset, so
+   * each page starts where the last one ended without collecting all the earlier results again.
+   */
   private static class ResumptionToken implements Serializable {
     private final DefaultSearch request;
     private final String format;
-    private final int start;
+    private final SearchCursor after;
+    private final int delivered;
 
-    public ResumptionToken(int start, DefaultSearch request, String format) {
-      this.start = start;
+    public ResumptionToken(
+        SearchCursor after, int delivered, DefaultSearch request, String format) {
+      this.after = after;
+      this.delivered = delivered;
       this.request = request;
       this.format = format;
     }
@@ -264,7 +291,7 @@ public class OAICatalog extends AbstractCatalog {
       resumptionTokens.invalidate(stoken);
 
       ResumptionToken token = maybeToken.get();
-      return list(token.request, token.format, token.start + MAX_RESULTS, handler);
+      return list(token.request, token.format, token.after, token.delivered, handler);
     } catch (NoRecordsMatchException e) {
       LOGGER.error("No records match", e);
       throw new BadResumptionTokenException();
@@ -295,7 +322,7 @@ public class OAICatalog extends AbstractCatalog {
       search.setDateRange(new Date[] {parseDate(from), parseDate(until)});
     }
 
-    return list(search, metadataFormat, 0, handler);
+    return list(search, metadataFormat, null, 0, handler);
   }
 
   private Date parseDate(String s) throws BadArgumentException {
@@ -346,16 +373,27 @@ public class OAICatalog extends AbstractCatalog {
     search.setFreeTextQuery(dynaCollectionService.getSearchClause(dc, virtualiseValue));
   }
 
+  /**
+   * @param after The position of the last record of the previous page, or null for the first page
+   * @param delivered The number of records in the previous pages
+   */
   private Map<String, Map<?, ?>> list(
-      DefaultSearch request, String format, int start, Handler handler)
+      DefaultSearch request,
+      String format,
+      @Nullable SearchCursor after,
+      int delivered,
+      Handler handler)
       throws NoRecordsMatchException, OAIInternalServerError {
     try {
       Map<String, Map<?, ?>> items = new HashMap<String, Map<?, ?>>();
 
+      CursorSearchResults<FreetextResult> page =
+          freeTextService.searchAfter(request, after, MAX_RESULTS, false);
       FreetextSearchResults<FreetextResult> results =
-          freeTextService.search(request, start, MAX_RESULTS);
+          new StdFreetextResults<FreetextResult>(itemService, page, request);
 
-      int available = results.getAvailable();
+      // The page reports what is left from here on, not the total
+      int available = delivered + page.getAvailable();
       if (available == 0) {
         throw new NoRecordsMatchException();
       }
@@ -363,10 +401,12 @@ public class OAICatalog extends AbstractCatalog {
         handler.add(item, format);
       }
 
-      if (available > start + MAX_RESULTS) {
+      SearchCursor next = page.getCursor();
+      if (next != null) {
         String uuid = UUID.randomUUID().toString();
-        Map<?, ?> map = getResumptionMap(uuid, available, start);
-        ResumptionToken token = new ResumptionToken(start, request, format);
+        Map<?, ?> map = getResumptionMap(uuid, available, delivered);
+        ResumptionToken token =
+            new ResumptionToken(next, delivered + page.getCount(), request, format);
         resumptionTokens.put(uuid, token);
         items.put("resumptionMap", map); // $NON-NLS-1$
       }
@@ -404,7 +444,7 @@ public class OAICatalog extends AbstractCatalog {
           throw new CannotDisseminateFormatException(metadataPrefix);
         }
       }
-      records.add(getRecordFactory().create(item, schemaURL, metadataPrefix));
+      records.add(createRecord(item, schemaURL, metadataPrefix));
     }
 
     @Override
@@ -0,0 +1,130 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.web.service.oai;
+
+import com.google.common.io.CharStreams;
+import com.tle.annotation.NonNullByDefault;
+import com.tle.annotation.Nullable;
+import com.tle.beans.entity.Schema;
+import com.tle.beans.item.Item;
+import com.tle.common.filesystem.handle.FileHandle;
+import com.tle.core.guice.Bind;
+import com.tle.core.item.service.ItemFileService;
+import com.tle.core.services.FileSystemService;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the OAI record of an item for each metadata format in the item's filestore, so that
+ * harvesting an unchanged item doesn't run it through the crosswalk again. Each entry lives at
+ * {@link #RECORDS_FOLDER}/&lt;metadataPrefix&gt;.xml and starts with a header line holding the key
+ * it was created under: the record identifier, item status and modified date, and the schema and
+ * its modified date. Saving the item or its schema changes the key, so the old entry is ignored and
+ * replaced the next time the record is requested.
+ */
+@NonNullByDefault
+@Bind
+@Singleton
+@SuppressWarnings("nls")
+public class OAIRecordCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OAIRecordCache.class);
+
+  public static final String RECORDS_FOLDER = "_OAIRECORDS";
+
+  @Inject private FileSystemService fileSystemService;
+  @Inject private ItemFileService itemFileService;
+
+  public String getKey(Item item, String identifier, String metadataPrefix) {
+    final Schema schema = item.getItemDefinition().getSchema();
+    return identifier
+        + '|'
+        + metadataPrefix
+        + '|'
+        + item.getStatus()
+        + '|'
+        + item.getDateModified().getTime()
+        + '|'
+        + schema.getId()
+        + ':'
+        + schema.getDateModified().getTime();
+  }
+
+  /** @return The cached record, or null if there is no entry for this exact key */
+  @Nullable
+  public String get(Item item, String metadataPrefix, String key) {
+    final FileHandle handle = itemFileService.getItemFile(item);
+    final String path = getPath(metadataPrefix);
+    try {
+      if (!fileSystemService.fileExists(handle, path)) {
+        return null;
+      }
+      try (InputStream in = fileSystemService.read(handle, path)) {
+        final String contents =
+            CharStreams.toString(new InputStreamReader(in, StandardCharsets.UTF_8));
+        final int eol = contents.indexOf('\n');
+        if (eol < 0 || !contents.substring(0, eol).equals(key)) {
+          return null;
+        }
+        return contents.substring(eol + 1);
+      }
+    } catch (IOException io) {
+      LOGGER.warn("Error reading cached OAI record for " + item.getItemId(), io);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the entry to a temporary file next to it and renames that into place, so that a harvest
+   * reading the entry at the same time never sees a partly written record.
+   */
+  public void put(Item item, String metadataPrefix, String key, String record) {
+    final FileHandle handle = itemFileService.getItemFile(item);
+    final String path = getPath(metadataPrefix);
+    final String tempPath = path + '.' + UUID.randomUUID() + ".tmp";
+    try {
+      fileSystemService.write(handle, tempPath, new StringReader(key + '\n' + record), false);
+      // Renaming over an existing file isn't possible on every platform
+      if (!fileSystemService.rename(handle, tempPath, path)) {
+        fileSystemService.removeFile(handle, path);
+        if (!fileSystemService.rename(handle, tempPath, path)) {
+          LOGGER.warn("Could not rename cached OAI record into place for " + item.getItemId());
+        }
+      }
+    } catch (Exception e) {
+      // Only costs us a crosswalk next time
+      LOGGER.warn("Error caching OAI record for " + item.getItemId(), e);
+    } finally {
+      if (fileSystemService.fileExists(handle, tempPath)) {
+        fileSystemService.removeFile(handle, tempPath);
+      }
+    }
+  }
+
+  private static String getPath(String metadataPrefix) {
+    return RECORDS_FOLDER + '/' + metadataPrefix.replaceAll("[^A-Za-z0-9_.-]", "_") + ".xml";
+  }
+}
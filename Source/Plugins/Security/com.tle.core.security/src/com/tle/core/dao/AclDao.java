@@ -33,6 +33,18 @@ public interface AclDao extends GenericDao<AccessEntry, Long> {
   List<Object[]> getPrivilegesForTargets(
       Collection<String> privileges, Collection<String> targets, Collection<Long> expressions);
 
+  /**
+   * @return Every entry for the targets, regardless of privilege or expression, as rows of target,
+   *     aggregate ordering, privilege and expression ID
+   */
+  List<Object[]> getEntriesForTargets(Collection<String> targets);
+
+  /**
+   * @return Every entry for the privileges on any target, in the same form as {@link
+   *     #getEntriesForTargets(Collection)}
+   */
+  List<Object[]> getEntriesForPrivileges(Collection<String> privileges);
+
   void delete(String target, String privilege, Institution institution);
 
   void deleteAll(String target, boolean targetIsPartial, List<Integer> priorities);
@@ -169,6 +169,40 @@ public class AclDaoImpl extends GenericDaoImpl<AccessEntry, Long> implements Acl
                 });
   }
 
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY)
+  public List<Object[]> getEntriesForTargets(Collection<String> targets) {
+    return (List<Object[]>)
+        getHibernateTemplate()
+            .execute(
+                new CollectionPartitioner<String, Object[]>(targets) {
+                  @Override
+                  public List<Object[]> doQuery(Session session, Collection<String> collection) {
+                    Query query = session.getNamedQuery("getEntriesForTargets");
+                    query.setParameter("institution", CurrentInstitution.get());
+                    query.setParameterList("targets", collection);
+                    return query.list();
+                  }
+                });
+  }
+
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY)
+  public List<Object[]> getEntriesForPrivileges(Collection<String> privileges) {
+    return (List<Object[]>)
+        getHibernateTemplate()
+            .execute(
+                new CollectionPartitioner<String, Object[]>(privileges) {
+                  @Override
+                  public List<Object[]> doQuery(Session session, Collection<String> collection) {
+                    Query query = session.getNamedQuery("getEntriesForPrivileges");
+                    query.setParameter("institution", CurrentInstitution.get());
+                    query.setParameterList("privileges", collection);
+                    return query.list();
+                  }
+                });
+  }
+
   @Override
   @Transactional(propagation = Propagation.MANDATORY)
   public List<TargetListEntry> getTargetListEntries(
@@ -0,0 +1,198 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.security.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tle.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ACL entries of one institution, keyed both by target and by privilege, so that privilege
+ * checks can be resolved in memory against a user's expression IDs. Results are in the same form
+ * and order as the {@code getPrivileges} and {@code getPrivilegesForTargets} queries.
+ *
+ * <p>Loads are tagged with a generation that every invalidation bumps, so entries read before an
+ * invalidation are never cached after it.
+ */
+class AclEntryCache {
+  private static final int MAX_TARGETS = 50000;
+  private static final int MAX_PRIVILEGES = 1000;
+
+  private static final Comparator<Entry> ORDER =
+      new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+          int c = e2.ordering.compareTo(e1.ordering);
+          if (c == 0) {
+            c = e1.target.compareTo(e2.target);
+          }
+          return c != 0 ? c : e1.privilege.compareTo(e2.privilege);
+        }
+      };
+
+  interface Loader {
+    /** @return Rows of target, aggregate ordering, privilege and expression ID */
+    List<Object[]> load(Collection<String> keys);
+  }
+
+  private final Cache<String, Entry[]> targets =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_TARGETS)
+          .expireAfterAccess(1, TimeUnit.HOURS)
+          .build();
+  private final Cache<String, Entry[]> privileges =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_PRIVILEGES)
+          .expireAfterAccess(1, TimeUnit.HOURS)
+          .build();
+  private long generation;
+
+  /** @return Rows of the highest aggregate ordering, privilege and target */
+  List<Object[]> getPrivilegesForTargets(
+      Collection<String> privs,
+      Collection<String> targetNames,
+      Collection<Long> expressions,
+      Loader loader) {
+    return resolve(getEntries(targets, targetNames, loader, true), privs, expressions);
+  }
+
+  /** @return Rows of the highest aggregate ordering, privilege and target, for any target */
+  List<Object[]> getPrivileges(
+      Collection<String> privs, Collection<Long> expressions, Loader loader) {
+    return resolve(getEntries(privileges, privs, loader, false), privs, expressions);
+  }
+
+  /**
+   * @param targetPrefixes The prefixes of the targets that changed, or null if it could have been
+   *     any of them
+   */
+  synchronized void invalidate(@Nullable Collection<String> targetPrefixes) {
+    generation++;
+    // The privilege entries cover every target
+    privileges.invalidateAll();
+    if (targetPrefixes == null) {
+      targets.invalidateAll();
+      return;
+    }
+
+    final List<String> changed = new ArrayList<String>();
+    for (String target : targets.asMap().keySet()) {
+      for (String prefix : targetPrefixes) {
+        if (target.startsWith(prefix)) {
+          changed.add(target);
+          break;
+        }
+      }
+    }
+    targets.invalidateAll(changed);
+  }
+
+  private Collection<Entry[]> getEntries(
+      Cache<String, Entry[]> cache, Collection<String> keys, Loader loader, boolean byTarget) {
+    final Map<String, Entry[]> found = new HashMap<String, Entry[]>(cache.getAllPresent(keys));
+    if (found.size() == keys.size()) {
+      return found.values();
+    }
+
+    final long loadGeneration;
+    synchronized (this) {
+      loadGeneration = generation;
+    }
+
+    final Map<String, List<Entry>> loaded = new HashMap<String, List<Entry>>();
+    for (String key : keys) {
+      if (!found.containsKey(key)) {
+        loaded.put(key, new ArrayList<Entry>());
+      }
+    }
+    for (Object[] row : loader.load(loaded.keySet())) {
+      final Entry entry = new Entry(row);
+      final List<Entry> entries = loaded.get(byTarget ? entry.target : entry.privilege);
+      if (entries != null) {
+        entries.add(entry);
+      }
+    }
+
+    final Map<String, Entry[]> arrays = new HashMap<String, Entry[]>();
+    for (Map.Entry<String, List<Entry>> entry : loaded.entrySet()) {
+      final List<Entry> entries = entry.getValue();
+      arrays.put(entry.getKey(), entries.toArray(new Entry[entries.size()]));
+    }
+    synchronized (this) {
+      if (loadGeneration == generation) {
+        cache.putAll(arrays);
+      }
+    }
+    found.putAll(arrays);
+    return found.values();
+  }
+
+  private static List<Object[]> resolve(
+      Collection<Entry[]> entryLists, Collection<String> privs, Collection<Long> expressions) {
+    final Set<String> privSet = new HashSet<String>(privs);
+    final Set<Long> expressionSet = new HashSet<Long>(expressions);
+    final List<Entry> matches = new ArrayList<Entry>();
+    for (Entry[] entries : entryLists) {
+      for (Entry entry : entries) {
+        if (privSet.contains(entry.privilege) && expressionSet.contains(entry.expression)) {
+          matches.add(entry);
+        }
+      }
+    }
+    if (matches.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    Collections.sort(matches, ORDER);
+    // The queries group by target, privilege and ordering
+    final List<Object[]> rows = new ArrayList<Object[]>(matches.size());
+    Entry last = null;
+    for (Entry entry : matches) {
+      if (last == null || ORDER.compare(last, entry) != 0) {
+        rows.add(new Object[] {entry.ordering, entry.privilege, entry.target});
+      }
+      last = entry;
+    }
+    return rows;
+  }
+
+  private static class Entry {
+    final String target;
+    final String ordering;
+    final String privilege;
+    final long expression;
+
+    Entry(Object[] row) {
+      target = (String) row[0];
+      ordering = (String) row[1];
+      privilege = (String) row[2];
+      expression = ((Number) row[3]).longValue();
+    }
+  }
+}
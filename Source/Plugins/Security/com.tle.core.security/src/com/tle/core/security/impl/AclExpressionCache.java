@@ -0,0 +1,189 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.security.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.tle.common.Triple;
+import com.tle.common.usermanagement.user.UserState;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ACL expressions of one institution, compiled once and cached by ID, along with the
+ * evaluation results for each distinct set of recipients (user, groups, roles, etc.) so that users
+ * with identical memberships share the work.
+ *
+ * <p>Expressions using the IP address or referrer are kept aside and evaluated for each request.
+ * Memoized results are tagged with a generation that every invalidation bumps, so results
+ * evaluated before an invalidation are never returned after it.
+ */
+class AclExpressionCache {
+  private static final int MAX_EXPRESSIONS = 50000;
+  private static final int MAX_RECIPIENT_SETS = 10000;
+
+  interface Loader {
+    /** @return The ID, expression and dynamic flag of the expressions using any of the values */
+    List<Triple<Long, String, Boolean>> load(List<String> recipients);
+  }
+
+  private final Cache<Long, CompiledAclExpression> compiled =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_EXPRESSIONS)
+          .expireAfterAccess(1, TimeUnit.HOURS)
+          .build();
+  private final Cache<List<String>, Evaluated> evaluated =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_RECIPIENT_SETS)
+          .expireAfterAccess(1, TimeUnit.HOURS)
+          .build();
+  private volatile long generation;
+
+  /**
+   * @param recipients Every recipient the user matches, which must determine everything about the
+   *     user that expressions test apart from the request
+   */
+  Triple<Collection<Long>, Collection<Long>, Collection<Long>> getAclExpressions(
+      final List<String> recipients,
+      final UserState userState,
+      final boolean enableIpReferAcl,
+      final Loader loader) {
+    final List<String> key = new ArrayList<String>(recipients);
+    key.sort(null);
+
+    Evaluated memo;
+    while (true) {
+      final long gen = generation;
+      try {
+        memo = evaluated.get(key, () -> evaluate(gen, loader.load(key), userState));
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        final Throwable cause = e.getCause();
+        throw cause instanceof RuntimeException
+            ? (RuntimeException) cause
+            : new RuntimeException(cause);
+      }
+      if (memo.generation == generation) {
+        break;
+      }
+      evaluated.asMap().remove(key, memo);
+    }
+
+    final Triple<Collection<Long>, Collection<Long>, Collection<Long>> results = memo.copy();
+    final AclExpressionEvaluator evaluator = new AclExpressionEvaluator();
+    for (CompiledAclExpression expression : memo.contextual) {
+      classify(evaluator, expression, userState, enableIpReferAcl, results);
+    }
+    return results;
+  }
+
+  /** Evaluates the expressions without memoizing the results. */
+  Triple<Collection<Long>, Collection<Long>, Collection<Long>> evaluate(
+      List<Triple<Long, String, Boolean>> expressions,
+      UserState userState,
+      boolean enableIpReferAcl) {
+    final Triple<Collection<Long>, Collection<Long>, Collection<Long>> results = newResults();
+    final AclExpressionEvaluator evaluator = new AclExpressionEvaluator();
+    for (Triple<Long, String, Boolean> exp : expressions) {
+      classify(evaluator, compile(exp), userState, enableIpReferAcl, results);
+    }
+    return results;
+  }
+
+  synchronized void invalidate() {
+    generation++;
+    evaluated.invalidateAll();
+  }
+
+  private Evaluated evaluate(
+      long gen, List<Triple<Long, String, Boolean>> expressions, UserState userState) {
+    final Evaluated memo = new Evaluated(gen);
+    final AclExpressionEvaluator evaluator = new AclExpressionEvaluator();
+    for (Triple<Long, String, Boolean> exp : expressions) {
+      final CompiledAclExpression expression = compile(exp);
+      if (expression.isContextual()) {
+        memo.contextual.add(expression);
+      } else {
+        // Doesn't look at the request, so enabling IP checks makes no difference
+        classify(evaluator, expression, userState, true, memo.results);
+      }
+    }
+    return memo;
+  }
+
+  private CompiledAclExpression compile(Triple<Long, String, Boolean> exp) {
+    final Long id = exp.getFirst();
+    final String expression = exp.getSecond();
+    CompiledAclExpression result = compiled.getIfPresent(id);
+    if (result == null || !result.getExpression().equals(expression)) {
+      result = CompiledAclExpression.compile(expression, id, exp.getThird());
+      compiled.put(id, result);
+    }
+    return result;
+  }
+
+  private static void classify(
+      AclExpressionEvaluator evaluator,
+      CompiledAclExpression expression,
+      UserState userState,
+      boolean enableIpReferAcl,
+      Triple<Collection<Long>, Collection<Long>, Collection<Long>> results) {
+    final long expressionID = expression.getId();
+    // If it's a dynamic expression...
+    if (expression.isDynamic()) {
+      boolean own = evaluator.evaluate(expression, userState, true, enableIpReferAcl);
+      boolean nOwn = evaluator.evaluate(expression, userState, false, enableIpReferAcl);
+
+      if (own && nOwn) {
+        results.getFirst().add(expressionID);
+      } else if (own) {
+        results.getSecond().add(expressionID);
+      } else if (nOwn) {
+        results.getThird().add(expressionID);
+      }
+    } else if (evaluator.evaluate(expression, userState, true, true)) {
+      results.getFirst().add(expressionID);
+    }
+  }
+
+  private static Triple<Collection<Long>, Collection<Long>, Collection<Long>> newResults() {
+    return new Triple<Collection<Long>, Collection<Long>, Collection<Long>>(
+        new ArrayList<Long>(), new ArrayList<Long>(), new ArrayList<Long>());
+  }
+
+  private static class Evaluated {
+    final long generation;
+    final Triple<Collection<Long>, Collection<Long>, Collection<Long>> results = newResults();
+    final List<CompiledAclExpression> contextual = new ArrayList<CompiledAclExpression>();
+
+    Evaluated(long generation) {
+      this.generation = generation;
+    }
+
+    Triple<Collection<Long>, Collection<Long>, Collection<Long>> copy() {
+      return new Triple<Collection<Long>, Collection<Long>, Collection<Long>>(
+          new ArrayList<Long>(results.getFirst()),
+          new ArrayList<Long>(results.getSecond()),
+          new ArrayList<Long>(results.getThird()));
+    }
+  }
+}
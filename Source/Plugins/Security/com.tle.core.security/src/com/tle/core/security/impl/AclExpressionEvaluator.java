@@ -21,6 +21,7 @@ package com.tle.core.security.impl;
 import com.dytech.edge.common.IpAddressUtils;
 import com.dytech.edge.common.IpAddressUtils.Matcher;
 import com.tle.common.security.SecurityConstants;
+import com.tle.common.security.SecurityConstants.Recipient;
 import com.tle.common.security.expressions.EvaluateExpression;
 import com.tle.common.usermanagement.user.UserState;
 import java.util.Objects;
@@ -50,10 +51,26 @@ public class AclExpressionEvaluator extends EvaluateExpression {
     return evaluate(expression);
   }
 
+  boolean evaluate(
+      CompiledAclExpression expression,
+      UserState userState,
+      boolean isOwner,
+      boolean enableIpReferAcl) {
+    this.userState = userState;
+    this.isOwner = isOwner;
+    this.enableIpReferAcl = enableIpReferAcl;
+
+    return expression.evaluate(this);
+  }
+
   @Override
   protected Boolean processOperand(String token) {
-    String value = SecurityConstants.getRecipientValue(token);
-    switch (SecurityConstants.getRecipientType(token)) {
+    return processOperand(
+        SecurityConstants.getRecipientType(token), SecurityConstants.getRecipientValue(token));
+  }
+
+  boolean processOperand(Recipient type, String value) {
+    switch (type) {
       case EVERYONE:
         return true;
       case OWNER:
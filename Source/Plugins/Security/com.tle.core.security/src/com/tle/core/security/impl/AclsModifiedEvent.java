@@ -0,0 +1,56 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.security.impl;
+
+import com.tle.annotation.Nullable;
+import com.tle.core.events.ApplicationEvent;
+import java.util.Collection;
+
+/** Tells the other cluster nodes to drop their cached ACL entries for some targets. */
+public class AclsModifiedEvent extends ApplicationEvent<AclsModifiedListener> {
+  private static final long serialVersionUID = 1L;
+
+  @Nullable private final Collection<String> targetPrefixes;
+
+  /** @param targetPrefixes The prefixes of the modified targets, or null for all targets */
+  public AclsModifiedEvent(@Nullable Collection<String> targetPrefixes) {
+    super(PostTo.POST_TO_OTHER_CLUSTER_NODES);
+    this.targetPrefixes = targetPrefixes;
+  }
+
+  @Nullable
+  public Collection<String> getTargetPrefixes() {
+    return targetPrefixes;
+  }
+
+  @Override
+  public Class<AclsModifiedListener> getListener() {
+    return AclsModifiedListener.class;
+  }
+
+  @Override
+  public void postEvent(AclsModifiedListener listener) {
+    listener.aclsModified(this);
+  }
+
+  @Override
+  public boolean requiresInstitution() {
+    return true;
+  }
+}
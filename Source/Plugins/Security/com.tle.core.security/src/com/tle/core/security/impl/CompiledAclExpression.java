@@ -0,0 +1,161 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.security.impl;
+
+import com.tle.common.security.SecurityConstants;
+import com.tle.common.security.SecurityConstants.Recipient;
+import com.tle.common.security.expressions.PostfixExpressionParser.BooleanOp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An ACL expression parsed once into postfix instructions, so that it can be evaluated repeatedly
+ * without splitting and decoding its tokens each time.
+ */
+@SuppressWarnings("nls")
+final class CompiledAclExpression {
+  private static final int NOT = -1;
+  private static final int AND = -2;
+  private static final int OR = -3;
+
+  private final String expression;
+  private final long id;
+  private final boolean dynamic;
+  // Operators as negative codes, anything else is an index into the operands
+  private final int[] program;
+  private final Recipient[] types;
+  private final String[] values;
+  private final int depth;
+  private final boolean contextual;
+
+  private CompiledAclExpression(
+      String expression,
+      long id,
+      boolean dynamic,
+      int[] program,
+      Recipient[] types,
+      String[] values,
+      int depth) {
+    this.expression = expression;
+    this.id = id;
+    this.dynamic = dynamic;
+    this.program = program;
+    this.types = types;
+    this.values = values;
+    this.depth = depth;
+
+    boolean usesRequest = false;
+    for (Recipient type : types) {
+      usesRequest |= type == Recipient.IP_ADDRESS || type == Recipient.HTTP_REFERRER;
+    }
+    this.contextual = usesRequest;
+  }
+
+  static CompiledAclExpression compile(String expression, long id, boolean dynamic) {
+    final String[] tokens = expression.split("\\s");
+    final int[] program = new int[tokens.length];
+    final List<Recipient> types = new ArrayList<Recipient>();
+    final List<String> values = new ArrayList<String>();
+
+    int size = 0;
+    int depth = 0;
+    for (int i = 0; i < tokens.length; i++) {
+      final String token = tokens[i];
+      final BooleanOp op = BooleanOp.getOperator(token);
+      if (op == null) {
+        program[i] = types.size();
+        types.add(SecurityConstants.getRecipientType(token));
+        values.add(SecurityConstants.getRecipientValue(token));
+        depth = Math.max(depth, ++size);
+        continue;
+      }
+
+      switch (op) {
+        case NOT_TOKEN:
+          program[i] = NOT;
+          break;
+        case AND_TOKEN:
+          program[i] = AND;
+          size--;
+          break;
+        case OR_TOKEN:
+          program[i] = OR;
+          size--;
+          break;
+        default:
+          throw new IllegalStateException();
+      }
+      if (size < 1) {
+        throw new IllegalArgumentException("Unparseable expression: " + expression);
+      }
+    }
+
+    return new CompiledAclExpression(
+        expression,
+        id,
+        dynamic,
+        program,
+        types.toArray(new Recipient[types.size()]),
+        values.toArray(new String[values.size()]),
+        depth);
+  }
+
+  String getExpression() {
+    return expression;
+  }
+
+  long getId() {
+    return id;
+  }
+
+  boolean isDynamic() {
+    return dynamic;
+  }
+
+  /**
+   * @return true if the result depends on the request (IP address or referrer) rather than only on
+   *     who the user is
+   */
+  boolean isContextual() {
+    return contextual;
+  }
+
+  boolean evaluate(AclExpressionEvaluator evaluator) {
+    final boolean[] stack = new boolean[depth];
+    int size = 0;
+    for (int instruction : program) {
+      switch (instruction) {
+        case NOT:
+          stack[size - 1] = !stack[size - 1];
+          break;
+        case AND:
+          size--;
+          stack[size - 1] = stack[size] && stack[size - 1];
+          break;
+        case OR:
+          size--;
+          stack[size - 1] = stack[size] || stack[size - 1];
+          break;
+        default:
+          stack[size++] = evaluator.processOperand(types[instruction], values[instruction]);
+      }
+    }
+    return stack[size - 1];
+  }
+}
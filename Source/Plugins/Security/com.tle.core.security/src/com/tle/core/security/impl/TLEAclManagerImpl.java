@@ -32,11 +32,15 @@ import static com.tle.common.security.SecurityConstants.TARGET_EVERYTHING;
 import static com.tle.common.security.SecurityConstants.getRecipient;
 
 import com.dytech.common.collections.CombinedCollection;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.tle.annotation.Nullable;
+import com.tle.beans.Institution;
 import com.tle.beans.security.ACLEntryMapping;
 import com.tle.beans.security.AccessEntry;
 import com.tle.beans.security.AccessExpression;
@@ -50,7 +54,10 @@ import com.tle.common.usermanagement.user.ModifiableUserState;
 import com.tle.common.usermanagement.user.UserState;
 import com.tle.core.dao.AccessExpressionDao;
 import com.tle.core.dao.AclDao;
+import com.tle.core.events.services.EventService;
 import com.tle.core.guice.Bind;
+import com.tle.core.institution.events.InstitutionEvent;
+import com.tle.core.institution.events.listeners.InstitutionListener;
 import com.tle.core.plugins.PluginService;
 import com.tle.core.plugins.PluginTracker;
 import com.tle.core.security.DomainObjectPrivilegeFilterExtension;
@@ -71,6 +78,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -78,18 +87,29 @@ import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Restrictions;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /** @author Nicholas Read */
 @SuppressWarnings("nls")
 @Bind(TLEAclManager.class)
 @Singleton
-public class TLEAclManagerImpl implements TLEAclManager {
+public class TLEAclManagerImpl implements TLEAclManager, AclsModifiedListener, InstitutionListener {
   private static final String OBJECT_PRIORITY_DB_FORMAT =
       String.format(
           "%04d", SecurityConstants.PRIORITY_OBJECT_INSTANCE + SecurityConstants.PRIORITY_MAX);
 
+  // Transaction resource holding the ACL changes made so far in the transaction
+  private static final String ACL_CHANGES = TLEAclManagerImpl.class.getName() + ".aclChanges";
+
   @Inject private AclDao aclDao;
   @Inject private AccessExpressionDao expressionDao;
+  @Inject private EventService eventService;
+
+  private final Cache<Institution, AclEntryCache> entryCaches =
+      CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build();
+  private final Cache<Institution, AclExpressionCache> expressionCaches =
+      CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build();
 
   private PluginTracker<SecurityTargetHandler> ownerHandlers;
   private PluginTracker<SecurityTargetHandler> labellingHandlers;
@@ -226,7 +246,12 @@ public class TLEAclManagerImpl implements TLEAclManager {
         new CombinedCollection<Long>(currentUser.getCommonAclExpressions(), ownerOrNotOwner);
 
     if (!targetMapping.isEmpty() && !expressions.isEmpty()) {
-      return aclDao.getPrivilegesForTargets(privileges, targetMapping.keySet(), expressions);
+      if (hasUncommittedChanges()) {
+        return aclDao.getPrivilegesForTargets(privileges, targetMapping.keySet(), expressions);
+      }
+      return getEntryCache(CurrentInstitution.get())
+          .getPrivilegesForTargets(
+              privileges, targetMapping.keySet(), expressions, aclDao::getEntriesForTargets);
     }
     return Collections.emptyList();
   }
@@ -293,7 +318,11 @@ public class TLEAclManagerImpl implements TLEAclManager {
       exp = new CombinedCollection<Long>(exp, currentUser.getOwnerAclExpressions());
     }
 
-    List<Object[]> acls = aclDao.getPrivileges(privileges, exp);
+    List<Object[]> acls =
+        hasUncommittedChanges()
+            ? aclDao.getPrivileges(privileges, exp)
+            : getEntryCache(CurrentInstitution.get())
+                .getPrivileges(privileges, exp, aclDao::getEntriesForPrivileges);
 
     final Set<String> granted = new HashSet<String>();
     final Set<String> revokedOverall = new HashSet<String>();
@@ -427,6 +456,8 @@ public class TLEAclManagerImpl implements TLEAclManager {
       }
     }
 
+    targetsModified(target);
+
     // If don't flush then they don't return from getAclExpressions()
     aclDao.flush();
 
@@ -458,6 +489,7 @@ public class TLEAclManagerImpl implements TLEAclManager {
     }
 
     addAccessEntry(target, privilegeNode, grant, override, 0, privilege, expression, expiry);
+    targetsModified(target);
   }
 
   @Override
@@ -559,34 +591,13 @@ public class TLEAclManagerImpl implements TLEAclManager {
       values.add(getRecipient(TOKEN_SECRET_ID, userState.getTokenSecretId()));
     }
 
-    Collection<Long> common = new ArrayList<Long>();
-    Collection<Long> owner = new ArrayList<Long>();
-    Collection<Long> notOwner = new ArrayList<Long>();
-
-    AclExpressionEvaluator evaluator = new AclExpressionEvaluator();
-    for (Triple<Long, String, Boolean> exp : expressionDao.getMatchingExpressions(values)) {
-      long expressionID = exp.getFirst();
-      String expression = exp.getSecond();
-      boolean isDynamic = exp.getThird();
-
-      // If it's a dynamic expression...
-      if (isDynamic) {
-        boolean own = evaluator.evaluate(expression, userState, true, enableIpReferAcl);
-        boolean nOwn = evaluator.evaluate(expression, userState, false, enableIpReferAcl);
-
-        if (own && nOwn) {
-          common.add(expressionID);
-        } else if (own) {
-          owner.add(expressionID);
-        } else if (nOwn) {
-          notOwner.add(expressionID);
-        }
-      } else if (evaluator.evaluate(expression, userState, true)) {
-        common.add(expressionID);
-      }
+    final AclExpressionCache cache = getExpressionCache(CurrentInstitution.get());
+    if (hasUncommittedChanges()) {
+      return cache.evaluate(
+          expressionDao.getMatchingExpressions(values), userState, enableIpReferAcl);
     }
-    return new Triple<Collection<Long>, Collection<Long>, Collection<Long>>(
-        common, owner, notOwner);
+    return cache.getAclExpressions(
+        values, userState, enableIpReferAcl, expressionDao::getMatchingExpressions);
   }
 
   @Override
@@ -613,6 +624,7 @@ public class TLEAclManagerImpl implements TLEAclManager {
     String target = prefix + ":" + id + ":";
     aclDao.deleteAll(
         target, true, Arrays.asList(type.getOverridePriority(), -type.getOverridePriority()));
+    targetsModified(target);
   }
 
   @Override
@@ -620,9 +632,107 @@ public class TLEAclManagerImpl implements TLEAclManager {
   public void deleteExpiredAccessEntries() {
     Criterion c1 = Restrictions.isNotNull("expiry");
     Criterion c2 = Restrictions.lt("expiry", new Date());
-    for (AccessEntry entry : aclDao.findAllByCriteria(c1, c2)) {
+    List<AccessEntry> expired = aclDao.findAllByCriteria(c1, c2);
+    for (AccessEntry entry : expired) {
       aclDao.delete(entry);
     }
+    if (!expired.isEmpty()) {
+      targetsModified(null);
+    }
+  }
+
+  @Override
+  public void aclsModified(AclsModifiedEvent event) {
+    final AclEntryCache cache = entryCaches.getIfPresent(CurrentInstitution.get());
+    if (cache != null) {
+      cache.invalidate(event.getTargetPrefixes());
+    }
+    final AclExpressionCache expressionCache =
+        expressionCaches.getIfPresent(CurrentInstitution.get());
+    if (expressionCache != null) {
+      expressionCache.invalidate();
+    }
+  }
+
+  @Override
+  public void institutionEvent(InstitutionEvent event) {
+    entryCaches.invalidateAll(event.getChanges().values());
+    expressionCaches.invalidateAll(event.getChanges().values());
+  }
+
+  private AclEntryCache getEntryCache(Institution institution) {
+    try {
+      return entryCaches.get(institution, AclEntryCache::new);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private AclExpressionCache getExpressionCache(Institution institution) {
+    try {
+      return expressionCaches.get(institution, AclExpressionCache::new);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * The cached entries and expression results can't see ACLs changed by the current transaction,
+   * so privileges and expressions are read from the database until it completes.
+   */
+  private boolean hasUncommittedChanges() {
+    return TransactionSynchronizationManager.hasResource(ACL_CHANGES);
+  }
+
+  /**
+   * Records that ACLs for targets starting with the prefix have changed, so that cached entries for
+   * them are dropped on every node once the transaction commits.
+   *
+   * @param targetPrefix null if any target may have changed
+   */
+  private void targetsModified(@Nullable String targetPrefix) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      final AclChanges changes = new AclChanges();
+      changes.add(targetPrefix);
+      changes.afterCommit();
+      return;
+    }
+
+    AclChanges changes = (AclChanges) TransactionSynchronizationManager.getResource(ACL_CHANGES);
+    if (changes == null) {
+      changes = new AclChanges();
+      TransactionSynchronizationManager.bindResource(ACL_CHANGES, changes);
+      TransactionSynchronizationManager.registerSynchronization(changes);
+    }
+    changes.add(targetPrefix);
+  }
+
+  private class AclChanges extends TransactionSynchronizationAdapter {
+    private final Institution institution = CurrentInstitution.get();
+    // null once any target may have changed
+    @Nullable private HashSet<String> targetPrefixes = new HashSet<String>();
+
+    void add(@Nullable String targetPrefix) {
+      if (targetPrefix == null) {
+        targetPrefixes = null;
+      } else if (targetPrefixes != null) {
+        targetPrefixes.add(targetPrefix);
+      }
+    }
+
+    @Override
+    public void afterCommit() {
+      getEntryCache(institution).invalidate(targetPrefixes);
+      // New entries may refer to expressions that users weren't matched against
+      getExpressionCache(institution).invalidate();
+      eventService.publishApplicationEvent(
+          Collections.singleton(institution), new AclsModifiedEvent(targetPrefixes));
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+      TransactionSynchronizationManager.unbindResourceIfPossible(ACL_CHANGES);
+    }
   }
 
   /**
@@ -786,6 +896,9 @@ public class TLEAclManagerImpl implements TLEAclManager {
     for (Entry<Long, Long> entry : oldToNewIds.entrySet()) {
       aclDao.remapExpressionId(entry.getKey(), entry.getValue());
     }
+    if (!oldToNewIds.isEmpty()) {
+      targetsModified(null);
+    }
   }
 
   @Override
@@ -0,0 +1,139 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.security.impl;
+
+import static com.tle.core.security.impl.CompiledAclExpressionTest.GROUP1;
+import static com.tle.core.security.impl.CompiledAclExpressionTest.IP;
+import static com.tle.core.security.impl.CompiledAclExpressionTest.OWNER;
+import static com.tle.core.security.impl.CompiledAclExpressionTest.ROLE1;
+import static com.tle.core.security.impl.CompiledAclExpressionTest.USER1;
+import static com.tle.core.security.impl.CompiledAclExpressionTest.user;
+import static org.junit.Assert.assertEquals;
+
+import com.tle.common.Triple;
+import com.tle.common.security.SecurityConstants;
+import com.tle.common.security.SecurityConstants.Recipient;
+import com.tle.common.usermanagement.user.UserState;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class AclExpressionCacheTest {
+  private static final String USER2 = SecurityConstants.getRecipient(Recipient.USER, "user2");
+
+  private final List<Triple<Long, String, Boolean>> expressions =
+      Arrays.asList(
+          new Triple<Long, String, Boolean>(1L, USER1, false),
+          new Triple<Long, String, Boolean>(2L, USER2, false),
+          new Triple<Long, String, Boolean>(3L, GROUP1 + " " + ROLE1 + " OR", false),
+          new Triple<Long, String, Boolean>(4L, OWNER + " " + GROUP1 + " OR", true),
+          new Triple<Long, String, Boolean>(5L, IP, false));
+
+  private final AclExpressionCache cache = new AclExpressionCache();
+  private final List<List<String>> loads = new ArrayList<List<String>>();
+  private final AclExpressionCache.Loader loader =
+      recipients -> {
+        loads.add(recipients);
+        return expressions;
+      };
+
+  @Test
+  public void testDifferentRecipientsDontShareResults() {
+    final UserState user1 = user("user1", "192.168.0.1", null, "group1");
+    final UserState user2 = user("user2", "10.0.0.1", null);
+
+    assertResults(
+        cache.getAclExpressions(Arrays.asList(USER1, GROUP1), user1, true, loader), user1);
+    assertResults(cache.getAclExpressions(Arrays.asList(USER2), user2, true, loader), user2);
+    assertResults(
+        cache.getAclExpressions(Arrays.asList(USER1, GROUP1), user1, true, loader), user1);
+    assertResults(cache.getAclExpressions(Arrays.asList(USER2), user2, true, loader), user2);
+    assertEquals(
+        Arrays.asList(Arrays.asList(GROUP1, USER1), Collections.singletonList(USER2)), loads);
+  }
+
+  @Test
+  public void testOverlappingRecipientsDontShareResults() {
+    final UserState withGroup = user("user1", null, null, "group1");
+    final UserState withoutGroup = user("user1", null, null);
+
+    assertResults(
+        cache.getAclExpressions(Arrays.asList(USER1, GROUP1), withGroup, true, loader),
+        withGroup);
+    assertResults(
+        cache.getAclExpressions(Arrays.asList(USER1), withoutGroup, true, loader), withoutGroup);
+    assertEquals(2, loads.size());
+  }
+
+  @Test
+  public void testSameRecipientsShareResults() {
+    final UserState user = user("user1", null, null, "group1");
+    cache.getAclExpressions(Arrays.asList(USER1, GROUP1), user, true, loader);
+    assertResults(cache.getAclExpressions(Arrays.asList(GROUP1, USER1), user, true, loader), user);
+    assertEquals(1, loads.size());
+  }
+
+  @Test
+  public void testRequestIsCheckedEveryTime() {
+    final UserState inside = user("user1", "192.168.0.1", null);
+    final UserState outside = user("user1", "10.0.0.1", null);
+    final List<String> recipients = Arrays.asList(USER1);
+
+    assertResults(cache.getAclExpressions(recipients, inside, true, loader), inside);
+    assertResults(cache.getAclExpressions(recipients, outside, true, loader), outside);
+    assertResults(cache.getAclExpressions(recipients, outside, false, loader), outside, false);
+    assertEquals(1, loads.size());
+  }
+
+  @Test
+  public void testInvalidate() {
+    final UserState user = user("user1", null, null);
+    cache.getAclExpressions(Arrays.asList(USER1), user, true, loader);
+    cache.invalidate();
+    cache.getAclExpressions(Arrays.asList(USER1), user, true, loader);
+    assertEquals(2, loads.size());
+  }
+
+  private void assertResults(
+      Triple<Collection<Long>, Collection<Long>, Collection<Long>> results, UserState user) {
+    assertResults(results, user, true);
+  }
+
+  /** Compares against evaluating every expression for the user with nothing memoized. */
+  private void assertResults(
+      Triple<Collection<Long>, Collection<Long>, Collection<Long>> results,
+      UserState user,
+      boolean enableIpReferAcl) {
+    final Triple<Collection<Long>, Collection<Long>, Collection<Long>> expected =
+        new AclExpressionCache().evaluate(expressions, user, enableIpReferAcl);
+    assertEquals(sorted(expected.getFirst()), sorted(results.getFirst()));
+    assertEquals(sorted(expected.getSecond()), sorted(results.getSecond()));
+    assertEquals(sorted(expected.getThird()), sorted(results.getThird()));
+  }
+
+  private static List<Long> sorted(Collection<Long> ids) {
+    final List<Long> list = new ArrayList<Long>(ids);
+    Collections.sort(list);
+    return list;
+  }
+}
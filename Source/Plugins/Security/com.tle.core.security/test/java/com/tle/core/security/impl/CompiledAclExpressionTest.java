@@ -0,0 +1,171 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0, (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tle.core.security.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.tle.common.security.SecurityConstants;
+import com.tle.common.security.SecurityConstants.Recipient;
+import com.tle.common.usermanagement.user.AnonymousUserState;
+import com.tle.common.usermanagement.user.DefaultUserState;
+import com.tle.common.usermanagement.user.ModifiableUserState;
+import com.tle.common.usermanagement.user.UserState;
+import com.tle.common.usermanagement.user.valuebean.DefaultUserBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class CompiledAclExpressionTest {
+  static final String EVERYONE = SecurityConstants.getRecipient(Recipient.EVERYONE);
+  static final String OWNER = SecurityConstants.getRecipient(Recipient.OWNER);
+  static final String USER1 = SecurityConstants.getRecipient(Recipient.USER, "user1");
+  static final String GROUP1 = SecurityConstants.getRecipient(Recipient.GROUP, "group1");
+  static final String GROUP2 = SecurityConstants.getRecipient(Recipient.GROUP, "group2");
+  static final String ROLE1 = SecurityConstants.getRecipient(Recipient.ROLE, "role1");
+  static final String IP =
+      SecurityConstants.getRecipient(Recipient.IP_ADDRESS, "192.168.0.0/16");
+  static final String REFERRER =
+      SecurityConstants.getRecipient(Recipient.HTTP_REFERRER, "*example.com*");
+  static final String SHARE_PASS =
+      SecurityConstants.getRecipient(Recipient.SHARE_PASS, "someone@example.com");
+  static final String TOKEN_SECRET =
+      SecurityConstants.getRecipient(Recipient.TOKEN_SECRET_ID, "secret1");
+
+  private static final List<String> EXPRESSIONS =
+      Arrays.asList(
+          EVERYONE,
+          USER1,
+          USER1 + " NOT",
+          GROUP1 + " " + ROLE1 + " AND",
+          GROUP1 + " " + ROLE1 + " OR",
+          GROUP2 + " " + GROUP1 + " " + ROLE1 + " OR AND NOT",
+          OWNER,
+          OWNER + " NOT",
+          OWNER + " " + GROUP1 + " OR",
+          OWNER + " NOT " + USER1 + " AND",
+          IP,
+          REFERRER,
+          IP + " " + REFERRER + " OR",
+          IP + " NOT " + GROUP1 + " AND",
+          SHARE_PASS,
+          TOKEN_SECRET,
+          TOKEN_SECRET + " " + SHARE_PASS + " OR " + EVERYONE + " AND");
+
+  @Test
+  public void testMatchesBaselineEvaluator() {
+    for (String expression : EXPRESSIONS) {
+      final CompiledAclExpression compiled = CompiledAclExpression.compile(expression, 1, true);
+      for (UserState user : users()) {
+        for (boolean owner : new boolean[] {true, false}) {
+          for (boolean ipReferAcl : new boolean[] {true, false}) {
+            assertEquals(
+                expression + " for " + describe(user) + ", owner " + owner + ", IP " + ipReferAcl,
+                new AclExpressionEvaluator().evaluate(expression, user, owner, ipReferAcl),
+                new AclExpressionEvaluator().evaluate(compiled, user, owner, ipReferAcl));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testResults() {
+    final UserState user = user("user1", "10.0.0.1", null, "group1");
+    assertTrue(evaluate(GROUP1 + " " + ROLE1 + " OR", user, false));
+    assertFalse(evaluate(GROUP1 + " " + ROLE1 + " AND", user, false));
+    assertTrue(evaluate(OWNER + " NOT " + USER1 + " AND", user, false));
+    assertFalse(evaluate(OWNER + " NOT " + USER1 + " AND", user, true));
+    assertFalse(evaluate(IP, user, true));
+    assertFalse(evaluate(OWNER, new AnonymousUserState(), true));
+  }
+
+  @Test
+  public void testContextual() {
+    assertTrue(CompiledAclExpression.compile(IP, 1, false).isContextual());
+    assertTrue(
+        CompiledAclExpression.compile(GROUP1 + " " + REFERRER + " AND", 1, false).isContextual());
+    assertFalse(
+        CompiledAclExpression.compile(GROUP1 + " " + TOKEN_SECRET + " OR", 1, false)
+            .isContextual());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnparseable() {
+    CompiledAclExpression.compile(GROUP1 + " AND", 1, false);
+  }
+
+  private static boolean evaluate(String expression, UserState user, boolean owner) {
+    return new AclExpressionEvaluator()
+        .evaluate(CompiledAclExpression.compile(expression, 1, false), user, owner, true);
+  }
+
+  private static List<UserState> users() {
+    final List<UserState> users = new ArrayList<UserState>();
+    users.add(new AnonymousUserState());
+    users.add(user("user1", "192.168.1.20", "http://www.example.com/page"));
+    users.add(user("user1", "10.0.0.1", null, "group1"));
+    users.add(user("user2", "192.168.250.1", "http://other.org/", "group1", "group2"));
+    users.add(user("user2", "::1", "http://EXAMPLE.com", "group2"));
+    users.add(user("user3", null, null, "group1", "role1"));
+
+    final ModifiableUserState sharePass = user("user4", "192.168.0.1", null);
+    sharePass.setSharePassEmail("someone@example.com");
+    users.add(sharePass);
+
+    final ModifiableUserState token = user("user5", null, "http://example.com");
+    token.setTokenSecretId("secret1");
+    users.add(token);
+    return users;
+  }
+
+  /** Recipients starting with "role" are roles, anything else is a group. */
+  static ModifiableUserState user(
+      String id, String ipAddress, String referrer, String... recipients) {
+    final DefaultUserState user = new DefaultUserState();
+    user.setLoggedInUser(new DefaultUserBean(id, id, id, id, id + "@example.com"));
+    user.setIpAddress(ipAddress);
+    user.setHostReferrer(referrer);
+    for (String recipient : recipients) {
+      if (recipient.startsWith("role")) {
+        user.getUsersRoles().add(recipient);
+      } else {
+        user.getUsersGroups().add(recipient);
+      }
+    }
+    return user;
+  }
+
+  private static String describe(UserState user) {
+    return user.isGuest()
+        ? "guest"
+        : user.getUserBean().getUniqueID()
+            + " "
+            + user.getUsersGroups()
+            + " "
+            + user.getUsersRoles()
+            + " "
+            + user.getIpAddress()
+            + " "
+            + user.getHostReferrer();
+  }
+}